@@ -0,0 +1,44 @@
+package com.pfe.qualite.backend.benchmarks;
+
+import com.pfe.qualite.backend.service.AiChartsService;
+import com.pfe.qualite.backend.service.AnalyticsSnapshotService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agrégations en mémoire de AiChartsService.calculateRealRiskLevels (via getRealPredictionData)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AiChartsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int fiches;
+
+    private AiChartsService aiChartsService;
+
+    @Setup
+    public void setup() {
+        AnalyticsSnapshotService.AnalyticsSnapshot snapshot =
+            DonneesSynthetiques.snapshotAnalytique(DonneesSynthetiques.fichesQualite(fiches), fiches / 2);
+        AnalyticsSnapshotService snapshotService = new AnalyticsSnapshotService(null) {
+            @Override
+            public AnalyticsSnapshotService.AnalyticsSnapshot getSnapshot() {
+                return snapshot;
+            }
+        };
+        aiChartsService = new AiChartsService();
+        DonneesSynthetiques.injecter(aiChartsService, "analyticsSnapshotService", snapshotService);
+    }
+
+    @Benchmark
+    public Map<String, Object> getRealPredictionData() {
+        return aiChartsService.getRealPredictionData();
+    }
+}
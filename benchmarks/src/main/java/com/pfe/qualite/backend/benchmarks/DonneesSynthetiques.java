@@ -0,0 +1,127 @@
+package com.pfe.qualite.backend.benchmarks;
+
+import com.pfe.qualite.backend.model.FicheQualite;
+import com.pfe.qualite.backend.model.FicheProjet;
+import com.pfe.qualite.backend.model.HistoriqueAction;
+import com.pfe.qualite.backend.service.AnalyticsSnapshotService;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Générateurs de données synthétiques reproductibles (graine fixe) pour les benchmarks
+ */
+public final class DonneesSynthetiques {
+
+    public static final List<String> TYPES_FICHE = List.of("AUDIT", "NON_CONFORMITE", "ACTION_CORRECTIVE", "RECLAMATION", "AMELIORATION");
+    public static final List<String> STATUTS = List.of("OUVERTE", "EN_COURS", "TERMINE", "VALIDEE", "CLOTUREE");
+    public static final List<String> ACTIONS = List.of("CREATE", "UPDATE", "DELETE", "LOGIN", "NOTIFICATION");
+    public static final List<String> ENTITES = List.of("FICHE_QUALITE", "FICHE_SUIVI", "FICHE_PROJET", "UTILISATEUR", "NOMENCLATURE");
+
+    private DonneesSynthetiques() {
+    }
+
+    public static List<FicheQualite> fichesQualite(int nombre) {
+        Random random = new Random(42);
+        List<FicheQualite> fiches = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            fiches.add(FicheQualite.builder()
+                .id(String.format("%024x", i))
+                .titre("Fiche " + i)
+                .typeFiche(random.nextInt(20) == 0 ? null : TYPES_FICHE.get(random.nextInt(TYPES_FICHE.size())))
+                .statut(STATUTS.get(random.nextInt(STATUTS.size())))
+                .responsable("user" + random.nextInt(200) + "@exemple.com")
+                .dateEcheance(LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365)))
+                .build());
+        }
+        return fiches;
+    }
+
+    public static List<HistoriqueAction> historique(int nombre) {
+        Random random = new Random(42);
+        long debut = 1_735_689_600_000L; // 2025-01-01
+        List<HistoriqueAction> actions = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            actions.add(HistoriqueAction.builder()
+                .dateAction(new Date(debut + random.nextInt(365 * 24 * 3600) * 1000L))
+                .utilisateurNom("Utilisateur " + random.nextInt(200))
+                .action(ACTIONS.get(random.nextInt(ACTIONS.size())))
+                .entite(ENTITES.get(random.nextInt(ENTITES.size())))
+                .entiteId(String.format("%024x", random.nextInt(nombre)))
+                // Un détail sur dix contient des caractères à échapper
+                .details(random.nextInt(10) == 0 ? "Mise à jour \"statut\"; priorité\nHAUTE" : "Modification de la fiche " + i)
+                .build());
+        }
+        return actions;
+    }
+
+    /**
+     * Lignes de tableau mixtes (texte, nombres, dates) au format attendu par ExportService
+     */
+    public static List<List<Object>> lignesExport(int nombre) {
+        Random random = new Random(42);
+        List<List<Object>> lignes = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            lignes.add(Arrays.asList(
+                String.format("%024x", i),
+                "Fiche " + i,
+                TYPES_FICHE.get(random.nextInt(TYPES_FICHE.size())),
+                STATUTS.get(random.nextInt(STATUTS.size())),
+                random.nextInt(100),
+                random.nextDouble() * 100,
+                new Date(1_735_689_600_000L + random.nextInt(365) * 86_400_000L)));
+        }
+        return lignes;
+    }
+
+    /**
+     * Textes d'indicateurs KPI couvrant les formats reconnus par l'extracteur de taux de conformité
+     */
+    public static List<String> indicateursKpi(int nombre) {
+        Random random = new Random(42);
+        List<String> textes = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            int taux = random.nextInt(101);
+            switch (i % 4) {
+                case 0 -> textes.add("{\"tauxConformite\": " + taux + ", \"delai\": 12}");
+                case 1 -> textes.add("taux de conformité mesuré sur le lot : " + taux + " %");
+                case 2 -> textes.add("taux conformite global 0." + String.format("%02d", taux % 100));
+                default -> textes.add("délai moyen 12 jours, aucun indicateur de conformité saisi");
+            }
+        }
+        return textes;
+    }
+
+    /**
+     * Instantané analytique sans projets ; son constructeur est réservé au service qui le charge
+     */
+    public static AnalyticsSnapshotService.AnalyticsSnapshot snapshotAnalytique(List<FicheQualite> fichesQualite, long nbFichesSuivi) {
+        try {
+            Constructor<AnalyticsSnapshotService.AnalyticsSnapshot> constructeur = AnalyticsSnapshotService.AnalyticsSnapshot.class
+                .getDeclaredConstructor(List.class, long.class, List.class);
+            constructeur.setAccessible(true);
+            return constructeur.newInstance(fichesQualite, nbFichesSuivi, List.<FicheProjet>of());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Instantané analytique impossible à construire", e);
+        }
+    }
+
+    /**
+     * Renseigne un champ injecté par Spring (@Autowired / @Value) sans démarrer de contexte
+     */
+    public static void injecter(Object cible, String champ, Object valeur) {
+        try {
+            Field field = cible.getClass().getDeclaredField(champ);
+            field.setAccessible(true);
+            field.set(cible, valeur);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Champ introuvable: " + champ, e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.pfe.qualite.backend.benchmarks;
+
+import com.pfe.qualite.backend.service.ExportService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export Excel en mémoire (byte[]) et en flux, de 1k à 100k lignes
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ExportExcelBenchmark {
+
+    private static final List<String> COLONNES = List.of("ID", "Titre", "Type", "Statut", "Score", "Taux", "Date");
+
+    @Param({"1000", "10000", "100000"})
+    public int lignes;
+
+    private ExportService exportService;
+    private List<List<Object>> donnees;
+
+    @Setup
+    public void setup() {
+        exportService = new ExportService(null);
+        DonneesSynthetiques.injecter(exportService, "fenetreLignes", 100);
+        donnees = DonneesSynthetiques.lignesExport(lignes);
+    }
+
+    @Benchmark
+    public byte[] exportToExcel() throws IOException {
+        return exportService.exportToExcel("Benchmark", COLONNES, donnees);
+    }
+
+    @Benchmark
+    public long streamToExcel() throws IOException {
+        return exportService.streamToExcel("Benchmark", COLONNES, donnees.iterator(), OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,63 @@
+package com.pfe.qualite.backend.benchmarks;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.pfe.qualite.backend.controller.HistoriqueController;
+import com.pfe.qualite.backend.model.HistoriqueAction;
+import com.pfe.qualite.backend.service.HistoriqueService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Construction du CSV d'historique (POST /api/historique/export) sur un curseur simulé
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoriqueCsvBenchmark {
+
+    @Param({"10000", "100000"})
+    public int actions;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private MongoClient client;
+    private HistoriqueService historiqueService;
+    private final HistoriqueController.FiltresHistoriqueRequest filtres = new HistoriqueController.FiltresHistoriqueRequest();
+
+    @Setup
+    public void setup() {
+        List<HistoriqueAction> donnees = DonneesSynthetiques.historique(actions);
+        // Le client n'ouvre aucune connexion tant qu'aucune commande n'est envoyée
+        client = MongoClients.create();
+        MongoTemplate curseurMemoire = new MongoTemplate(client, "benchmarks") {
+            @Override
+            public <T> Stream<T> stream(Query query, Class<T> entityType) {
+                return donnees.stream().map(entityType::cast);
+            }
+        };
+        historiqueService = new HistoriqueService();
+        DonneesSynthetiques.injecter(historiqueService, "mongoTemplate", curseurMemoire);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public long exporterCsv() throws IOException {
+        return historiqueService.exporterCsv(filtres, OutputStream.nullOutputStream(), gzip);
+    }
+}
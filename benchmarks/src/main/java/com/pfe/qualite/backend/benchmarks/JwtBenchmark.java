@@ -0,0 +1,54 @@
+package com.pfe.qualite.backend.benchmarks;
+
+import com.pfe.qualite.backend.security.jwt.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût de la vérification d'un token sur le chemin de JwtFilter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private static final String SECRET = "CleDeBenchmarkSuffisammentLonguePourHmacSha256!!";
+
+    private JwtUtils jwtUtils;
+    private Key key;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtils = new JwtUtils(SECRET, 3_600_000L);
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        token = jwtUtils.generateToken("65f0c0ffee0000000000beef", "pilote@exemple.com", "PILOTE_QUALITE");
+    }
+
+    @Benchmark
+    public Claims parseClaims() {
+        return jwtUtils.parseClaims(token);
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtUtils.validateToken(token);
+    }
+
+    /**
+     * Référence : parseur reconstruit à chaque appel, comme avant la mise en cache
+     */
+    @Benchmark
+    public Claims parseurParAppel() {
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+}
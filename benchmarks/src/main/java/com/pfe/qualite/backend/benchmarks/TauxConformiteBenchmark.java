@@ -0,0 +1,67 @@
+package com.pfe.qualite.backend.benchmarks;
+
+import com.pfe.qualite.backend.util.TauxConformiteParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extraction du taux de conformité depuis indicateursKpi : analyseur linéaire contre expressions régulières
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TauxConformiteBenchmark {
+
+    private List<String> textes;
+
+    @Setup
+    public void setup() {
+        textes = DonneesSynthetiques.indicateursKpi(1000);
+    }
+
+    /**
+     * Mille textes par appel, un quart sans taux (pire cas : les trois formes échouent)
+     */
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public void analyseurLineaire(Blackhole bh) {
+        for (String texte : textes) {
+            bh.consume(TauxConformiteParser.extraireOuNaN(texte));
+        }
+    }
+
+    /**
+     * Référence : ancienne extraction de RapportKpiService (trois motifs compilés à chaque appel)
+     */
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public void expressionsRegulieres(Blackhole bh) {
+        for (String texte : textes) {
+            bh.consume(parRegex(texte.toLowerCase()));
+        }
+    }
+
+    private static Double parRegex(String t) {
+        Matcher m = Pattern.compile("taux\\s*[_-]?\\s*conform(?:ite|ité)\\s*\"?\\s*:\\s*(\\d{1,3})\\s*%?").matcher(t);
+        if (m.find()) {
+            return (double) Math.min(100, Integer.parseInt(m.group(1)));
+        }
+        m = Pattern.compile("taux\\s*(?:de)?\\s*conform(?:ite|ité)[^\\d%]{0,30}(\\d{1,3})\\s*%").matcher(t);
+        if (m.find()) {
+            return (double) Math.min(100, Integer.parseInt(m.group(1)));
+        }
+        m = Pattern.compile("taux\\s*(?:de)?\\s*conform(?:ite|ité)[^\\d.]{0,30}(0?\\.\\d+|1(?:\\.0+)?)\\b").matcher(t);
+        if (m.find()) {
+            return Math.min(100.0, Double.parseDouble(m.group(1)) * 100.0);
+        }
+        return null;
+    }
+}
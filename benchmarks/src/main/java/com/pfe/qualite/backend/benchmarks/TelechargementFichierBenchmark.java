@@ -0,0 +1,114 @@
+package com.pfe.qualite.backend.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.UrlResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envoi d'une pièce jointe vers une socket locale (GET /api/files/download/{id}).
+ * Débit en Mo/s = ops/s × tailleMo.
+ *   - ancienCheminResource : UrlResource + copie par tampon de 8 Ko (ResourceHttpMessageConverter)
+ *   - transferToFlux       : FileChannel.transferTo vers le flux de réponse (repli sans sendfile)
+ *   - transferToSocket     : FileChannel.transferTo vers la socket (sendfile, chemin du connecteur Tomcat)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TelechargementFichierBenchmark {
+
+    @Param({"100"})
+    public int tailleMo;
+
+    private Path fichier;
+    private long taille;
+    private ServerSocketChannel serveur;
+    private SocketChannel client;
+    private OutputStream fluxClient;
+    private Thread puits;
+
+    @Setup
+    public void setup() throws IOException {
+        fichier = Files.createTempFile("telechargement-", ".bin");
+        taille = tailleMo * 1024L * 1024L;
+        byte[] bloc = new byte[1024 * 1024];
+        new Random(7).nextBytes(bloc);
+        try (RandomAccessFile f = new RandomAccessFile(fichier.toFile(), "rw")) {
+            for (int i = 0; i < tailleMo; i++) {
+                f.write(bloc);
+            }
+        }
+
+        // Le navigateur est simulé par un thread qui lit et jette tout ce qu'il reçoit
+        serveur = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = SocketChannel.open(serveur.getLocalAddress());
+        SocketChannel recepteur = serveur.accept();
+        puits = new Thread(() -> {
+            ByteBuffer tampon = ByteBuffer.allocateDirect(256 * 1024);
+            try {
+                while (recepteur.read(tampon) >= 0) {
+                    tampon.clear();
+                }
+            } catch (IOException ignored) {
+                // Fermeture en fin de benchmark
+            }
+        }, "puits-telechargement");
+        puits.setDaemon(true);
+        puits.start();
+        fluxClient = Channels.newOutputStream(client);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        serveur.close();
+        Files.deleteIfExists(fichier);
+    }
+
+    @Benchmark
+    public long ancienCheminResource() throws IOException {
+        try (InputStream in = new UrlResource(fichier.toUri()).getInputStream()) {
+            return StreamUtils.copy(in, fluxClient);
+        }
+    }
+
+    @Benchmark
+    public long transferToFlux() throws IOException {
+        return transferer(Channels.newChannel(fluxClient));
+    }
+
+    @Benchmark
+    public long transferToSocket() throws IOException {
+        return transferer(client);
+    }
+
+    private long transferer(WritableByteChannel cible) throws IOException {
+        try (FileChannel source = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < taille) {
+                position += source.transferTo(position, taille - position, cible);
+            }
+            return position;
+        }
+    }
+}
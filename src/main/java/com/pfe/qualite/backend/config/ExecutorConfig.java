@@ -0,0 +1,37 @@
+package com.pfe.qualite.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Pools de threads gérés par Spring (démarrés et arrêtés avec le contexte)
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Pool des méthodes @Async, avec les réglages spring.task.execution.* de Spring Boot.
+     * Déclaré explicitement : Spring Boot ne crée plus le sien dès qu'un autre Executor existe.
+     */
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * Envois d'e-mails du résumé des notifications non lues (NotificationScheduler)
+     */
+    @Bean
+    public ThreadPoolTaskExecutor notificationDigestExecutor(@Value("${notifications.digest.threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("notifications-digest-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
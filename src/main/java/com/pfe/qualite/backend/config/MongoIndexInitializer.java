@@ -0,0 +1,63 @@
+package com.pfe.qualite.backend.config;
+
+import com.pfe.qualite.backend.model.FicheQualite;
+import com.pfe.qualite.backend.model.FicheSuivi;
+import com.pfe.qualite.backend.model.FormulaireObligatoire;
+import com.pfe.qualite.backend.model.HistoriqueAction;
+import com.pfe.qualite.backend.model.Notification;
+import com.pfe.qualite.backend.model.Tache;
+import com.pfe.qualite.backend.model.UploadFragmente;
+import com.pfe.qualite.backend.model.Utilisateur;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Crée au démarrage les index déclarés par annotations (@Indexed, @CompoundIndex).
+ * Le MongoTemplate de MongoConfig est construit manuellement : la création automatique
+ * des index de Spring Data n'est donc pas active.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer {
+
+    /**
+     * Entités dont les index sont garantis au démarrage
+     */
+    private static final List<Class<?>> ENTITES_INDEXEES = List.of(
+        HistoriqueAction.class,
+        Tache.class,
+        FicheQualite.class,
+        FicheSuivi.class,
+        FormulaireObligatoire.class,
+        Notification.class,
+        Utilisateur.class,
+        UploadFragmente.class
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void creerIndex() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> entite : ENTITES_INDEXEES) {
+            try {
+                IndexOperations indexOps = mongoTemplate.indexOps(entite);
+                resolver.resolveIndexFor(entite).forEach(indexOps::ensureIndex);
+                log.info("Index MongoDB vérifiés pour {}", entite.getSimpleName());
+            } catch (Exception e) {
+                // Un index manquant dégrade les performances mais ne doit pas empêcher le démarrage
+                log.warn("Impossible de créer les index de {}: {}", entite.getSimpleName(), e.getMessage());
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.pfe.qualite.backend.controller;
 
+import com.pfe.qualite.backend.model.KpiSnapshot;
 import com.pfe.qualite.backend.service.AiAnalyticsService;
+import com.pfe.qualite.backend.service.KpiSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,13 +18,17 @@ public class AiAnalyticsController {
     @Autowired
     private AiAnalyticsService aiAnalyticsService;
 
+    @Autowired
+    private KpiSnapshotService kpiSnapshotService;
+
     // Analyser les risques
     @GetMapping("/risques")
     public ResponseEntity<Map<String, Object>> analyserRisques() {
         Map<String, Object> response = new HashMap<>();
+        KpiSnapshot snapshot = kpiSnapshotService.getSnapshot();
         response.put("predictions", aiAnalyticsService.analyserRisques());
-        response.put("tauxConformite", calculerTauxConformite());
-        response.put("fichesEnRetard", calculerFichesEnRetard());
+        response.put("tauxConformite", calculerTauxConformite(snapshot));
+        response.put("fichesEnRetard", calculerFichesEnRetard(snapshot));
         return ResponseEntity.ok(response);
     }
 
@@ -30,9 +36,10 @@ public class AiAnalyticsController {
     @GetMapping("/recommandations")
     public ResponseEntity<Map<String, Object>> genererRecommandations() {
         Map<String, Object> response = new HashMap<>();
+        KpiSnapshot snapshot = kpiSnapshotService.getSnapshot();
         response.put("recommandations", aiAnalyticsService.genererRecommandations());
-        response.put("totalFiches", calculerTotalFiches());
-        response.put("tauxConformite", calculerTauxConformite());
+        response.put("totalFiches", calculerTotalFiches(snapshot));
+        response.put("tauxConformite", calculerTauxConformite(snapshot));
         return ResponseEntity.ok(response);
     }
 
@@ -40,9 +47,10 @@ public class AiAnalyticsController {
     @GetMapping("/tendances")
     public ResponseEntity<Map<String, Object>> analyserTendances() {
         Map<String, Object> response = new HashMap<>();
+        KpiSnapshot snapshot = kpiSnapshotService.getSnapshot();
         response.put("tendances", aiAnalyticsService.analyserTendances());
-        response.put("totalFiches", calculerTotalFiches());
-        response.put("tauxConformite", calculerTauxConformite());
+        response.put("totalFiches", calculerTotalFiches(snapshot));
+        response.put("tauxConformite", calculerTauxConformite(snapshot));
         return ResponseEntity.ok(response);
     }
 
@@ -50,8 +58,9 @@ public class AiAnalyticsController {
     @GetMapping("/optimisations")
     public ResponseEntity<Map<String, Object>> optimiserProcessus() {
         Map<String, Object> response = new HashMap<>();
+        KpiSnapshot snapshot = kpiSnapshotService.getSnapshot();
         response.put("optimisations", aiAnalyticsService.optimiserProcessus());
-        response.put("efficaciteActuelle", calculerEfficaciteActuelle());
+        response.put("efficaciteActuelle", calculerEfficaciteActuelle(snapshot));
         return ResponseEntity.ok(response);
     }
 
@@ -65,59 +74,55 @@ public class AiAnalyticsController {
     @GetMapping("/dashboard")
     public ResponseEntity<Map<String, Object>> getDashboardData() {
         Map<String, Object> dashboardData = new HashMap<>();
+        KpiSnapshot snapshot = kpiSnapshotService.getSnapshot();
         
         // Risques
         Map<String, Object> risques = new HashMap<>();
         risques.put("predictions", aiAnalyticsService.analyserRisques());
-        risques.put("tauxConformite", calculerTauxConformite());
-        risques.put("fichesEnRetard", calculerFichesEnRetard());
+        risques.put("tauxConformite", calculerTauxConformite(snapshot));
+        risques.put("fichesEnRetard", calculerFichesEnRetard(snapshot));
         dashboardData.put("risques", risques);
         
         // Recommandations
         Map<String, Object> recommandations = new HashMap<>();
         recommandations.put("recommandations", aiAnalyticsService.genererRecommandations());
-        recommandations.put("totalFiches", calculerTotalFiches());
-        recommandations.put("tauxConformite", calculerTauxConformite());
+        recommandations.put("totalFiches", calculerTotalFiches(snapshot));
+        recommandations.put("tauxConformite", calculerTauxConformite(snapshot));
         dashboardData.put("recommandations", recommandations);
         
         // Tendances
         Map<String, Object> tendances = new HashMap<>();
         tendances.put("tendances", aiAnalyticsService.analyserTendances());
-        tendances.put("totalFiches", calculerTotalFiches());
-        tendances.put("tauxConformite", calculerTauxConformite());
+        tendances.put("totalFiches", calculerTotalFiches(snapshot));
+        tendances.put("tauxConformite", calculerTauxConformite(snapshot));
         dashboardData.put("tendances", tendances);
         
         // Optimisations
         Map<String, Object> optimisations = new HashMap<>();
         optimisations.put("optimisations", aiAnalyticsService.optimiserProcessus());
-        optimisations.put("efficaciteActuelle", calculerEfficaciteActuelle());
+        optimisations.put("efficaciteActuelle", calculerEfficaciteActuelle(snapshot));
         dashboardData.put("optimisations", optimisations);
         
         return ResponseEntity.ok(dashboardData);
     }
 
-    // Méthodes utilitaires pour calculer les métriques
-    private double calculerTauxConformite() {
-        // Cette méthode devrait utiliser le repository pour calculer le taux de conformité
-        // Pour l'instant, retournons une valeur par défaut
-        return 75.0;
+    // Méthodes utilitaires : métriques lues dans la vue matérialisée kpi_snapshots
+    private double calculerTauxConformite(KpiSnapshot snapshot) {
+        long evalues = snapshot.getEvaluationsConformite();
+        return evalues > 0 ? Math.round((double) snapshot.getNbConformes() / evalues * 10000.0) / 100.0 : 0.0;
     }
 
-    private int calculerFichesEnRetard() {
-        // Cette méthode devrait utiliser le repository pour calculer les fiches en retard
-        // Pour l'instant, retournons une valeur par défaut
-        return 5;
+    private int calculerFichesEnRetard(KpiSnapshot snapshot) {
+        return snapshot.getFormulairesParStatut().getOrDefault("EN_RETARD", 0L).intValue();
     }
 
-    private int calculerTotalFiches() {
-        // Cette méthode devrait utiliser le repository pour calculer le total des fiches
-        // Pour l'instant, retournons une valeur par défaut
-        return 20;
+    private int calculerTotalFiches(KpiSnapshot snapshot) {
+        return (int) snapshot.getTotalFichesQualite();
     }
 
-    private double calculerEfficaciteActuelle() {
-        // Cette méthode devrait utiliser le repository pour calculer l'efficacité actuelle
-        // Pour l'instant, retournons une valeur par défaut
-        return 78.0;
+    private double calculerEfficaciteActuelle(KpiSnapshot snapshot) {
+        long total = snapshot.getTotalFichesSuivi();
+        long termines = snapshot.getStatutsSuivi().getOrDefault("TERMINE", 0L);
+        return total > 0 ? Math.round((double) termines / total * 10000.0) / 100.0 : 0.0;
     }
-} 
\ No newline at end of file
+}
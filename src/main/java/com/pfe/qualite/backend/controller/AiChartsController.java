@@ -1,6 +1,7 @@
 package com.pfe.qualite.backend.controller;
 
 import com.pfe.qualite.backend.service.AiChartsService;
+import com.pfe.qualite.backend.service.SerieTemporelleService.Granularite;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -15,12 +16,15 @@ public class AiChartsController {
     @Autowired
     private AiChartsService aiChartsService;
 
-    // Récupérer les données de tendance
+    // Récupérer les données de tendance (granularite : jour, semaine ou mois)
     @GetMapping("/trends")
-    public ResponseEntity<Map<String, Object>> getTrendData(@RequestParam(defaultValue = "8") int period) {
+    public ResponseEntity<Map<String, Object>> getTrendData(@RequestParam(defaultValue = "8") int period,
+                                                            @RequestParam(defaultValue = "mois") String granularite) {
         try {
-            Map<String, Object> trendData = aiChartsService.getTrendData(period);
+            Map<String, Object> trendData = aiChartsService.getTrendData(period, Granularite.parse(granularite));
             return ResponseEntity.ok(trendData);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body(Map.of("error", "Erreur lors de la récupération des données de tendance: " + e.getMessage()));
         }
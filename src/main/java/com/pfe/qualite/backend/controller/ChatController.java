@@ -7,12 +7,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -25,78 +30,154 @@ public class ChatController {
     private GeminiService geminiService;
 
     // Rate limiting simple (en production, utiliser Redis ou similaire)
-    private final Map<String, Long> lastRequestTime = new HashMap<>();
+    private final Map<String, Long> lastRequestTime = new ConcurrentHashMap<>();
     private static final long MIN_REQUEST_INTERVAL = 3000; // 3 secondes
+    private static final long DUREE_MAX_FLUX = 120000; // 2 minutes
 
+    /**
+     * Réponse asynchrone : le thread de requête est libéré pendant l'appel à Gemini
+     */
     @PostMapping("/message")
-    public ResponseEntity<ChatResponse> sendMessage(@RequestBody ChatRequest request) {
+    public CompletableFuture<ResponseEntity<ChatResponse>> sendMessage(@RequestBody ChatRequest request) {
         try {
-            // Validation
-            if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
-                return ResponseEntity.badRequest().body(
-                    ChatResponse.builder()
-                        .message("Le message ne peut pas être vide.")
-                        .type("error")
-                        .timestamp(new Date())
-                        .isTyping(false)
-                        .build()
-                );
+            ResponseEntity<ChatResponse> refus = verifierRequete(request);
+            if (refus != null) {
+                return CompletableFuture.completedFuture(refus);
             }
+            String userId = userId(request);
 
-            if (request.getMessage().length() > 500) {
-                return ResponseEntity.badRequest().body(
-                    ChatResponse.builder()
-                        .message("Le message est trop long (maximum 500 caractères).")
-                        .type("error")
-                        .timestamp(new Date())
-                        .isTyping(false)
-                        .build()
-                );
-            }
+            // Appeler le service Gemini
+            return geminiService.chatAsync(request.getMessage(), userId)
+                .thenApply(response -> {
+                    logger.info("Chat message processed for user: {}", userId);
+                    return ResponseEntity.ok(
+                        ChatResponse.builder()
+                            .message(response)
+                            .type("success")
+                            .timestamp(new Date())
+                            .isTyping(false)
+                            .build()
+                    );
+                })
+                .exceptionally(this::erreurInterne);
 
-            // Rate limiting simple
-            String userId = request.getUserId() != null ? request.getUserId() : "anonymous";
-            Long lastTime = lastRequestTime.get(userId);
-            long currentTime = System.currentTimeMillis();
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(erreurInterne(e));
+        }
+    }
 
-            if (lastTime != null && (currentTime - lastTime) < MIN_REQUEST_INTERVAL) {
-                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(
-                    ChatResponse.builder()
-                        .message("Trop de requêtes. Veuillez patienter quelques secondes.")
-                        .type("error")
+    /**
+     * Réponse en flux (Server-Sent Events) : un évènement « fragment » par morceau de texte reçu de Gemini,
+     * puis « fin ». Une requête refusée reçoit un unique évènement « erreur ».
+     * Aucun thread de servlet n'est occupé pendant que le flux est ouvert.
+     */
+    @PostMapping(value = "/message/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamMessage(@RequestBody ChatRequest request) {
+        SseEmitter emitter = new SseEmitter(DUREE_MAX_FLUX);
+        ResponseEntity<ChatResponse> refus = verifierRequete(request);
+        if (refus != null) {
+            envoyer(emitter, "erreur", refus.getBody());
+            emitter.complete();
+            return ResponseEntity.status(refus.getStatusCode()).body(emitter);
+        }
+        String userId = userId(request);
+
+        geminiService.chatEnFlux(request.getMessage(), userId, fragment ->
+                envoyer(emitter, "fragment", ChatResponse.builder()
+                    .message(fragment)
+                    .type("fragment")
+                    .timestamp(new Date())
+                    .isTyping(true)
+                    .build()))
+            .whenComplete((v, e) -> {
+                if (e != null) {
+                    envoyer(emitter, "erreur", erreurInterne(e).getBody());
+                } else {
+                    logger.info("Chat stream processed for user: {}", userId);
+                    envoyer(emitter, "fin", ChatResponse.builder()
+                        .type("success")
                         .timestamp(new Date())
                         .isTyping(false)
-                        .build()
-                );
-            }
-
-            lastRequestTime.put(userId, currentTime);
-
-            // Appeler le service Gemini
-            String response = geminiService.chat(request.getMessage(), userId);
+                        .build());
+                }
+                emitter.complete();
+            });
+        return ResponseEntity.ok(emitter);
+    }
 
-            logger.info("Chat message processed for user: {}", userId);
+    /**
+     * Validation et limitation de débit communes aux deux endpoints
+     * @return la réponse d'erreur, ou null si la requête est acceptée
+     */
+    private ResponseEntity<ChatResponse> verifierRequete(ChatRequest request) {
+        // Validation
+        if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(
+                ChatResponse.builder()
+                    .message("Le message ne peut pas être vide.")
+                    .type("error")
+                    .timestamp(new Date())
+                    .isTyping(false)
+                    .build()
+            );
+        }
 
-            return ResponseEntity.ok(
+        if (request.getMessage().length() > 500) {
+            return ResponseEntity.badRequest().body(
                 ChatResponse.builder()
-                    .message(response)
-                    .type("success")
+                    .message("Le message est trop long (maximum 500 caractères).")
+                    .type("error")
                     .timestamp(new Date())
                     .isTyping(false)
                     .build()
             );
+        }
 
-        } catch (Exception e) {
-            logger.error("Error processing chat message: ", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+        // Rate limiting simple
+        String userId = userId(request);
+        Long lastTime = lastRequestTime.get(userId);
+        long currentTime = System.currentTimeMillis();
+
+        if (lastTime != null && (currentTime - lastTime) < MIN_REQUEST_INTERVAL) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(
                 ChatResponse.builder()
-                    .message("Désolé, une erreur s'est produite. Veuillez réessayer.")
+                    .message("Trop de requêtes. Veuillez patienter quelques secondes.")
                     .type("error")
                     .timestamp(new Date())
                     .isTyping(false)
                     .build()
             );
         }
+
+        lastRequestTime.put(userId, currentTime);
+        return null;
+    }
+
+    private static String userId(ChatRequest request) {
+        return request.getUserId() != null ? request.getUserId() : "anonymous";
+    }
+
+    /**
+     * Envoie un évènement SSE ; un client déconnecté n'interrompt pas le traitement
+     */
+    private void envoyer(SseEmitter emitter, String evenement, ChatResponse contenu) {
+        try {
+            emitter.send(SseEmitter.event().name(evenement).data(contenu, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Chat stream event '{}' not delivered: {}", evenement, e.getMessage());
+        }
+    }
+
+    private ResponseEntity<ChatResponse> erreurInterne(Throwable e) {
+        logger.error("Error processing chat message: ", e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+            ChatResponse.builder()
+                .message("Désolé, une erreur s'est produite. Veuillez réessayer.")
+                .type("error")
+                .timestamp(new Date())
+                .isTyping(false)
+                .build()
+        );
     }
 
     @GetMapping("/health")
@@ -9,6 +9,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -17,9 +18,8 @@ import java.util.Map;
 
 /**
  * Contrôleur pour l'export de rapports
- * Désactivé temporairement - Sprint 2 (dépend de RapportKpiService)
  */
-// @RestController  // Désactivé temporairement
+@RestController
 @RequestMapping("/api/export")
 @CrossOrigin("*")
 @RequiredArgsConstructor
@@ -87,4 +87,34 @@ public class ExportController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    /**
+     * Exporte toutes les fiches qualité en Excel (flux, mémoire constante)
+     */
+    @GetMapping("/fiches-qualite/excel")
+    public ResponseEntity<StreamingResponseBody> exportFichesQualiteExcel() {
+        log.info("Demande d'export des fiches qualité en Excel");
+        StreamingResponseBody body = out -> exportService.streamFichesQualiteToExcel(out);
+        return fichierExcel("fiches_qualite", body);
+    }
+
+    /**
+     * Exporte toutes les fiches de suivi en Excel (flux, mémoire constante)
+     */
+    @GetMapping("/fiches-suivi/excel")
+    public ResponseEntity<StreamingResponseBody> exportFichesSuiviExcel() {
+        log.info("Demande d'export des fiches de suivi en Excel");
+        StreamingResponseBody body = out -> exportService.streamFichesSuiviToExcel(out);
+        return fichierExcel("fiches_suivi", body);
+    }
+
+    private ResponseEntity<StreamingResponseBody> fichierExcel(String prefixe, StreamingResponseBody body) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
+        headers.setContentDispositionFormData("attachment", prefixe + "_" + timestamp + ".xlsx");
+        
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
 }
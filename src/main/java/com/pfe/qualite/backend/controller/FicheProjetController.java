@@ -1,9 +1,12 @@
 package com.pfe.qualite.backend.controller;
 
+import com.pfe.qualite.backend.dto.KeysetPageRequest;
 import com.pfe.qualite.backend.model.FicheProjet;
 import com.pfe.qualite.backend.service.FicheProjetService;
 import com.pfe.qualite.backend.service.HistoriqueService;
+import com.pfe.qualite.backend.util.KeysetPaginator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -21,9 +24,16 @@ public class FicheProjetController {
     @Autowired
     private HistoriqueService historiqueService;
 
+    @Autowired
+    private KeysetPaginator keysetPaginator;
+
+    // Pagination par curseur optionnelle : ?limit=&cursor=&sort=&fields=&total=true
     @GetMapping
-    public List<FicheProjet> getAll() {
-        return ficheProjetService.getAll();
+    public ResponseEntity<List<FicheProjet>> getAll(KeysetPageRequest pagination) {
+        if (pagination.isActive()) {
+            return keysetPaginator.paginer(FicheProjet.class, pagination).toResponseEntity();
+        }
+        return ResponseEntity.ok(ficheProjetService.getAll());
     }
 
     @GetMapping("/{id}")
@@ -1,7 +1,9 @@
 package com.pfe.qualite.backend.controller;
 
+import com.pfe.qualite.backend.dto.KeysetPageRequest;
 import com.pfe.qualite.backend.model.FicheQualite;
 import com.pfe.qualite.backend.service.FicheQualiteService;
+import com.pfe.qualite.backend.util.KeysetPaginator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -21,12 +23,17 @@ import java.util.List;
 public class FicheQualiteController {
 
     private final FicheQualiteService ficheQualiteService;
+    private final KeysetPaginator keysetPaginator;
 
     /**
      * Récupère toutes les fiches qualité
+     * Pagination par curseur optionnelle : ?limit=&cursor=&sort=&fields=&total=true
      */
     @GetMapping
-    public ResponseEntity<List<FicheQualite>> getAll() {
+    public ResponseEntity<List<FicheQualite>> getAll(KeysetPageRequest pagination) {
+        if (pagination.isActive()) {
+            return keysetPaginator.paginer(FicheQualite.class, pagination).toResponseEntity();
+        }
         List<FicheQualite> fiches = ficheQualiteService.getAllFiches();
         return ResponseEntity.ok(fiches);
     }
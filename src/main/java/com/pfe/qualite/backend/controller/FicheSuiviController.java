@@ -1,7 +1,9 @@
 package com.pfe.qualite.backend.controller;
 
+import com.pfe.qualite.backend.dto.KeysetPageRequest;
 import com.pfe.qualite.backend.model.FicheSuivi;
 import com.pfe.qualite.backend.service.FicheSuiviService;
+import com.pfe.qualite.backend.util.KeysetPaginator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -21,12 +23,17 @@ import java.util.List;
 public class FicheSuiviController {
 
     private final FicheSuiviService ficheSuiviService;
+    private final KeysetPaginator keysetPaginator;
 
     /**
      * Récupère toutes les fiches de suivi
+     * Pagination par curseur optionnelle : ?limit=&cursor=&sort=&fields=&total=true
      */
     @GetMapping
-    public ResponseEntity<List<FicheSuivi>> getAll() {
+    public ResponseEntity<List<FicheSuivi>> getAll(KeysetPageRequest pagination) {
+        if (pagination.isActive()) {
+            return keysetPaginator.paginer(FicheSuivi.class, pagination).toResponseEntity();
+        }
         List<FicheSuivi> fichesSuivi = ficheSuiviService.getAllFichesSuivi();
         return ResponseEntity.ok(fichesSuivi);
     }
@@ -1,12 +1,20 @@
 package com.pfe.qualite.backend.controller;
 
+import com.pfe.qualite.backend.dto.UploadFragmenteRequest;
 import com.pfe.qualite.backend.model.Attachment;
+import com.pfe.qualite.backend.model.UploadFragmente;
 import com.pfe.qualite.backend.repository.AttachmentRepository;
 import com.pfe.qualite.backend.service.FileStorageService;
+import com.pfe.qualite.backend.service.MiniatureService;
+import com.pfe.qualite.backend.service.TelechargementFichierService;
+import com.pfe.qualite.backend.service.UploadFragmenteService;
 import com.pfe.qualite.backend.util.JwtUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -15,10 +23,18 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Contrôleur pour la gestion des fichiers
@@ -31,6 +47,9 @@ import java.util.Map;
 public class FileUploadController {
 
     private final FileStorageService fileStorageService;
+    private final TelechargementFichierService telechargementFichierService;
+    private final UploadFragmenteService uploadFragmenteService;
+    private final MiniatureService miniatureService;
     private final AttachmentRepository attachmentRepository;
     private final JwtUtil jwtUtil;
 
@@ -47,6 +66,10 @@ public class FileUploadController {
     // Taille maximale: 10 MB
     private static final long MAX_FILE_SIZE_MB = 10;
 
+    // Taille maximale d'un upload en streaming : le corps n'est jamais tenu en mémoire
+    @Value("${file.stream.taille-max-mb:100}")
+    private long maxStreamSizeMb;
+
     /**
      * Upload un fichier
      */
@@ -74,23 +97,12 @@ public class FileUploadController {
                 return ResponseEntity.badRequest().body(createErrorResponse("Fichier trop volumineux (max " + MAX_FILE_SIZE_MB + " MB)"));
             }
 
-            // Stocker le fichier
-            String storedFileName = fileStorageService.storeFile(file);
+            // Stocker le contenu (dédupliqué par empreinte)
+            String sha256 = fileStorageService.storeFile(file);
 
             // Créer l'enregistrement dans la base de données
-            Attachment attachment = Attachment.builder()
-                    .originalFileName(file.getOriginalFilename())
-                    .storedFileName(storedFileName)
-                    .contentType(file.getContentType())
-                    .fileSize(file.getSize())
-                    .entityType(entityType)
-                    .entityId(entityId)
-                    .uploadedBy(getUserIdFromRequest(request))
-                    .uploadedAt(new Date())
-                    .description(description)
-                    .build();
-
-            Attachment savedAttachment = attachmentRepository.save(attachment);
+            Attachment savedAttachment = saveAttachment(file.getOriginalFilename(), file.getContentType(), file.getSize(),
+                    sha256, entityType, entityId, description, request);
 
             log.info("Fichier uploadé avec succès: {} pour {}/{}", 
                      file.getOriginalFilename(), entityType, entityId);
@@ -105,33 +117,149 @@ public class FileUploadController {
     }
 
     /**
-     * Télécharge un fichier
+     * Upload d'un fichier envoyé brut dans le corps de la requête (type MIME en Content-Type,
+     * nom encodé en URL dans X-File-Name). Le corps est lu une seule fois et écrit directement
+     * dans le stockage, sans fichier multipart intermédiaire.
      */
-    @GetMapping("/download/{fileId}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String fileId, HttpServletRequest request) {
-        try {
-            // Récupérer l'attachment depuis la base de données
-            Attachment attachment = attachmentRepository.findById(fileId)
-                    .orElseThrow(() -> new RuntimeException("Fichier non trouvé"));
+    @PostMapping("/upload/stream")
+    public ResponseEntity<?> uploadFileStream(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestHeader("X-File-Name") String encodedFileName,
+            @RequestParam("entityType") String entityType,
+            @RequestParam("entityId") String entityId,
+            @RequestParam(value = "description", required = false) String description,
+            HttpServletRequest request) {
 
-            // Charger le fichier
-            Resource resource = fileStorageService.loadFileAsResource(attachment.getStoredFileName());
+        try {
+            if (!fileStorageService.isValidFileType(contentType, ALLOWED_TYPES)) {
+                return ResponseEntity.badRequest().body(createErrorResponse("Type de fichier non autorisé"));
+            }
 
-            // Déterminer le type de contenu
-            String contentType = attachment.getContentType();
-            if (contentType == null) {
-                contentType = "application/octet-stream";
+            // Refus immédiat si la taille annoncée dépasse déjà la limite ; sinon contrôlée à la lecture
+            long maxSizeBytes = maxStreamSizeMb * 1024 * 1024;
+            if (request.getContentLengthLong() > maxSizeBytes) {
+                return ResponseEntity.badRequest().body(createErrorResponse("Fichier trop volumineux (max " + maxStreamSizeMb + " MB)"));
             }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, 
-                            "attachment; filename=\"" + attachment.getOriginalFileName() + "\"")
-                    .body(resource);
+            String fileName = URLDecoder.decode(encodedFileName, StandardCharsets.UTF_8);
+            FileStorageService.FichierStocke stocke = fileStorageService.storeStream(request.getInputStream(), contentType, maxSizeBytes);
+
+            Attachment savedAttachment = saveAttachment(fileName, contentType, stocke.getTaille(), stocke.getEmpreinte(),
+                    entityType, entityId, description, request);
+
+            log.info("Fichier uploadé avec succès: {} pour {}/{}", fileName, entityType, entityId);
+
+            return ResponseEntity.ok(savedAttachment);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
         } catch (Exception e) {
+            log.error("Erreur lors de l'upload du fichier", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Erreur lors de l'upload: " + e.getMessage()));
+        }
+    }
+
+    // ==================== Uploads par morceaux ====================
+
+    /**
+     * Ouvre un upload par morceaux ; la réponse donne la taille des morceaux à envoyer
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<?> initiateChunkedUpload(@RequestBody UploadFragmenteRequest uploadRequest,
+                                                   HttpServletRequest request) {
+        if (!fileStorageService.isValidFileType(uploadRequest.getContentType(), ALLOWED_TYPES)) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Type de fichier non autorisé"));
+        }
+        try {
+            UploadFragmente upload = uploadFragmenteService.ouvrir(uploadRequest, getUserIdFromRequest(request));
+            return ResponseEntity.status(HttpStatus.CREATED).body(createChunkedUploadStatus(upload));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Reçoit le morceau n° index (corps brut) ; les morceaux peuvent être envoyés en parallèle et dans le désordre
+     */
+    @PutMapping("/uploads/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(@PathVariable String uploadId, @PathVariable int index,
+                                         HttpServletRequest request) throws IOException {
+        try {
+            UploadFragmente upload = uploadFragmenteService.ecrireChunk(uploadId, index, request.getInputStream(),
+                    request.getContentLengthLong(), getUserIdFromRequest(request));
+            return ResponseEntity.ok(createChunkedUploadStatus(upload));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * État d'un upload par morceaux : le client reprend en renvoyant les morceaux manquants
+     */
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> getChunkedUploadStatus(@PathVariable String uploadId, HttpServletRequest request) {
+        UploadFragmente upload = uploadFragmenteService.lire(uploadId, getUserIdFromRequest(request));
+        return ResponseEntity.ok(createChunkedUploadStatus(upload));
+    }
+
+    /**
+     * Termine un upload par morceaux et crée la pièce jointe
+     */
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<?> completeChunkedUpload(@PathVariable String uploadId, HttpServletRequest request) {
+        UploadFragmente upload = uploadFragmenteService.lire(uploadId, getUserIdFromRequest(request));
+        try {
+            FileStorageService.FichierStocke stocke = uploadFragmenteService.terminer(upload);
+            Attachment savedAttachment = saveAttachment(upload.getOriginalFileName(), upload.getContentType(),
+                    stocke.getTaille(), stocke.getEmpreinte(), upload.getEntityType(), upload.getEntityId(),
+                    upload.getDescription(), request);
+
+            log.info("Fichier uploadé par morceaux avec succès: {} pour {}/{}",
+                     upload.getOriginalFileName(), upload.getEntityType(), upload.getEntityId());
+
+            return ResponseEntity.ok(savedAttachment);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Abandonne un upload par morceaux
+     */
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> cancelChunkedUpload(@PathVariable String uploadId, HttpServletRequest request) {
+        uploadFragmenteService.annuler(uploadFragmenteService.lire(uploadId, getUserIdFromRequest(request)));
+        return ResponseEntity.ok(createSuccessResponse("Upload annulé"));
+    }
+
+    /**
+     * Télécharge un fichier (requêtes Range et If-None-Match prises en charge)
+     */
+    @GetMapping("/download/{fileId}")
+    public void downloadFile(@PathVariable String fileId, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        Optional<Attachment> attachment = attachmentRepository.findById(fileId);
+        if (attachment.isEmpty()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        try {
+            telechargementFichierService.envoyer(attachment.get(), request, response);
+        } catch (RuntimeException | IOException e) {
+            if (response.isCommitted()) {
+                // Envoi déjà commencé (client déconnecté, fichier retiré en cours de lecture) : rien d'autre à répondre
+                log.warn("Téléchargement interrompu du fichier {}: {}", fileId, e.getMessage());
+                return;
+            }
             log.error("Erreur lors du téléchargement du fichier: {}", fileId, e);
-            return ResponseEntity.notFound().build();
+            // Retire les en-têtes déjà posés (ETag, Content-Disposition...) avant de répondre 404
+            response.reset();
+            response.setStatus(HttpStatus.NOT_FOUND.value());
         }
     }
 
@@ -157,6 +285,32 @@ public class FileUploadController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Miniature JPEG d'une image ou d'un PDF, générée en arrière-plan.
+     * 202 tant que la génération est en attente (pièce jointe de l'ancien stockage pas encore reprise
+     * comprise), 404 si le fichier n'a pas d'aperçu possible.
+     */
+    @GetMapping("/{fileId}/thumbnail")
+    public ResponseEntity<Resource> getThumbnail(@PathVariable String fileId) {
+        Optional<Attachment> attachment = attachmentRepository.findById(fileId);
+        if (attachment.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        String empreinte = attachment.get().getSha256();
+        Path thumbnail = empreinte != null ? fileStorageService.getThumbnailPath(empreinte) : null;
+        if (thumbnail == null || !Files.exists(thumbnail)) {
+            return miniatureService.planifier(attachment.get())
+                    ? ResponseEntity.accepted().header(HttpHeaders.RETRY_AFTER, "2").build()
+                    : ResponseEntity.notFound().build();
+        }
+        // Le contenu d'une pièce jointe ne change jamais : la miniature peut rester en cache
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable())
+                .eTag(attachment.get().getSha256())
+                .body(new FileSystemResource(thumbnail));
+    }
+
     /**
      * Supprime un fichier
      */
@@ -177,8 +331,8 @@ public class FileUploadController {
                         .body(createErrorResponse("Vous n'avez pas la permission de supprimer ce fichier"));
             }
 
-            // Supprimer le fichier physique
-            fileStorageService.deleteFile(attachment.getStoredFileName());
+            // Retirer la référence au contenu
+            deleteContent(attachment);
 
             // Supprimer l'enregistrement de la base de données
             attachmentRepository.deleteById(fileId);
@@ -206,9 +360,9 @@ public class FileUploadController {
         try {
             List<Attachment> attachments = attachmentRepository.findByEntityTypeAndEntityId(entityType, entityId);
 
-            // Supprimer les fichiers physiques
+            // Retirer les références aux contenus
             for (Attachment attachment : attachments) {
-                fileStorageService.deleteFile(attachment.getStoredFileName());
+                deleteContent(attachment);
             }
 
             // Supprimer les enregistrements
@@ -236,6 +390,45 @@ public class FileUploadController {
         return jwtUtil.extractUserIdFromRequest(request);
     }
 
+    /**
+     * Enregistre la pièce jointe d'un contenu stocké et planifie sa miniature ;
+     * la référence au contenu est rendue si l'enregistrement échoue
+     */
+    private Attachment saveAttachment(String originalFileName, String contentType, long fileSize, String sha256,
+                                      String entityType, String entityId, String description, HttpServletRequest request) {
+        Attachment attachment = Attachment.builder()
+                .originalFileName(originalFileName)
+                .contentType(contentType)
+                .fileSize(fileSize)
+                .sha256(sha256)
+                .entityType(entityType)
+                .entityId(entityId)
+                .uploadedBy(getUserIdFromRequest(request))
+                .uploadedAt(new Date())
+                .description(description)
+                .build();
+        Attachment savedAttachment;
+        try {
+            savedAttachment = attachmentRepository.save(attachment);
+        } catch (RuntimeException e) {
+            fileStorageService.deleteFile(sha256);
+            throw e;
+        }
+        miniatureService.planifier(savedAttachment);
+        return savedAttachment;
+    }
+
+    /**
+     * Libère le contenu d'une pièce jointe (blob partagé ou fichier de l'ancien stockage)
+     */
+    private void deleteContent(Attachment attachment) {
+        if (attachment.getStoredFileName() != null) {
+            fileStorageService.supprimerAncienFichier(attachment.getStoredFileName());
+        } else {
+            fileStorageService.deleteFile(attachment.getSha256());
+        }
+    }
+
     /**
      * Crée une réponse d'erreur
      */
@@ -245,6 +438,23 @@ public class FileUploadController {
         return response;
     }
 
+    /**
+     * Crée l'état d'un upload par morceaux
+     */
+    private Map<String, Object> createChunkedUploadStatus(UploadFragmente upload) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("uploadId", upload.getId());
+        response.put("fileName", upload.getOriginalFileName());
+        response.put("fileSize", upload.getFileSize());
+        response.put("chunkSize", upload.getChunkSize());
+        response.put("totalChunks", upload.getTotalChunks());
+        response.put("receivedChunks", upload.getReceivedChunks() != null ? upload.getReceivedChunks().size() : 0);
+        response.put("missingChunks", uploadFragmenteService.manquants(upload));
+        response.put("status", upload.getStatut());
+        response.put("expiresAt", upload.getExpiration());
+        return response;
+    }
+
     /**
      * Crée une réponse de succès
      */
@@ -1,8 +1,10 @@
 package com.pfe.qualite.backend.controller;
 
+import com.pfe.qualite.backend.dto.KeysetPageRequest;
 import com.pfe.qualite.backend.model.FormulaireObligatoire;
 import com.pfe.qualite.backend.service.FormulaireObligatoireService;
 import com.pfe.qualite.backend.service.HistoriqueService;
+import com.pfe.qualite.backend.util.KeysetPaginator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -21,6 +23,9 @@ public class FormulaireObligatoireController {
     @Autowired
     private HistoriqueService historiqueService;
 
+    @Autowired
+    private KeysetPaginator keysetPaginator;
+
     /**
      * Créer un nouveau formulaire obligatoire
      */
@@ -41,9 +46,13 @@ public class FormulaireObligatoireController {
 
     /**
      * Récupérer tous les formulaires obligatoires
+     * Pagination par curseur optionnelle : ?limit=&cursor=&sort=&fields=&total=true
      */
     @GetMapping
-    public ResponseEntity<List<FormulaireObligatoire>> getAllFormulairesObligatoires() {
+    public ResponseEntity<List<FormulaireObligatoire>> getAllFormulairesObligatoires(KeysetPageRequest pagination) {
+        if (pagination.isActive()) {
+            return keysetPaginator.paginer(FormulaireObligatoire.class, pagination).toResponseEntity();
+        }
         List<FormulaireObligatoire> formulaires = formulaireService.getAllFormulairesObligatoires();
         return ResponseEntity.ok(formulaires);
     }
@@ -3,13 +3,15 @@ package com.pfe.qualite.backend.controller;
 import com.pfe.qualite.backend.model.HistoriqueAction;
 import com.pfe.qualite.backend.service.HistoriqueService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Date;
@@ -142,38 +144,36 @@ public class HistoriqueController {
      * Filtres avancés
      */
     @PostMapping("/filtres")
-    public ResponseEntity<List<HistoriqueAction>> getHistoriqueFiltres(@RequestBody FiltresHistoriqueRequest filtres) {
-        return ResponseEntity.ok(historiqueService.getHistoriqueFiltres(filtres));
+    public ResponseEntity<List<HistoriqueAction>> getHistoriqueFiltres(
+            @RequestBody FiltresHistoriqueRequest filtres,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(defaultValue = "50") int size) {
+        if (page == null) {
+            return ResponseEntity.ok(historiqueService.getHistoriqueFiltres(filtres));
+        }
+        // Pagination côté serveur : le total est renvoyé dans l'en-tête X-Total-Count
+        Page<HistoriqueAction> resultat = historiqueService.getHistoriqueFiltres(
+                filtres, PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 500)));
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(resultat.getTotalElements()))
+                .body(resultat.getContent());
     }
 
     /**
-     * Export CSV simple (servi en text/csv)
+     * Export CSV (servi en text/csv, ou compressé en .csv.gz avec gzip=true)
+     * Écrit en flux depuis un curseur MongoDB : mémoire constante et premier octet immédiat
      */
-    @PostMapping(value = "/export", produces = "text/csv")
-    public ResponseEntity<byte[]> exportCsv(@RequestBody(required = false) FiltresHistoriqueRequest filtres) {
-        List<HistoriqueAction> data = (filtres != null) ? historiqueService.getHistoriqueFiltres(filtres) : historiqueService.getAll();
-        StringBuilder sb = new StringBuilder();
-        sb.append("date;utilisateur;action;module;entiteId;details\n");
-        for (HistoriqueAction a : data) {
-            sb.append(escape(a.getDateAction()))
-              .append(';').append(escape(a.getUtilisateurNom()))
-              .append(';').append(escape(a.getAction()))
-              .append(';').append(escape(a.getEntite()))
-              .append(';').append(escape(a.getEntiteId()))
-              .append(';').append(escape(a.getDetails()))
-              .append('\n');
-        }
-        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+    @PostMapping(value = "/export", produces = {"text/csv", "application/gzip"})
+    public ResponseEntity<StreamingResponseBody> exportCsv(
+            @RequestBody(required = false) FiltresHistoriqueRequest filtres,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        StreamingResponseBody body = out -> historiqueService.exporterCsv(filtres, out, gzip);
         return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=historique.csv")
-                .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
-                .body(bytes);
-    }
-
-    private String escape(Object value) {
-        if (value == null) return "";
-        String s = value.toString();
-        return s.replace(";", ",").replace("\n", " ");
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=historique.csv" + (gzip ? ".gz" : ""))
+                .contentType(gzip
+                        ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType("text/csv; charset=UTF-8"))
+                .body(body);
     }
 
     public static class FiltresHistoriqueRequest {
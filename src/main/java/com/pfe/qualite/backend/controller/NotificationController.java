@@ -1,9 +1,11 @@
 package com.pfe.qualite.backend.controller;
 
+import com.pfe.qualite.backend.dto.KeysetPageRequest;
 import com.pfe.qualite.backend.model.Notification;
 import com.pfe.qualite.backend.repository.NotificationRepository;
 import com.pfe.qualite.backend.service.MailService;
 import com.pfe.qualite.backend.repository.UtilisateurRepository;
+import com.pfe.qualite.backend.util.KeysetPaginator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -22,6 +24,9 @@ public class NotificationController {
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private KeysetPaginator keysetPaginator;
+
     @Autowired
     private UtilisateurRepository utilisateurRepository;
 
@@ -34,10 +39,13 @@ public class NotificationController {
         return notificationRepository.save(notification);
     }
 
-    // 🔹 GET : toutes les notifications
+    // 🔹 GET : toutes les notifications (pagination par curseur optionnelle : ?limit=&cursor=&sort=&fields=&total=true)
     @GetMapping
-    public List<Notification> getAll() {
-        return notificationRepository.findAll();
+    public ResponseEntity<List<Notification>> getAll(KeysetPageRequest pagination) {
+        if (pagination.isActive()) {
+            return keysetPaginator.paginer(Notification.class, pagination).toResponseEntity();
+        }
+        return ResponseEntity.ok(notificationRepository.findAll());
     }
 
     @GetMapping("/utilisateur/{utilisateurId}")
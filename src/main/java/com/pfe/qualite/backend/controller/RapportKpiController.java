@@ -1,6 +1,10 @@
 package com.pfe.qualite.backend.controller;
 
+import com.pfe.qualite.backend.model.KpiSnapshot;
+import com.pfe.qualite.backend.model.RollupQualiteJour;
+import com.pfe.qualite.backend.service.KpiSnapshotService;
 import com.pfe.qualite.backend.service.RapportKpiService;
+import com.pfe.qualite.backend.service.RollupQualiteService;
 import com.pfe.qualite.backend.service.ExportService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -11,14 +15,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Contrôleur REST pour la génération et l'export de rapports KPI
- * Désactivé temporairement - Sprint 2 (dépend de RapportKpiService)
  */
-// @RestController  // Désactivé temporairement
+@RestController
 @RequestMapping("/api/rapports-kpi")
 @CrossOrigin(origins = "*")
 @RequiredArgsConstructor
@@ -26,6 +31,8 @@ public class RapportKpiController {
 
     private final RapportKpiService rapportKpiService;
     private final ExportService exportService;
+    private final KpiSnapshotService kpiSnapshotService;
+    private final RollupQualiteService rollupQualiteService;
 
     /**
      * Générer un rapport KPI complet
@@ -36,6 +43,42 @@ public class RapportKpiController {
         return ResponseEntity.ok(rapport);
     }
 
+    /**
+     * Consulter la vue matérialisée des compteurs KPI
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<KpiSnapshot> getSnapshot() {
+        return ResponseEntity.ok(kpiSnapshotService.getSnapshot());
+    }
+
+    /**
+     * Reconstruire la vue matérialisée depuis les collections sources
+     */
+    @PostMapping("/snapshot/reconstruire")
+    public ResponseEntity<KpiSnapshot> reconstruireSnapshot() {
+        return ResponseEntity.ok(kpiSnapshotService.reconstruire());
+    }
+
+    /**
+     * Consulter les agrégats journaliers d'une période
+     */
+    @GetMapping("/rollups")
+    public ResponseEntity<List<RollupQualiteJour>> getRollups(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate dateDebut,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate dateFin) {
+        return ResponseEntity.ok(rollupQualiteService.lire(dateDebut, dateFin));
+    }
+
+    /**
+     * Recalculer les agrégats journaliers d'une période (après une correction de données, par exemple)
+     */
+    @PostMapping("/rollups/recalculer")
+    public ResponseEntity<List<RollupQualiteJour>> recalculerRollups(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate dateDebut,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate dateFin) {
+        return ResponseEntity.ok(rollupQualiteService.recalculer(dateDebut, dateFin));
+    }
+
     /**
      * Générer un rapport KPI par période
      */
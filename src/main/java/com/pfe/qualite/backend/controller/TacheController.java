@@ -1,8 +1,10 @@
 package com.pfe.qualite.backend.controller;
 
+import com.pfe.qualite.backend.dto.KeysetPageRequest;
 import com.pfe.qualite.backend.model.Tache;
 import com.pfe.qualite.backend.model.TacheStats;
 import com.pfe.qualite.backend.service.TacheService;
+import com.pfe.qualite.backend.util.KeysetPaginator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -20,13 +22,20 @@ public class TacheController {
     
     @Autowired
     private TacheService tacheService;
+
+    @Autowired
+    private KeysetPaginator keysetPaginator;
     
     /**
      * Récupérer toutes les tâches
+     * Pagination par curseur optionnelle : ?limit=&cursor=&sort=&fields=&total=true
      */
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'PILOTE_QUALITE')")
-    public ResponseEntity<List<Tache>> getAllTaches() {
+    public ResponseEntity<List<Tache>> getAllTaches(KeysetPageRequest pagination) {
+        if (pagination.isActive()) {
+            return keysetPaginator.paginer(Tache.class, pagination).toResponseEntity();
+        }
         List<Tache> taches = tacheService.getAllTaches();
         return ResponseEntity.ok(taches);
     }
@@ -1,9 +1,11 @@
 package com.pfe.qualite.backend.controller;
 
+import com.pfe.qualite.backend.dto.KeysetPageRequest;
 import com.pfe.qualite.backend.model.Utilisateur;
 import com.pfe.qualite.backend.service.UtilisateurService;
 import com.pfe.qualite.backend.service.HistoriqueService;
 import com.pfe.qualite.backend.util.JwtUtil;
+import com.pfe.qualite.backend.util.KeysetPaginator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -29,14 +31,25 @@ public class UtilisateurController {
     private final UtilisateurService utilisateurService;
     private final HistoriqueService historiqueService;
     private final JwtUtil jwtUtil;
+    private final KeysetPaginator keysetPaginator;
 
     /**
      * Récupérer tous les utilisateurs
+     * Pagination par curseur optionnelle : ?limit=&cursor=&sort=&fields=&total=true
      */
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<Utilisateur>> getAllUtilisateurs() {
+    public ResponseEntity<List<Utilisateur>> getAllUtilisateurs(KeysetPageRequest pagination) {
         log.info("GET /api/utilisateurs - Récupération de tous les utilisateurs");
+        if (pagination.isActive()) {
+            // Le curseur embarque la valeur du champ de tri : jamais le mot de passe
+            if (pagination.getSort() != null && pagination.getSort().trim().startsWith("password")) {
+                throw new IllegalArgumentException("Tri non autorisé sur ce champ");
+            }
+            ResponseEntity<List<Utilisateur>> page = keysetPaginator.paginer(Utilisateur.class, pagination).toResponseEntity();
+            page.getBody().forEach(u -> u.setPassword(null));
+            return page;
+        }
         List<Utilisateur> utilisateurs = utilisateurService.getAllUtilisateurs();
         
         // Ne pas retourner les mots de passe
@@ -0,0 +1,36 @@
+package com.pfe.qualite.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * Page de résultats d'une pagination par curseur
+ */
+@Getter
+@AllArgsConstructor
+public class KeysetPage<T> {
+
+    public static final String ENTETE_CURSEUR = "X-Next-Cursor";
+    public static final String ENTETE_TOTAL = "X-Total-Count";
+
+    private final List<T> contenu;
+    private final String curseurSuivant; // null sur la dernière page
+    private final Long total;            // null si non demandé
+
+    /**
+     * Corps = liste (format inchangé pour le front), métadonnées dans les en-têtes
+     */
+    public ResponseEntity<List<T>> toResponseEntity() {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (curseurSuivant != null) {
+            builder.header(ENTETE_CURSEUR, curseurSuivant);
+        }
+        if (total != null) {
+            builder.header(ENTETE_TOTAL, String.valueOf(total));
+        }
+        return builder.body(contenu);
+    }
+}
@@ -0,0 +1,34 @@
+package com.pfe.qualite.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Paramètres de pagination par curseur (keyset) des endpoints de liste
+ * Exemple : GET /api/fiches?limit=50&sort=dateCreation,desc&fields=titre,statut&cursor=...
+ */
+@Data
+@NoArgsConstructor
+public class KeysetPageRequest {
+
+    public static final int LIMITE_DEFAUT = 50;
+    public static final int LIMITE_MAX = 500;
+
+    private Integer limit;      // Taille de page
+    private String cursor;      // Jeton renvoyé dans l'en-tête X-Next-Cursor de la page précédente
+    private String sort;        // "champ" ou "champ,asc|desc" (défaut : id,asc)
+    private String fields;      // Projection optionnelle : "champ1,champ2"
+    private boolean total;      // Calculer l'en-tête X-Total-Count
+
+    /**
+     * Sans limite ni curseur, les endpoints conservent leur réponse complète historique
+     */
+    public boolean isActive() {
+        return limit != null || cursor != null;
+    }
+
+    public int limiteEffective() {
+        int l = limit != null ? limit : LIMITE_DEFAUT;
+        return Math.max(1, Math.min(l, LIMITE_MAX));
+    }
+}
@@ -0,0 +1,20 @@
+package com.pfe.qualite.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ouverture d'un upload par morceaux (POST /api/files/uploads)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadFragmenteRequest {
+    private String fileName;
+    private String contentType;
+    private Long fileSize;
+    private String entityType;
+    private String entityId;
+    private String description;
+}
@@ -28,7 +28,7 @@ public class Attachment {
     private String originalFileName;
     
     /**
-     * Nom du fichier stocké (unique)
+     * Nom du fichier dans l'ancien stockage à plat ; null une fois le contenu repris par BlobMigration
      */
     private String storedFileName;
     
@@ -42,6 +42,11 @@ public class Attachment {
      */
     private Long fileSize;
     
+    /**
+     * Empreinte SHA-256 du contenu (hexadécimal) : identifiant du blob stocké et ETag fort au téléchargement
+     */
+    private String sha256;
+    
     /**
      * Type d'entité associée (FICHE_QUALITE, FICHE_SUIVI, PROJET, etc.)
      */
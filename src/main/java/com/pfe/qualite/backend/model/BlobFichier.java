@@ -0,0 +1,39 @@
+package com.pfe.qualite.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Contenu stocké une seule fois, partagé par toutes les pièces jointes identiques
+ */
+@Document(collection = "blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BlobFichier {
+
+    /**
+     * Empreinte SHA-256 du contenu (hexadécimal), qui donne aussi son chemin sur disque
+     */
+    @Id
+    private String id;
+
+    /**
+     * Taille du contenu en bytes
+     */
+    private Long taille;
+
+    /**
+     * Nombre de pièces jointes qui utilisent ce contenu ; le fichier est supprimé à zéro
+     */
+    private Integer references;
+
+    private Date dateCreation;
+}
@@ -2,6 +2,7 @@ package com.pfe.qualite.backend.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
@@ -23,10 +24,12 @@ public class FicheQualite {
     private String categorie;        // Code de la nomenclature CATEGORIE_PROJET (optionnel)
     private String priorite;         // Code de la nomenclature PRIORITE (optionnel)
     private String responsable;      // Email de l'utilisateur responsable
+    @Indexed
     private LocalDate dateEcheance;  // Date d'échéance
     private String observations;     // Observations complémentaires
     
     // Métadonnées
+    @Indexed
     private LocalDateTime dateCreation;
     private LocalDateTime dateModification;
     private String creePar;          // Email de l'utilisateur créateur
@@ -2,6 +2,7 @@ package com.pfe.qualite.backend.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
@@ -17,6 +18,7 @@ public class FicheSuivi {
     private String id;
 
     private String ficheId;
+    @Indexed
     private Date dateSuivi;
     private String etatAvancement;
     private String problemes;
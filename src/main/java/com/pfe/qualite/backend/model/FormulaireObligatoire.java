@@ -2,6 +2,7 @@ package com.pfe.qualite.backend.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
@@ -22,7 +23,9 @@ public class FormulaireObligatoire {
     private String projetId; // ID du projet concerné
     private String responsableId; // ID du responsable (chef de projet)
     private String responsableNom; // Nom du responsable
+    @Indexed
     private Date dateEcheance; // Date limite de soumission
+    @Indexed
     private Date dateCreation; // Date de création du formulaire obligatoire
     private String statut; // EN_ATTENTE, SOUMIS, EN_RETARD, ANNULE
     private String priorite; // HAUTE, MOYENNE, BASSE
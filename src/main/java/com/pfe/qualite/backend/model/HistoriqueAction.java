@@ -2,11 +2,16 @@ package com.pfe.qualite.backend.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.IndexDirection;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 
 @Document(collection = "historique_actions")
+@CompoundIndex(name = "utilisateur_date", def = "{'utilisateurId': 1, 'dateAction': -1}")
+@CompoundIndex(name = "entite_entiteId_date", def = "{'entite': 1, 'entiteId': 1, 'dateAction': -1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,6 +27,7 @@ public class HistoriqueAction {
     private String utilisateurId; // ID de l'utilisateur qui a effectué l'action
     private String utilisateurNom; // Nom de l'utilisateur
     private String details; // Détails de l'action
+    @Indexed(name = "date_action_desc", direction = IndexDirection.DESCENDING)
     private Date dateAction;
     private String anciennesValeurs; // JSON des anciennes valeurs (pour UPDATE)
     private String nouvellesValeurs; // JSON des nouvelles valeurs (pour UPDATE)
@@ -0,0 +1,55 @@
+package com.pfe.qualite.backend.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Vue matérialisée des compteurs KPI
+ * Maintenue incrémentalement à chaque création / modification / suppression
+ */
+@Document(collection = "kpi_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KpiSnapshot {
+
+    public static final String ID_GLOBAL = "GLOBAL";
+
+    @Id
+    private String id;
+
+    // Fiches qualité
+    private long totalFichesQualite;
+    @Builder.Default
+    private Map<String, Long> statutsQualite = new HashMap<>();
+    @Builder.Default
+    private Map<String, Long> typesFiche = new HashMap<>();
+
+    // Fiches de suivi
+    private long totalFichesSuivi;
+    @Builder.Default
+    private Map<String, Long> statutsSuivi = new HashMap<>();
+    @Builder.Default
+    private Map<String, Long> suivisParMois = new HashMap<>(); // Clé "yyyy-MM"
+
+    // Conformité (sommes courantes)
+    private long evaluationsConformite;
+    private long nbConformes;
+    private double sommeTauxConformite;
+
+    // Formulaires obligatoires
+    private long totalFormulaires;
+    @Builder.Default
+    private Map<String, Long> formulairesParStatut = new HashMap<>();
+    @Builder.Default
+    private Map<String, Long> formulairesParPriorite = new HashMap<>();
+
+    private Date dateReconstruction;
+    private Date dateMiseAJour;
+}
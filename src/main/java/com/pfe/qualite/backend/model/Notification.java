@@ -2,11 +2,16 @@ package com.pfe.qualite.backend.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 
 @Document(collection = "notifications")
+@CompoundIndex(name = "utilisateur_lu", def = "{'utilisateurId': 1, 'lu': 1}")
+// Une seule alerte de retard par objet (les autres types peuvent se répéter)
+@CompoundIndex(name = "objet_type_retard", def = "{'objetId': 1, 'type': 1}", unique = true,
+        partialFilter = "{ 'type': 'RETARD' }")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
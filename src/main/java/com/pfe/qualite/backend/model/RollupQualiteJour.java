@@ -0,0 +1,61 @@
+package com.pfe.qualite.backend.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Agrégats d'une journée (fuseau du serveur) : éléments créés ou datés ce jour, comptés avec leur état actuel.
+ * Un document par jour, identifié par sa date "yyyy-MM-dd" (l'ordre des identifiants est l'ordre chronologique).
+ * Maintenu incrémentalement à chaque création / modification / suppression (voir RollupQualiteService).
+ */
+@Document(collection = "daily_quality_rollups")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RollupQualiteJour {
+
+    @Id
+    private String id;
+
+    // Fiches qualité créées ce jour
+    private long fichesQualiteCreees;
+    @Builder.Default
+    private Map<String, Long> statutsQualite = new HashMap<>();
+    @Builder.Default
+    private Map<String, Long> typesFiche = new HashMap<>();
+    @Builder.Default
+    private Map<String, Long> prioritesQualite = new HashMap<>();
+
+    // Fiches de suivi datées de ce jour
+    private long fichesSuivi;
+    @Builder.Default
+    private Map<String, Long> statutsSuivi = new HashMap<>();
+    private long evaluationsConformite;
+    private long nbConformes;
+    private double sommeTauxConformite;
+    private long delaisRenseignes;
+    private double sommeDelaiTraitementJours;
+
+    // Formulaires obligatoires créés ce jour
+    private long formulairesCrees;
+    @Builder.Default
+    private Map<String, Long> formulairesParStatut = new HashMap<>();
+    @Builder.Default
+    private Map<String, Long> formulairesParPriorite = new HashMap<>();
+
+    private Date dateCalcul;
+    private Date dateMiseAJour;
+
+    /**
+     * Délai de traitement moyen du jour, null sans délai renseigné
+     */
+    public Double getDelaiTraitementMoyen() {
+        return delaisRenseignes > 0 ? sommeDelaiTraitementJours / delaisRenseignes : null;
+    }
+}
@@ -0,0 +1,62 @@
+package com.pfe.qualite.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Upload par morceaux en cours : le fichier partiel est préalloué à sa taille finale et
+ * chaque morceau y est écrit à sa position, dans n'importe quel ordre
+ */
+@Document(collection = "uploads_fragmentes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadFragmente {
+
+    @Id
+    private String id;
+
+    private String originalFileName;
+    private String contentType;
+
+    /**
+     * Taille totale annoncée à l'ouverture, en bytes
+     */
+    private Long fileSize;
+
+    /**
+     * Taille de chaque morceau (le dernier peut être plus court)
+     */
+    private Integer chunkSize;
+    private Integer totalChunks;
+
+    /**
+     * Index des morceaux écrits et synchronisés sur disque
+     */
+    private Set<Integer> receivedChunks;
+
+    private String statut; // EN_COURS, ASSEMBLAGE
+
+    // Pièce jointe créée à la fin de l'upload
+    private String entityType;
+    private String entityId;
+    private String description;
+    private String uploadedBy;
+
+    private Date dateCreation;
+
+    /**
+     * Au-delà, l'upload abandonné est purgé (document et fichier partiel)
+     */
+    @Indexed
+    private Date expiration;
+}
@@ -2,6 +2,7 @@ package com.pfe.qualite.backend.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 
@@ -14,6 +15,7 @@ public class Utilisateur {
     @Id
     private String id;
     private String nom;
+    @Indexed(unique = true)
     private String email;
     private String password;
     private String role; // ADMIN, CHEF_PROJET, PILOTE_QUALITE
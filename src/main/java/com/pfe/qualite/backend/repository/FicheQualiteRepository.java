@@ -2,7 +2,10 @@ package com.pfe.qualite.backend.repository;
 
 import com.pfe.qualite.backend.model.FicheQualite;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 public interface FicheQualiteRepository extends MongoRepository<FicheQualite, String> {
@@ -11,4 +14,9 @@ public interface FicheQualiteRepository extends MongoRepository<FicheQualite, St
     List<FicheQualite> findByTypeFiche(String typeFiche);
     List<FicheQualite> findByStatut(String statut);
     List<FicheQualite> findByResponsable(String responsable);
+
+    // Fiches échues non clôturées ayant un responsable (index dateEcheance), champs utiles au planificateur uniquement
+    @Query(value = "{ 'dateEcheance': { $lt: ?0 }, 'statut': { $nin: ?1 }, 'responsable': { $ne: null } }",
+           fields = "{ 'titre': 1, 'statut': 1, 'responsable': 1, 'dateEcheance': 1 }")
+    List<FicheQualite> findEnRetard(LocalDate aujourdhui, Collection<String> statutsClos);
 }
@@ -4,6 +4,7 @@ import com.pfe.qualite.backend.model.Notification;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,4 +12,6 @@ public interface NotificationRepository extends MongoRepository<Notification, St
 
     List<Notification> findByUtilisateurId(String utilisateurId);
     List<Notification> findByUtilisateurIdAndLuFalse(String utilisateurId);
+    long countByUtilisateurIdAndLuFalse(String utilisateurId);
+    List<Notification> findByTypeAndObjetIdIn(String type, Collection<String> objetIds);
 }
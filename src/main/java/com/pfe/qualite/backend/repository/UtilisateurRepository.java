@@ -3,9 +3,12 @@ package com.pfe.qualite.backend.repository;
 import com.pfe.qualite.backend.model.Utilisateur;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UtilisateurRepository extends MongoRepository<Utilisateur, String> {
     Optional<Utilisateur> findByEmail(String email);
+    List<Utilisateur> findByEmailIn(Collection<String> emails);
     Optional<Utilisateur> findByResetPasswordToken(String token);
 }
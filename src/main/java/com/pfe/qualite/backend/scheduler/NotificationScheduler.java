@@ -4,22 +4,45 @@ import com.pfe.qualite.backend.model.Notification;
 import com.pfe.qualite.backend.model.FormulaireObligatoire;
 import com.pfe.qualite.backend.model.FicheQualite;
 import com.pfe.qualite.backend.model.FicheSuivi;
+import com.pfe.qualite.backend.model.Utilisateur;
 import com.pfe.qualite.backend.repository.NotificationRepository;
 import com.pfe.qualite.backend.repository.UtilisateurRepository;
 import com.pfe.qualite.backend.repository.FormulaireObligatoireRepository;
 import com.pfe.qualite.backend.repository.FicheQualiteRepository;
 import com.pfe.qualite.backend.repository.FicheSuiviRepository;
+import com.pfe.qualite.backend.service.KpiSnapshotService;
 import com.pfe.qualite.backend.service.MailService;
+import com.pfe.qualite.backend.service.RollupQualiteService;
+import com.pfe.qualite.backend.service.UtilisateurCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -42,160 +65,203 @@ public class NotificationScheduler {
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private KpiSnapshotService kpiSnapshotService;
+
+    @Autowired
+    private RollupQualiteService rollupQualiteService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private UtilisateurCache utilisateurCache;
+
+    // Envois d'e-mails du résumé des notifications (notifications.digest.threads au maximum en parallèle)
+    @Autowired
+    @Qualifier("notificationDigestExecutor")
+    private ThreadPoolTaskExecutor notificationDigestExecutor;
+
     private final NotificationRepository notificationRepository;
     private final JavaMailSender mailSender;
 
+    private static final String TYPE_RETARD = "RETARD";
+    private static final List<String> STATUTS_CLOS = List.of("TERMINEE", "VALIDEE", "CLOTUREE");
+
+    /**
+     * Résumé des notifications non lues (toutes les 15 minutes)
+     * Une agrégation par utilisateur, une recherche $in des destinataires, envois parallèles bornés,
+     * puis un seul updateMulti pour marquer lues les notifications effectivement envoyées
+     */
     @Scheduled(cron = "0 */15 * * * *") // toutes les 15 minutes
     public void envoyerEmailsNotifications() {
         log.info("⏰ Planificateur exécuté...");
 
-        // ✅ Étape 1 : récupérer les utilisateurs avec des notifications non lues
-        List<String> utilisateursAvecNotif = notificationRepository
-                .findAll()
-                .stream()
-                .filter(notif -> !notif.isLu())
-                .map(Notification::getUtilisateurId)
-                .distinct()
-                .collect(Collectors.toList());
+        // ✅ Étape 1 : notifications non lues regroupées par utilisateur
+        Aggregation digest = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("lu").is(false).and("utilisateurId").ne(null)),
+                Aggregation.sort(Sort.Direction.ASC, "dateCreation"),
+                Aggregation.group("utilisateurId").push("_id").as("ids").push("message").as("messages"));
+        List<Document> groupes = mongoTemplate.aggregate(digest, "notifications", Document.class).getMappedResults();
 
-        if (utilisateursAvecNotif.isEmpty()) {
+        if (groupes.isEmpty()) {
             log.info("✅ Aucune notification non lue à envoyer.");
             return;
         }
 
-        // ✅ Étape 2 : REMPLACE ta boucle par ce bloc :
-        for (String userId : utilisateursAvecNotif) {
-            List<Notification> notifsNonLues = notificationRepository.findByUtilisateurIdAndLuFalse(userId);
-
-            // 🎯 Récupérer l’utilisateur depuis MongoDB
-            utilisateurRepository.findById(userId).ifPresentOrElse(utilisateur -> {
-                String email = utilisateur.getEmail();  // ✅ E-mail réel
-
-                if (email == null || email.isBlank()) {
-                    log.warn("⚠️ Utilisateur {} n’a pas d’e-mail défini. Notification ignorée.", userId);
-                    return;
-                }
-
-                // 📨 Construire le contenu
-                String contenu = notifsNonLues.stream()
-                        .map(Notification::getMessage)
-                        .collect(Collectors.joining("\n"));
+        // ✅ Étape 2 : destinataires en une requête
+        Query destinataires = new Query(Criteria.where("_id").in(groupes.stream().map(g -> g.getString("_id")).collect(Collectors.toList())));
+        destinataires.fields().include("email");
+        Map<String, String> emails = mongoTemplate.find(destinataires, Utilisateur.class).stream()
+                .filter(u -> u.getEmail() != null && !u.getEmail().isBlank())
+                .collect(Collectors.toMap(Utilisateur::getId, Utilisateur::getEmail));
 
+        // ✅ Étape 3 : envois en parallèle sur le pool borné dédié
+        List<Object> idsEnvoyees = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> envois = new ArrayList<>();
+        for (Document groupe : groupes) {
+            String userId = groupe.getString("_id");
+            String email = emails.get(userId);
+            if (email == null) {
+                log.warn("⚠️ Utilisateur {} introuvable ou sans e-mail. Notifications ignorées.", userId);
+                continue;
+            }
+            List<Object> ids = groupe.getList("ids", Object.class);
+            String contenu = String.join("\n", groupe.getList("messages", String.class));
+            envois.add(notificationDigestExecutor.submit(() -> {
                 try {
                     SimpleMailMessage message = new SimpleMailMessage();
                     message.setTo(email);
                     message.setSubject("📢 Notifications non lues");
                     message.setText("Bonjour,\n\nVous avez des notifications :\n\n" + contenu);
                     mailSender.send(message);
-
+                    idsEnvoyees.addAll(ids);
                     log.info("📧 Email envoyé à {}", email);
-
-                    // ✅ Marquer comme lues
-                    notifsNonLues.forEach(n -> {
-                        n.setLu(true);
-                        notificationRepository.save(n);
-                    });
-
                 } catch (Exception e) {
                     log.error("❌ Erreur d'envoi de mail pour utilisateur {}", userId, e);
                 }
+            }));
+        }
+        long limite = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
+        try {
+            for (Future<?> envoi : envois) {
+                envoi.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            log.warn("⚠️ Envois de notifications non terminés dans le délai, envois restants annulés");
+            envois.forEach(envoi -> envoi.cancel(true));
+        } catch (ExecutionException e) {
+            log.error("❌ Erreur inattendue pendant l'envoi des notifications", e);
+        } catch (InterruptedException e) {
+            envois.forEach(envoi -> envoi.cancel(true));
+            Thread.currentThread().interrupt();
+        }
 
-            }, () -> log.warn("❌ Aucun utilisateur trouvé avec l’ID {}", userId));
+        // ✅ Étape 4 : marquer comme lues en une seule mise à jour
+        if (!idsEnvoyees.isEmpty()) {
+            List<Object> ids;
+            synchronized (idsEnvoyees) {
+                ids = new ArrayList<>(idsEnvoyees);
+            }
+            long modifiees = mongoTemplate.updateMulti(
+                    new Query(Criteria.where("_id").in(ids)), Update.update("lu", true), Notification.class)
+                    .getModifiedCount();
+            log.info("✅ {} notifications marquées comme lues", modifiees);
         }
     }
 
     /**
      * Vérifier les fiches de qualité en retard (toutes les 2 minutes)
+     * Une requête indexée pour les fiches échues, puis une seule recherche $in pour les alertes existantes
      */
     @Scheduled(cron = "0 */2 * * * *") // toutes les 2 minutes
     public void verifierFichesQualiteEnRetard() {
         log.info("⏰ Vérification des fiches de qualité en retard...");
-        
-        List<FicheQualite> toutesLesFiches = ficheQualiteRepository.findAll();
-        int compteur = 0;
-        
-        for (FicheQualite fiche : toutesLesFiches) {
-            // Vérifier si la fiche a une date d'échéance et n'est pas terminée
-            if (fiche.getDateEcheance() != null && 
-                fiche.getResponsable() != null &&
-                !"TERMINEE".equals(fiche.getStatut()) && 
-                !"VALIDEE".equals(fiche.getStatut()) &&
-                !"CLOTUREE".equals(fiche.getStatut())) {
-                
-                // Vérifier si la date est dépassée
-                if (fiche.getDateEcheance().isBefore(java.time.LocalDate.now())) {
-                    compteur++;
-                    
-                    // Chercher une notification existante pour cette fiche
-                    List<Notification> toutesNotifs = notificationRepository.findAll();
-                    Notification notifExistante = toutesNotifs.stream()
-                        .filter(n -> n.getObjetId() != null && 
-                                    n.getObjetId().equals(fiche.getId()) &&
-                                    "RETARD".equals(n.getType()))
-                        .findFirst()
-                        .orElse(null);
-                    
-                    if (notifExistante == null) {
-                        // 🆕 Pas de notification existante → Créer et envoyer email
-                        String emailResponsable = fiche.getResponsable();
-                        
-                        utilisateurRepository.findByEmail(emailResponsable).ifPresentOrElse(utilisateur -> {
-                            // Créer une notification
-                            Notification notification = Notification.builder()
-                                .message("⚠️ La fiche qualité '" + fiche.getTitre() + "' est en retard (échéance: " + fiche.getDateEcheance() + ")")
-                                .type("RETARD")
-                                .lu(false)
-                                .dateCreation(new Date())
-                                .utilisateurId(utilisateur.getId())
-                                .objetId(fiche.getId())
-                                .dateDernierEmail(new Date())  // Marquer l'envoi d'email
-                                .build();
-                            
-                            notificationRepository.save(notification);
-                            log.info("📢 Notification créée pour la fiche qualité en retard: {}", fiche.getTitre());
-                            
-                            // 📧 Envoyer le premier email
-                            envoyerEmailRetard(emailResponsable, fiche);
-                        }, () -> {
-                            log.warn("⚠️ Aucun utilisateur trouvé avec l'email: {}", emailResponsable);
-                        });
-                        
-                    } else if (!notifExistante.isLu()) {
-                        // 🔄 Notification existante NON LUE → Vérifier si 3 minutes écoulées
-                        Date maintenant = new Date();
-                        Date dernierEmail = notifExistante.getDateDernierEmail();
-                        
-                        if (dernierEmail != null) {
-                            long minutesEcoulees = (maintenant.getTime() - dernierEmail.getTime()) / (60 * 1000);
-                            
-                            if (minutesEcoulees >= 3) {
-                                // 📧 Plus de 3 minutes → Renvoyer l'email
-                                String emailResponsable = fiche.getResponsable();
-                                log.info("🔔 Relance après {} minutes pour la fiche: {}", minutesEcoulees, fiche.getTitre());
-                                
-                                envoyerEmailRetard(emailResponsable, fiche);
-                                
-                                // Mettre à jour la date du dernier email
-                                notifExistante.setDateDernierEmail(new Date());
-                                notificationRepository.save(notifExistante);
-                            } else {
-                                log.info("⏳ Notification non lue mais délai non écoulé ({} min) pour: {}", 
-                                        minutesEcoulees, fiche.getTitre());
-                            }
-                        }
+
+        List<FicheQualite> fichesEnRetard = ficheQualiteRepository.findEnRetard(LocalDate.now(), STATUTS_CLOS);
+        if (fichesEnRetard.isEmpty()) {
+            log.info("✅ Aucune fiche de qualité en retard");
+            return;
+        }
+
+        Map<String, Notification> notifsExistantes = notificationRepository
+                .findByTypeAndObjetIdIn(TYPE_RETARD, fichesEnRetard.stream().map(FicheQualite::getId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Notification::getObjetId, n -> n, (a, b) -> a));
+
+        // Responsables des fiches sans alerte : résolus en une requête
+        Set<String> emailsSansAlerte = fichesEnRetard.stream()
+                .filter(fiche -> !notifsExistantes.containsKey(fiche.getId()))
+                .map(FicheQualite::getResponsable)
+                .collect(Collectors.toSet());
+        Map<String, Utilisateur> responsables = emailsSansAlerte.isEmpty()
+                ? Map.of()
+                : utilisateurRepository.findByEmailIn(emailsSansAlerte).stream()
+                    .collect(Collectors.toMap(Utilisateur::getEmail, u -> u, (a, b) -> a));
+
+        for (FicheQualite fiche : fichesEnRetard) {
+            Notification notifExistante = notifsExistantes.get(fiche.getId());
+
+            if (notifExistante == null) {
+                // 🆕 Pas de notification existante → Créer et envoyer email
+                String emailResponsable = fiche.getResponsable();
+                Utilisateur utilisateur = responsables.get(emailResponsable);
+                if (utilisateur == null) {
+                    log.warn("⚠️ Aucun utilisateur trouvé avec l'email: {}", emailResponsable);
+                    continue;
+                }
+
+                Notification notification = Notification.builder()
+                    .message("⚠️ La fiche qualité '" + fiche.getTitre() + "' est en retard (échéance: " + fiche.getDateEcheance() + ")")
+                    .type(TYPE_RETARD)
+                    .lu(false)
+                    .dateCreation(new Date())
+                    .utilisateurId(utilisateur.getId())
+                    .objetId(fiche.getId())
+                    .dateDernierEmail(new Date())  // Marquer l'envoi d'email
+                    .build();
+
+                try {
+                    notificationRepository.insert(notification);
+                } catch (DuplicateKeyException e) {
+                    // Alerte créée entre-temps par une autre instance (index unique objetId/type)
+                    log.info("Alerte de retard déjà créée pour la fiche: {}", fiche.getTitre());
+                    continue;
+                }
+                log.info("📢 Notification créée pour la fiche qualité en retard: {}", fiche.getTitre());
+
+                // 📧 Envoyer le premier email
+                envoyerEmailRetard(emailResponsable, fiche);
+
+            } else if (!notifExistante.isLu()) {
+                // 🔄 Notification existante NON LUE → Vérifier si 3 minutes écoulées
+                Date maintenant = new Date();
+                Date dernierEmail = notifExistante.getDateDernierEmail();
+
+                if (dernierEmail != null) {
+                    long minutesEcoulees = (maintenant.getTime() - dernierEmail.getTime()) / (60 * 1000);
+
+                    if (minutesEcoulees >= 3) {
+                        // 📧 Plus de 3 minutes → Renvoyer l'email
+                        log.info("🔔 Relance après {} minutes pour la fiche: {}", minutesEcoulees, fiche.getTitre());
+
+                        envoyerEmailRetard(fiche.getResponsable(), fiche);
+
+                        // Mettre à jour la date du dernier email
+                        notifExistante.setDateDernierEmail(new Date());
+                        notificationRepository.save(notifExistante);
                     } else {
-                        // ✅ Notification LUE → Ne rien faire
-                        log.info("✅ Notification lue pour la fiche: {}", fiche.getTitre());
+                        log.info("⏳ Notification non lue mais délai non écoulé ({} min) pour: {}",
+                                minutesEcoulees, fiche.getTitre());
                     }
                 }
+            } else {
+                // ✅ Notification LUE → Ne rien faire
+                log.debug("✅ Notification lue pour la fiche: {}", fiche.getTitre());
             }
         }
-        
-        if (compteur > 0) {
-            log.info("⚠️ {} fiches de qualité en retard détectées", compteur);
-        } else {
-            log.info("✅ Aucune fiche de qualité en retard");
-        }
+
+        log.info("⚠️ {} fiches de qualité en retard détectées", fichesEnRetard.size());
     }
     
     /**
@@ -237,11 +303,16 @@ public class NotificationScheduler {
         
         for (FormulaireObligatoire formulaire : formulairesEnRetard) {
             // Marquer comme en retard
+            FormulaireObligatoire avant = FormulaireObligatoire.builder()
+                .statut(formulaire.getStatut()).priorite(formulaire.getPriorite())
+                .dateCreation(formulaire.getDateCreation()).build();
             formulaire.setStatut("EN_RETARD");
             formulaireObligatoireRepository.save(formulaire);
+            kpiSnapshotService.formulaireModifie(avant, formulaire);
+            rollupQualiteService.formulaireModifie(avant, formulaire);
             
             // Envoyer email de notification
-            utilisateurRepository.findById(formulaire.getResponsableId()).ifPresent(utilisateur -> {
+            utilisateurCache.parId(formulaire.getResponsableId()).ifPresent(utilisateur -> {
                 if (utilisateur.getEmail() != null && !utilisateur.getEmail().isBlank()) {
                     try {
                         mailService.envoyerEmailRetard(
@@ -277,7 +348,7 @@ public class NotificationScheduler {
                 .findByDateEcheanceBetweenAndStatutEnAttente(maintenant, dans24h);
         
         for (FormulaireObligatoire formulaire : formulairesEcheanceProche) {
-            utilisateurRepository.findById(formulaire.getResponsableId()).ifPresent(utilisateur -> {
+            utilisateurCache.parId(formulaire.getResponsableId()).ifPresent(utilisateur -> {
                 if (utilisateur.getEmail() != null && !utilisateur.getEmail().isBlank()) {
                     try {
                         SimpleMailMessage message = new SimpleMailMessage();
@@ -0,0 +1,27 @@
+package com.pfe.qualite.backend.scheduler;
+
+import com.pfe.qualite.backend.service.UploadFragmenteService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Purge des uploads par morceaux abandonnés (session et fichier partiel préalloué)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadFragmenteScheduler {
+
+    private final UploadFragmenteService uploadFragmenteService;
+
+    @Scheduled(fixedDelayString = "${uploads.fragmentes.purge-ms:3600000}")
+    public void purgerUploadsExpires() {
+        try {
+            uploadFragmenteService.purgerExpires();
+        } catch (Exception e) {
+            log.warn("Purge des uploads par morceaux impossible: {}", e.getMessage());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.pfe.qualite.backend.security.auth;
 import com.pfe.qualite.backend.model.Utilisateur;
 import com.pfe.qualite.backend.repository.UtilisateurRepository;
 import com.pfe.qualite.backend.security.jwt.JwtUtils;
+import com.pfe.qualite.backend.service.UtilisateurCache;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +27,7 @@ public class AuthService {
     private final JwtUtils jwtUtils;
     private final JavaMailSender mailSender;
     private final PasswordEncoder passwordEncoder;
+    private final UtilisateurCache utilisateurCache;
     
     @Value("${app.mail.from}")
     private String fromEmail;
@@ -86,6 +88,8 @@ public class AuthService {
         utilisateur.setResetPasswordTokenExpiry(null);
         utilisateur.setDateModification(LocalDateTime.now());
         utilisateurRepository.save(utilisateur);
+        // Le mot de passe en cache servirait encore aux connexions
+        utilisateurCache.invalider(utilisateur.getId());
 
         log.info("Mot de passe réinitialisé avec succès pour: {}", utilisateur.getEmail());
     }
@@ -46,6 +46,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authz -> authz
                         // Autoriser les préflight CORS sans auth
                         .requestMatchers(org.springframework.http.HttpMethod.OPTIONS, "/**").permitAll()
+                        // Reprise asynchrone des réponses en flux (StreamingResponseBody) : déjà autorisée à la requête initiale
+                        .dispatcherTypeMatchers(jakarta.servlet.DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
                         // Lecture (GET) autorisée à tous les rôles sur tous les modules
                         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/fiches", "/api/fiches/**").hasAnyRole("ADMIN", "CHEF_PROJET", "PILOTE_QUALITE")
@@ -113,7 +115,7 @@ public class SecurityConfig {
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         config.setAllowedHeaders(List.of("*"));
         config.setAllowCredentials(true);
-        config.setExposedHeaders(List.of("Authorization", "Content-Type"));
+        config.setExposedHeaders(List.of("Authorization", "Content-Type", "X-Total-Count", "X-Next-Cursor"));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", config);
@@ -1,7 +1,9 @@
 package com.pfe.qualite.backend.security.jwt;
 
 import com.pfe.qualite.backend.model.Utilisateur;
-import com.pfe.qualite.backend.repository.UtilisateurRepository;
+import com.pfe.qualite.backend.service.UtilisateurCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,7 +25,8 @@ import java.util.List;
 public class JwtFilter extends OncePerRequestFilter {
 
     private final JwtUtils jwtUtils;
-    private final UtilisateurRepository utilisateurRepository;
+    private final UtilisateurCache utilisateurCache;
+    private final JwtPrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
@@ -43,20 +46,38 @@ public class JwtFilter extends OncePerRequestFilter {
         }
 
         String token = authHeader.substring(7);
-        if (!jwtUtils.validateToken(token)) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        String email = jwtUtils.getEmailFromToken(token);
-        Utilisateur user = utilisateurRepository.findByEmail(email).orElse(null);
-        if (user != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            var auth = new UsernamePasswordAuthenticationToken(
-                    user, null, List.of(new SimpleGrantedAuthority("ROLE_" + user.getRole())));
-            auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-            SecurityContextHolder.getContext().setAuthentication(auth);
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            Utilisateur user = resoudreUtilisateur(token);
+            if (user != null) {
+                var auth = new UsernamePasswordAuthenticationToken(
+                        user, null, List.of(new SimpleGrantedAuthority("ROLE_" + user.getRole())));
+                auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(auth);
+            }
         }
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Utilisateur du token : depuis le cache, sinon une seule vérification du token puis une lecture en base
+     */
+    private Utilisateur resoudreUtilisateur(String token) {
+        Utilisateur user = principalCache.get(token);
+        if (user != null) {
+            return user;
+        }
+        long generation = principalCache.generation();
+        Claims claims;
+        try {
+            claims = jwtUtils.parseClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        user = utilisateurCache.parEmail(claims.getSubject()).orElse(null);
+        if (user != null) {
+            principalCache.put(token, user, claims.getExpiration(), generation);
+        }
+        return user;
+    }
 }
@@ -0,0 +1,112 @@
+package com.pfe.qualite.backend.security.jwt;
+
+import com.pfe.qualite.backend.model.Utilisateur;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache borné à durée de vie : empreinte SHA-256 du token → utilisateur authentifié.
+ * Un token déjà vérifié n'est ni re-décodé ni re-vérifié, et l'utilisateur n'est pas relu en base.
+ * Les entrées d'un utilisateur sont invalidées dès que son rôle ou son statut change.
+ * L'utilisateur mis en cache est celui d'UtilisateurCache : id, email, rôle et statut seulement.
+ */
+@Component
+public class JwtPrincipalCache {
+
+    private final Map<String, Entree> entrees = new ConcurrentHashMap<>();
+    private final long dureeVieMs;
+    private final int tailleMax;
+
+    // Incrémentée à chaque invalidation : un utilisateur résolu avant n'est pas mis en cache
+    private long generation;
+
+    public JwtPrincipalCache(@Value("${jwt.cache.duree-vie-ms:60000}") long dureeVieMs,
+                             @Value("${jwt.cache.taille-max:10000}") int tailleMax) {
+        this.dureeVieMs = dureeVieMs;
+        this.tailleMax = tailleMax;
+    }
+
+    /**
+     * Utilisateur associé au token, ou null si absent ou expiré
+     */
+    public Utilisateur get(String token) {
+        String cle = empreinte(token);
+        Entree entree = entrees.get(cle);
+        if (entree == null) {
+            return null;
+        }
+        if (entree.expiration < System.currentTimeMillis()) {
+            entrees.remove(cle, entree);
+            return null;
+        }
+        return entree.utilisateur;
+    }
+
+    /**
+     * À relever avant de résoudre l'utilisateur d'un token, puis à passer à put()
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * @param expirationToken date d'expiration du token : l'entrée ne lui survit jamais
+     * @param generationLue   generation() relevée avant la résolution de l'utilisateur ; si une invalidation
+     *                        a eu lieu depuis, l'utilisateur est peut-être périmé et n'est pas mis en cache
+     */
+    public synchronized void put(String token, Utilisateur utilisateur, Date expirationToken, long generationLue) {
+        if (generation != generationLue) {
+            return;
+        }
+        long maintenant = System.currentTimeMillis();
+        long expiration = maintenant + dureeVieMs;
+        if (expirationToken != null) {
+            expiration = Math.min(expiration, expirationToken.getTime());
+        }
+        if (entrees.size() >= tailleMax) {
+            entrees.values().removeIf(e -> e.expiration < maintenant);
+            if (entrees.size() >= tailleMax) {
+                // Cache plein de tokens valides : on ne met pas en cache plutôt que d'évincer
+                return;
+            }
+        }
+        entrees.put(empreinte(token), new Entree(utilisateur, expiration));
+    }
+
+    /**
+     * Retire toutes les entrées d'un utilisateur (changement de rôle, désactivation, suppression)
+     */
+    public synchronized void invalider(String utilisateurId) {
+        if (utilisateurId != null) {
+            generation++;
+            entrees.values().removeIf(e -> utilisateurId.equals(e.utilisateur.getId()));
+        }
+    }
+
+    private static String empreinte(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    private static final class Entree {
+        private final Utilisateur utilisateur;
+        private final long expiration;
+
+        Entree(Utilisateur utilisateur, long expiration) {
+            this.utilisateur = utilisateur;
+            this.expiration = expiration;
+        }
+    }
+}
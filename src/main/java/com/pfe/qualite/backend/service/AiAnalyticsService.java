@@ -1,11 +1,7 @@
 package com.pfe.qualite.backend.service;
 
 import com.pfe.qualite.backend.model.FicheQualite;
-import com.pfe.qualite.backend.model.FicheSuivi;
-import com.pfe.qualite.backend.model.FicheProjet;
-import com.pfe.qualite.backend.repository.FicheQualiteRepository;
-import com.pfe.qualite.backend.repository.FicheSuiviRepository;
-import com.pfe.qualite.backend.repository.FicheProjetRepository;
+import com.pfe.qualite.backend.service.AnalyticsSnapshotService.AnalyticsSnapshot;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -16,13 +12,7 @@ import java.util.stream.Collectors;
 public class AiAnalyticsService {
 
     @Autowired
-    private FicheQualiteRepository ficheQualiteRepository;
-
-    @Autowired
-    private FicheSuiviRepository ficheSuiviRepository;
-
-    @Autowired
-    private FicheProjetRepository ficheProjetRepository;
+    private AnalyticsSnapshotService analyticsSnapshotService;
 
     // Interface pour les prédictions de risques
     public static class PredictionRisque {
@@ -132,15 +122,15 @@ public class AiAnalyticsService {
     // Analyser les risques
     public List<PredictionRisque> analyserRisques() {
         List<PredictionRisque> predictions = new ArrayList<>();
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
+        AnalyticsSnapshot snapshot = analyticsSnapshotService.getSnapshot();
+        List<FicheQualite> fichesQualite = snapshot.getFichesQualite();
 
         if (fichesQualite.isEmpty()) {
             return predictions;
         }
 
         // Calculer le taux de conformité
-        long fichesTerminees = fichesQualite.stream().filter(f -> "TERMINE".equals(f.getStatut())).count();
-        double tauxConformite = (double) fichesTerminees / fichesQualite.size() * 100;
+        double tauxConformite = snapshot.tauxTermine();
 
         // Prédiction basée sur le taux de conformité
         if (tauxConformite < 70) {
@@ -170,7 +160,7 @@ public class AiAnalyticsService {
         }
 
         // Analyser les fiches en retard
-        long fichesEnRetard = fichesQualite.stream().filter(f -> "EN_COURS".equals(f.getStatut())).count();
+        long fichesEnRetard = snapshot.nbFichesQualite("EN_COURS");
         if (fichesEnRetard > fichesQualite.size() * 0.3) {
             predictions.add(new PredictionRisque(
                 "ÉLEVÉ",
@@ -207,18 +197,15 @@ public class AiAnalyticsService {
     // Générer des recommandations IA
     public List<RecommandationIA> genererRecommandations() {
         List<RecommandationIA> recommandations = new ArrayList<>();
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
-        List<FicheSuivi> fichesSuivi = ficheSuiviRepository.findAll();
-        List<FicheProjet> fichesProjet = ficheProjetRepository.findAll();
+        AnalyticsSnapshot snapshot = analyticsSnapshotService.getSnapshot();
 
-        if (fichesQualite.isEmpty()) {
+        if (snapshot.getFichesQualite().isEmpty()) {
             return recommandations;
         }
 
         // Calculer les métriques
-        long totalFiches = fichesQualite.size();
-        long fichesTerminees = fichesQualite.stream().filter(f -> "TERMINE".equals(f.getStatut())).count();
-        double tauxConformite = (double) fichesTerminees / totalFiches * 100;
+        long totalFiches = snapshot.getNbFichesQualite();
+        double tauxConformite = snapshot.tauxTermine();
 
         // Recommandations basées sur le taux de conformité
         if (tauxConformite < 70) {
@@ -239,7 +226,7 @@ public class AiAnalyticsService {
         }
 
         // Recommandations basées sur les fiches de suivi
-        if (fichesSuivi.isEmpty()) {
+        if (snapshot.getNbFichesSuivi() == 0) {
             recommandations.add(new RecommandationIA(
                 "IMPORTANT",
                 "Mise en place du suivi qualité",
@@ -273,9 +260,9 @@ public class AiAnalyticsService {
         }
 
         // Recommandations basées sur les projets
-        if (!fichesProjet.isEmpty()) {
-            long projetsEnCours = fichesProjet.stream().filter(p -> "EN_COURS".equals(p.getStatut())).count();
-            if (projetsEnCours > fichesProjet.size() * 0.5) {
+        if (snapshot.getNbFichesProjet() > 0) {
+            long projetsEnCours = snapshot.nbProjets("EN_COURS");
+            if (projetsEnCours > snapshot.getNbFichesProjet() * 0.5) {
                 recommandations.add(new RecommandationIA(
                     "IMPORTANT",
                     "Gestion de la charge de travail",
@@ -300,16 +287,15 @@ public class AiAnalyticsService {
     // Analyser les tendances
     public List<AnalyseTendance> analyserTendances() {
         List<AnalyseTendance> tendances = new ArrayList<>();
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
+        AnalyticsSnapshot snapshot = analyticsSnapshotService.getSnapshot();
 
-        if (fichesQualite.isEmpty()) {
+        if (snapshot.getFichesQualite().isEmpty()) {
             return tendances;
         }
 
         // Calculer les métriques
-        long totalFiches = fichesQualite.size();
-        long fichesTerminees = fichesQualite.stream().filter(f -> "TERMINE".equals(f.getStatut())).count();
-        double tauxConformite = (double) fichesTerminees / totalFiches * 100;
+        long totalFiches = snapshot.getNbFichesQualite();
+        double tauxConformite = snapshot.tauxTermine();
 
         // Tendance du taux de conformité
         if (tauxConformite > 85) {
@@ -355,17 +341,14 @@ public class AiAnalyticsService {
     // Optimiser les processus
     public List<OptimisationProcessus> optimiserProcessus() {
         List<OptimisationProcessus> optimisations = new ArrayList<>();
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
-        List<FicheSuivi> fichesSuivi = ficheSuiviRepository.findAll();
+        AnalyticsSnapshot snapshot = analyticsSnapshotService.getSnapshot();
 
-        if (fichesQualite.isEmpty()) {
+        if (snapshot.getFichesQualite().isEmpty()) {
             return optimisations;
         }
 
         // Calculer l'efficacité
-        long totalFiches = fichesQualite.size();
-        long fichesTerminees = fichesQualite.stream().filter(f -> "TERMINE".equals(f.getStatut())).count();
-        double efficaciteActuelle = (double) fichesTerminees / totalFiches * 100;
+        double efficaciteActuelle = snapshot.tauxTermine();
 
         // Optimisation du processus de validation
         optimisations.add(new OptimisationProcessus(
@@ -387,7 +370,7 @@ public class AiAnalyticsService {
         ));
 
         // Optimisation du suivi qualité
-        if (!fichesSuivi.isEmpty()) {
+        if (snapshot.getNbFichesSuivi() > 0) {
             optimisations.add(new OptimisationProcessus(
                 "Suivi qualité",
                 75.0,
@@ -437,42 +420,32 @@ public class AiAnalyticsService {
     public Map<String, Object> genererRapportIA() {
         Map<String, Object> rapport = new HashMap<>();
         
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
-        List<FicheSuivi> fichesSuivi = ficheSuiviRepository.findAll();
-        List<FicheProjet> fichesProjet = ficheProjetRepository.findAll();
+        AnalyticsSnapshot snapshot = analyticsSnapshotService.getSnapshot();
 
         // Résumé
         Map<String, Object> resume = new HashMap<>();
-        resume.put("totalFiches", fichesQualite.size());
-        resume.put("totalSuivis", fichesSuivi.size());
-        resume.put("totalProjets", fichesProjet.size());
-        
-        if (!fichesQualite.isEmpty()) {
-            long fichesTerminees = fichesQualite.stream().filter(f -> "TERMINE".equals(f.getStatut())).count();
-            double tauxConformite = (double) fichesTerminees / fichesQualite.size() * 100;
-            resume.put("tauxConformite", tauxConformite);
-        } else {
-            resume.put("tauxConformite", 0.0);
-        }
+        resume.put("totalFiches", snapshot.getNbFichesQualite());
+        resume.put("totalSuivis", (int) snapshot.getNbFichesSuivi());
+        resume.put("totalProjets", snapshot.getNbFichesProjet());
+        resume.put("tauxConformite", snapshot.tauxTermine());
         
         rapport.put("resume", resume);
-        rapport.put("alertes", genererAlertes(fichesQualite, fichesSuivi));
-        rapport.put("predictions", genererPredictions(fichesQualite));
-        rapport.put("recommandations", genererRecommandationsRapides(fichesQualite, fichesSuivi));
+        rapport.put("alertes", genererAlertes(snapshot));
+        rapport.put("predictions", genererPredictions(snapshot));
+        rapport.put("recommandations", genererRecommandationsRapides(snapshot));
         rapport.put("dateGeneration", new Date());
         
         return rapport;
     }
 
-    private List<Map<String, Object>> genererAlertes(List<FicheQualite> fichesQualite, List<FicheSuivi> fichesSuivi) {
+    private List<Map<String, Object>> genererAlertes(AnalyticsSnapshot snapshot) {
         List<Map<String, Object>> alertes = new ArrayList<>();
         
-        if (fichesQualite.isEmpty()) {
+        if (snapshot.getFichesQualite().isEmpty()) {
             return alertes;
         }
 
-        long fichesTerminees = fichesQualite.stream().filter(f -> "TERMINE".equals(f.getStatut())).count();
-        double tauxConformite = (double) fichesTerminees / fichesQualite.size() * 100;
+        double tauxConformite = snapshot.tauxTermine();
         
         if (tauxConformite < 70) {
             Map<String, Object> alerte = new HashMap<>();
@@ -482,8 +455,8 @@ public class AiAnalyticsService {
             alertes.add(alerte);
         }
 
-        long fichesEnRetard = fichesQualite.stream().filter(f -> "EN_COURS".equals(f.getStatut())).count();
-        if (fichesEnRetard > fichesQualite.size() * 0.3) {
+        long fichesEnRetard = snapshot.nbFichesQualite("EN_COURS");
+        if (fichesEnRetard > snapshot.getNbFichesQualite() * 0.3) {
             Map<String, Object> alerte = new HashMap<>();
             alerte.put("niveau", "ATTENTION");
             alerte.put("message", "Trop de fiches en cours");
@@ -494,15 +467,14 @@ public class AiAnalyticsService {
         return alertes;
     }
 
-    private List<Map<String, Object>> genererPredictions(List<FicheQualite> fichesQualite) {
+    private List<Map<String, Object>> genererPredictions(AnalyticsSnapshot snapshot) {
         List<Map<String, Object>> predictions = new ArrayList<>();
         
-        if (fichesQualite.isEmpty()) {
+        if (snapshot.getFichesQualite().isEmpty()) {
             return predictions;
         }
 
-        long fichesTerminees = fichesQualite.stream().filter(f -> "TERMINE".equals(f.getStatut())).count();
-        double tauxConformite = (double) fichesTerminees / fichesQualite.size() * 100;
+        double tauxConformite = snapshot.tauxTermine();
         
         if (tauxConformite < 80) {
             Map<String, Object> prediction = new HashMap<>();
@@ -516,10 +488,10 @@ public class AiAnalyticsService {
         return predictions;
     }
 
-    private List<Map<String, Object>> genererRecommandationsRapides(List<FicheQualite> fichesQualite, List<FicheSuivi> fichesSuivi) {
+    private List<Map<String, Object>> genererRecommandationsRapides(AnalyticsSnapshot snapshot) {
         List<Map<String, Object>> recommandations = new ArrayList<>();
         
-        if (fichesSuivi.isEmpty()) {
+        if (snapshot.getNbFichesSuivi() == 0) {
             Map<String, Object> rec = new HashMap<>();
             rec.put("priorite", "HAUTE");
             rec.put("action", "Créer des fiches de suivi");
@@ -527,7 +499,7 @@ public class AiAnalyticsService {
             recommandations.add(rec);
         }
 
-        long fichesEnCours = fichesQualite.stream().filter(f -> "EN_COURS".equals(f.getStatut())).count();
+        long fichesEnCours = snapshot.nbFichesQualite("EN_COURS");
         if (fichesEnCours > 5) {
             Map<String, Object> rec = new HashMap<>();
             rec.put("priorite", "MOYENNE");
@@ -1,36 +1,41 @@
 package com.pfe.qualite.backend.service;
 
 import com.pfe.qualite.backend.model.FicheQualite;
-import com.pfe.qualite.backend.model.FicheSuivi;
-import com.pfe.qualite.backend.model.FicheProjet;
-import com.pfe.qualite.backend.repository.FicheQualiteRepository;
-import com.pfe.qualite.backend.repository.FicheSuiviRepository;
-import com.pfe.qualite.backend.repository.FicheProjetRepository;
+import com.pfe.qualite.backend.service.AnalyticsSnapshotService.AnalyticsSnapshot;
+import com.pfe.qualite.backend.service.SerieTemporelleService.Granularite;
+import com.pfe.qualite.backend.service.SerieTemporelleService.Serie;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @Service
 public class AiChartsService {
 
-    @Autowired
-    private FicheQualiteRepository ficheQualiteRepository;
+    private static final DateTimeFormatter FORMAT_MOIS = DateTimeFormatter.ofPattern("MMM yyyy", Locale.FRENCH);
+    private static final DateTimeFormatter FORMAT_JOUR = DateTimeFormatter.ofPattern("dd/MM", Locale.FRENCH);
 
     @Autowired
-    private FicheSuiviRepository ficheSuiviRepository;
+    private AnalyticsSnapshotService analyticsSnapshotService;
 
     @Autowired
-    private FicheProjetRepository ficheProjetRepository;
+    private SerieTemporelleService serieTemporelleService;
 
-    // Générer les données de tendance
+    // Générer les données de tendance (taux de conformité moyen des fiches de suivi, par mois)
     public Map<String, Object> getTrendData(int period) {
+        return getTrendData(period, Granularite.MOIS);
+    }
+
+    // Générer les données de tendance à la granularité demandée (jour, semaine ou mois)
+    public Map<String, Object> getTrendData(int period, Granularite granularite) {
         Map<String, Object> trendData = new HashMap<>();
         
-        // Générer des données de tendance basées sur la période
-        List<String> labels = generateMonthLabels(period);
-        List<Double> conformityData = generateConformityData(period);
-        List<Double> targetData = generateTargetData(period);
+        List<SerieTemporelleService.Point> conformite =
+            serieTemporelleService.serie(Serie.TAUX_CONFORMITE, granularite, period);
+        List<String> labels = generateLabels(conformite, granularite);
+        List<Double> conformityData = valeurs(conformite);
+        List<Double> targetData = generateTargetData(conformite.size());
         
         Map<String, Object> dataset1 = new HashMap<>();
         dataset1.put("label", "Taux de Conformité (%)");
@@ -39,6 +44,7 @@ public class AiChartsService {
         dataset1.put("backgroundColor", "rgba(255, 99, 132, 0.1)");
         dataset1.put("tension", 0.4);
         dataset1.put("fill", true);
+        dataset1.put("spanGaps", true);
         
         Map<String, Object> dataset2 = new HashMap<>();
         dataset2.put("label", "Objectif (%)");
@@ -125,57 +131,37 @@ public class AiChartsService {
         dashboardData.put("predictions", getPredictionData());
         dashboardData.put("kpi", getKpiData());
         
-        // Ajouter des métriques supplémentaires
+        // Ajouter des métriques supplémentaires (un seul chargement des données pour toutes les métriques)
+        AnalyticsSnapshot snapshot = analyticsSnapshotService.getSnapshot();
         Map<String, Object> metrics = new HashMap<>();
-        metrics.put("scoreIA", calculateIAScore());
-        metrics.put("confiance", calculateConfidence());
-        metrics.put("alertes", calculateAlerts());
-        metrics.put("optimisations", calculateOptimizations());
+        metrics.put("scoreIA", calculateIAScore(snapshot));
+        metrics.put("confiance", calculateConfidence(snapshot));
+        metrics.put("alertes", calculateAlerts(snapshot));
+        metrics.put("optimisations", calculateOptimizations(snapshot));
         
         dashboardData.put("metrics", metrics);
         
         return dashboardData;
     }
 
-    // Générer des données de tendance réalistes
+    // Générer des données de tendance réelles : conformité et fiches qualité créées sur les 8 derniers mois
     public Map<String, Object> getRealTrendData() {
-        Map<String, Object> trendData = new HashMap<>();
+        Map<String, Object> trendData = getTrendData(8, Granularite.MOIS);
         
-        // Utiliser les vraies données de la base
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
+        List<SerieTemporelleService.Point> creations =
+            serieTemporelleService.serie(Serie.FICHES_QUALITE_CREEES, Granularite.MOIS, 8);
         
-        if (fichesQualite.isEmpty()) {
-            return getTrendData(8); // Retourner des données mock si pas de données
-        }
+        Map<String, Object> dataset3 = new HashMap<>();
+        dataset3.put("label", "Fiches qualité créées");
+        dataset3.put("data", valeurs(creations));
+        dataset3.put("borderColor", "#ffce56");
+        dataset3.put("backgroundColor", "rgba(255, 206, 86, 0.1)");
+        dataset3.put("tension", 0.4);
+        dataset3.put("yAxisID", "y1");
         
-        // Calculer les vraies métriques
-        long totalFiches = fichesQualite.size();
-        long fichesTerminees = fichesQualite.stream().filter(f -> "TERMINE".equals(f.getStatut())).count();
-        double tauxConformite = (double) fichesTerminees / totalFiches * 100;
-        
-        // Générer des données basées sur le taux réel
-        List<String> labels = Arrays.asList("Jan", "Fév", "Mar", "Avr", "Mai", "Juin", "Juil", "Août");
-        List<Double> conformityData = generateRealisticConformityData(tauxConformite);
-        List<Double> targetData = generateTargetData(8);
-        
-        Map<String, Object> dataset1 = new HashMap<>();
-        dataset1.put("label", "Taux de Conformité (%)");
-        dataset1.put("data", conformityData);
-        dataset1.put("borderColor", "#ff6384");
-        dataset1.put("backgroundColor", "rgba(255, 99, 132, 0.1)");
-        dataset1.put("tension", 0.4);
-        dataset1.put("fill", true);
-        
-        Map<String, Object> dataset2 = new HashMap<>();
-        dataset2.put("label", "Objectif (%)");
-        dataset2.put("data", targetData);
-        dataset2.put("borderColor", "#36a2eb");
-        dataset2.put("backgroundColor", "rgba(54, 162, 235, 0.1)");
-        dataset2.put("borderDash", Arrays.asList(5, 5));
-        dataset2.put("tension", 0.4);
-        
-        trendData.put("labels", labels);
-        trendData.put("datasets", Arrays.asList(dataset1, dataset2));
+        List<Object> datasets = new ArrayList<>((List<?>) trendData.get("datasets"));
+        datasets.add(dataset3);
+        trendData.put("datasets", datasets);
         
         return trendData;
     }
@@ -185,7 +171,7 @@ public class AiChartsService {
         Map<String, Object> predictionData = new HashMap<>();
         
         // Analyser les vraies données pour générer des prédictions
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
+        List<FicheQualite> fichesQualite = analyticsSnapshotService.getSnapshot().getFichesQualite();
         
         if (fichesQualite.isEmpty()) {
             return getPredictionData(); // Retourner des données mock si pas de données
@@ -213,35 +199,21 @@ public class AiChartsService {
     }
 
     // Méthodes utilitaires
-    private List<String> generateMonthLabels(int period) {
-        List<String> months = Arrays.asList("Jan", "Fév", "Mar", "Avr", "Mai", "Juin", "Juil", "Août", "Sep", "Oct", "Nov", "Déc");
-        return months.subList(0, Math.min(period, months.size()));
-    }
-
-    private List<Double> generateConformityData(int period) {
-        List<Double> data = new ArrayList<>();
-        Random random = new Random();
-        
-        for (int i = 0; i < period; i++) {
-            // Générer des données réalistes avec une tendance légèrement décroissante
-            double baseValue = 85.0 - (i * 2.5) + (random.nextDouble() * 10 - 5);
-            data.add(Math.max(60.0, Math.min(95.0, baseValue)));
+    private List<String> generateLabels(List<SerieTemporelleService.Point> points, Granularite granularite) {
+        DateTimeFormatter format = granularite == Granularite.MOIS ? FORMAT_MOIS : FORMAT_JOUR;
+        String prefixe = granularite == Granularite.SEMAINE ? "Sem. " : "";
+        List<String> labels = new ArrayList<>(points.size());
+        for (SerieTemporelleService.Point point : points) {
+            labels.add(prefixe + point.getDebut().format(format));
         }
-        
-        return data;
+        return labels;
     }
 
-    private List<Double> generateRealisticConformityData(double currentRate) {
-        List<Double> data = new ArrayList<>();
-        Random random = new Random();
-        
-        // Générer des données basées sur le taux actuel avec une variation réaliste
-        for (int i = 0; i < 8; i++) {
-            double variation = (random.nextDouble() * 20 - 10); // Variation de ±10%
-            double value = currentRate + variation;
-            data.add(Math.max(50.0, Math.min(100.0, value)));
+    private List<Double> valeurs(List<SerieTemporelleService.Point> points) {
+        List<Double> data = new ArrayList<>(points.size());
+        for (SerieTemporelleService.Point point : points) {
+            data.add(point.getValeur());
         }
-        
         return data;
     }
 
@@ -326,59 +298,45 @@ public class AiChartsService {
     }
 
     // Calculer le score IA basé sur les vraies données
-    private double calculateIAScore() {
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
-        List<FicheSuivi> fichesSuivi = ficheSuiviRepository.findAll();
-        
-        if (fichesQualite.isEmpty()) {
+    private double calculateIAScore(AnalyticsSnapshot snapshot) {
+        if (snapshot.getFichesQualite().isEmpty()) {
             return 75.0; // Score par défaut
         }
         
-        long fichesTerminees = fichesQualite.stream().filter(f -> "TERMINE".equals(f.getStatut())).count();
-        double tauxConformite = (double) fichesTerminees / fichesQualite.size() * 100;
+        double tauxConformite = snapshot.tauxTermine();
         
         // Score basé sur le taux de conformité et le nombre de fiches de suivi
-        double score = tauxConformite + (fichesSuivi.size() * 2);
+        double score = tauxConformite + (snapshot.getNbFichesSuivi() * 2);
         return Math.min(100.0, Math.max(0.0, score));
     }
 
     // Calculer le niveau de confiance
-    private double calculateConfidence() {
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
-        List<FicheSuivi> fichesSuivi = ficheSuiviRepository.findAll();
-        List<FicheProjet> fichesProjet = ficheProjetRepository.findAll();
-        
+    private double calculateConfidence(AnalyticsSnapshot snapshot) {
         // Confiance basée sur la quantité de données
-        double confidence = (fichesQualite.size() * 10) + (fichesSuivi.size() * 15) + (fichesProjet.size() * 10);
+        double confidence = (snapshot.getNbFichesQualite() * 10) + (snapshot.getNbFichesSuivi() * 15) + (snapshot.getNbFichesProjet() * 10);
         return Math.min(100.0, Math.max(0.0, confidence));
     }
 
     // Calculer le nombre d'alertes
-    private int calculateAlerts() {
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
-        
-        if (fichesQualite.isEmpty()) {
+    private int calculateAlerts(AnalyticsSnapshot snapshot) {
+        if (snapshot.getFichesQualite().isEmpty()) {
             return 1; // Alerte par défaut
         }
         
-        long fichesEnCours = fichesQualite.stream().filter(f -> "EN_COURS".equals(f.getStatut())).count();
-        long fichesBloquees = fichesQualite.stream().filter(f -> "BLOQUE".equals(f.getStatut())).count();
+        long fichesEnCours = snapshot.nbFichesQualite("EN_COURS");
+        long fichesBloquees = snapshot.nbFichesQualite("BLOQUE");
         
         return (int) (fichesEnCours + fichesBloquees);
     }
 
     // Calculer le nombre d'optimisations
-    private int calculateOptimizations() {
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
-        
-        if (fichesQualite.isEmpty()) {
+    private int calculateOptimizations(AnalyticsSnapshot snapshot) {
+        if (snapshot.getFichesQualite().isEmpty()) {
             return 2; // Optimisations par défaut
         }
         
         // Basé sur le nombre de fiches et leur statut
-        long totalFiches = fichesQualite.size();
-        long fichesTerminees = fichesQualite.stream().filter(f -> "TERMINE".equals(f.getStatut())).count();
-        double tauxConformite = (double) fichesTerminees / totalFiches * 100;
+        double tauxConformite = snapshot.tauxTermine();
         
         if (tauxConformite < 70) {
             return 3; // Plus d'optimisations si le taux est faible
@@ -388,4 +346,4 @@ public class AiChartsService {
             return 1;
         }
     }
-} 
\ No newline at end of file
+}
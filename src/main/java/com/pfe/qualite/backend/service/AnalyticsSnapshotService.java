@@ -0,0 +1,111 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.FicheProjet;
+import com.pfe.qualite.backend.model.FicheQualite;
+import com.pfe.qualite.backend.model.FicheSuivi;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Fournit un instantané immuable des données lues par les analyses IA
+ * Chargé une seule fois par requête HTTP et partagé par tous les calculs
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsSnapshotService {
+
+    private static final String ATTRIBUT_REQUETE = AnalyticsSnapshotService.class.getName() + ".SNAPSHOT";
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Instantané de la requête courante (chargé au premier appel).
+     * Hors requête HTTP (tâches planifiées), un nouvel instantané est chargé à chaque appel.
+     */
+    public AnalyticsSnapshot getSnapshot() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return charger();
+        }
+        AnalyticsSnapshot snapshot = (AnalyticsSnapshot) attributes.getAttribute(ATTRIBUT_REQUETE, RequestAttributes.SCOPE_REQUEST);
+        if (snapshot == null) {
+            snapshot = charger();
+            attributes.setAttribute(ATTRIBUT_REQUETE, snapshot, RequestAttributes.SCOPE_REQUEST);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Un aller-retour par collection, limité aux champs utilisés par les analyses
+     */
+    private AnalyticsSnapshot charger() {
+        Query qualite = new Query();
+        qualite.fields().include("statut", "typeFiche");
+
+        Query projets = new Query();
+        projets.fields().include("statut");
+
+        List<FicheQualite> fichesQualite = mongoTemplate.find(qualite, FicheQualite.class);
+        long nbFichesSuivi = mongoTemplate.count(new Query(), FicheSuivi.class);
+        List<FicheProjet> fichesProjet = mongoTemplate.find(projets, FicheProjet.class);
+
+        log.debug("Instantané analytique chargé: {} fiches qualité, {} suivis, {} projets",
+            fichesQualite.size(), nbFichesSuivi, fichesProjet.size());
+        return new AnalyticsSnapshot(fichesQualite, nbFichesSuivi, fichesProjet);
+    }
+
+    /**
+     * Données projetées et compteurs dérivés, en lecture seule
+     */
+    public static final class AnalyticsSnapshot {
+        private final List<FicheQualite> fichesQualite;
+        private final long nbFichesSuivi;
+        private final List<FicheProjet> fichesProjet;
+        private final Map<String, Long> statutsQualite;
+        private final Map<String, Long> statutsProjet;
+
+        AnalyticsSnapshot(List<FicheQualite> fichesQualite, long nbFichesSuivi, List<FicheProjet> fichesProjet) {
+            this.fichesQualite = Collections.unmodifiableList(fichesQualite);
+            this.nbFichesSuivi = nbFichesSuivi;
+            this.fichesProjet = Collections.unmodifiableList(fichesProjet);
+            this.statutsQualite = compter(fichesQualite.stream().map(FicheQualite::getStatut));
+            this.statutsProjet = compter(fichesProjet.stream().map(FicheProjet::getStatut));
+        }
+
+        private static Map<String, Long> compter(java.util.stream.Stream<String> statuts) {
+            return Collections.unmodifiableMap(statuts
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(s -> s, Collectors.counting())));
+        }
+
+        public List<FicheQualite> getFichesQualite() { return fichesQualite; }
+        public List<FicheProjet> getFichesProjet() { return fichesProjet; }
+        public long getNbFichesSuivi() { return nbFichesSuivi; }
+        public int getNbFichesQualite() { return fichesQualite.size(); }
+        public int getNbFichesProjet() { return fichesProjet.size(); }
+
+        public long nbFichesQualite(String statut) {
+            return statutsQualite.getOrDefault(statut, 0L);
+        }
+
+        public long nbProjets(String statut) {
+            return statutsProjet.getOrDefault(statut, 0L);
+        }
+
+        /**
+         * Part des fiches qualité au statut TERMINE (0 si aucune fiche)
+         */
+        public double tauxTermine() {
+            return fichesQualite.isEmpty() ? 0.0 : (double) nbFichesQualite("TERMINE") / fichesQualite.size() * 100;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.HistoriqueAction;
+import com.pfe.qualite.backend.model.Utilisateur;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Écriture asynchrone et groupée de l'historique des actions.
+ * Les actions sont placées dans une file bornée puis insérées par lots (insertMany) par un thread dédié.
+ * File pleine : l'appelant attend brièvement, puis écrit lui-même l'action (contre-pression, aucune perte).
+ */
+@Component
+@Slf4j
+public class AuditTrailWriter {
+
+    static final String NOM_SYSTEME = "Système";
+    static final String NOM_INCONNU = "Utilisateur inconnu";
+
+    private final MongoTemplate mongoTemplate;
+    private final BlockingQueue<HistoriqueAction> file;
+    private final int tailleLot;
+    private final long attenteMaxMs;
+
+    private final Counter compteurRecues;
+    private final Counter compteurEcrites;
+    private final Counter compteurEchecs;
+    private final Counter compteurSynchrones;
+    private final Timer dureeLot;
+
+    private volatile boolean actif = true;
+    private Thread ecrivain;
+
+    public AuditTrailWriter(MongoTemplate mongoTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${audit.file.capacite:10000}") int capacite,
+                            @Value("${audit.lot.taille:200}") int tailleLot,
+                            @Value("${audit.file.attente-max-ms:50}") long attenteMaxMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.file = new ArrayBlockingQueue<>(capacite);
+        this.tailleLot = tailleLot;
+        this.attenteMaxMs = attenteMaxMs;
+
+        this.compteurRecues = meterRegistry.counter("audit.actions.recues");
+        this.compteurEcrites = meterRegistry.counter("audit.actions.ecrites");
+        this.compteurEchecs = meterRegistry.counter("audit.actions.echecs");
+        this.compteurSynchrones = meterRegistry.counter("audit.actions.synchrones");
+        this.dureeLot = meterRegistry.timer("audit.lot.duree");
+        meterRegistry.gauge("audit.file.taille", file, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    void demarrer() {
+        ecrivain = new Thread(this::boucle, "audit-writer");
+        ecrivain.setDaemon(true);
+        ecrivain.start();
+    }
+
+    /**
+     * Met une action en file d'écriture (ne bloque pas plus de attente-max-ms)
+     */
+    public void soumettre(HistoriqueAction action) {
+        compteurRecues.increment();
+        try {
+            if (actif && file.offer(action, attenteMaxMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // File saturée ou arrêt en cours : écriture directe par l'appelant
+        compteurSynchrones.increment();
+        ecrire(new ArrayList<>(List.of(action)));
+    }
+
+    private void boucle() {
+        List<HistoriqueAction> lot = new ArrayList<>(tailleLot);
+        while (actif || !file.isEmpty()) {
+            try {
+                HistoriqueAction premiere = file.poll(500, TimeUnit.MILLISECONDS);
+                if (premiere == null) {
+                    continue;
+                }
+                lot.add(premiere);
+                file.drainTo(lot, tailleLot - 1);
+                ecrire(lot);
+            } catch (InterruptedException e) {
+                // Arrêt demandé : la file restante est vidée par arreter()
+                break;
+            } finally {
+                lot.clear();
+            }
+        }
+    }
+
+    /**
+     * Résout les noms d'utilisateurs du lot en une requête puis insère le lot en une opération
+     */
+    private void ecrire(List<HistoriqueAction> lot) {
+        dureeLot.record(() -> {
+            try {
+                resoudreNoms(lot);
+                mongoTemplate.insert(lot, HistoriqueAction.class);
+                compteurEcrites.increment(lot.size());
+            } catch (Exception e) {
+                compteurEchecs.increment(lot.size());
+                log.warn("Impossible d'enregistrer {} action(s) d'historique: {}", lot.size(), e.getMessage());
+            }
+        });
+    }
+
+    private void resoudreNoms(List<HistoriqueAction> lot) {
+        Set<String> ids = new HashSet<>();
+        for (HistoriqueAction action : lot) {
+            if (action.getUtilisateurNom() == null && action.getUtilisateurId() != null) {
+                ids.add(action.getUtilisateurId());
+            }
+        }
+        Map<String, String> noms = new HashMap<>();
+        if (!ids.isEmpty()) {
+            Query query = new Query(Criteria.where("_id").in(ids));
+            query.fields().include("nom");
+            for (Utilisateur utilisateur : mongoTemplate.find(query, Utilisateur.class)) {
+                noms.put(utilisateur.getId(), utilisateur.getNom());
+            }
+        }
+        for (HistoriqueAction action : lot) {
+            if (action.getUtilisateurNom() == null) {
+                action.setUtilisateurNom(action.getUtilisateurId() == null
+                    ? NOM_SYSTEME
+                    : noms.getOrDefault(action.getUtilisateurId(), NOM_INCONNU));
+            }
+        }
+    }
+
+    /**
+     * Arrêt : le thread termine son lot, puis tout ce qui reste en file est écrit avant la fermeture
+     */
+    @PreDestroy
+    void arreter() {
+        actif = false;
+        try {
+            ecrivain.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ecrivain.isAlive()) {
+            ecrivain.interrupt();
+        }
+        List<HistoriqueAction> reste = new ArrayList<>();
+        file.drainTo(reste);
+        for (int i = 0; i < reste.size(); i += tailleLot) {
+            ecrire(new ArrayList<>(reste.subList(i, Math.min(i + tailleLot, reste.size()))));
+        }
+        log.info("Écrivain d'historique arrêté ({} action(s) vidée(s) à l'arrêt)", reste.size());
+    }
+}
@@ -0,0 +1,80 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.Attachment;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Reprise des pièces jointes de l'ancien stockage à plat dans le stockage par contenu.
+ * Exécutée en arrière-plan au démarrage ; idempotente (seules les pièces jointes qui ont encore
+ * un storedFileName sont relues). Les téléchargements restent servis pendant la reprise.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BlobMigration {
+
+    private final MongoTemplate mongoTemplate;
+    private final FileStorageService fileStorageService;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrer() {
+        try {
+            reprendreAnciensFichiers();
+        } catch (Exception e) {
+            log.warn("Reprise des pièces jointes interrompue: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return le nombre de pièces jointes reprises
+     */
+    public long reprendreAnciensFichiers() {
+        Query anciennes = new Query(Criteria.where("storedFileName").ne(null));
+        anciennes.fields().include("storedFileName");
+
+        long lues = 0;
+        long reprises = 0;
+        try (Stream<Attachment> attachments = mongoTemplate.stream(anciennes, Attachment.class)) {
+            Iterator<Attachment> it = attachments.iterator();
+            while (it.hasNext()) {
+                Attachment attachment = it.next();
+                lues++;
+                String ancienNom = attachment.getStoredFileName();
+                String empreinte;
+                try {
+                    empreinte = fileStorageService.importerAncienFichier(ancienNom);
+                } catch (RuntimeException e) {
+                    log.warn("Pièce jointe {} non reprise: {}", attachment.getId(), e.getMessage());
+                    continue;
+                }
+
+                // Ne touche pas une pièce jointe supprimée ou reprise entre-temps
+                long modifiees = mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(attachment.getId()).and("storedFileName").is(ancienNom)),
+                        new Update().set("sha256", empreinte).unset("storedFileName"),
+                        Attachment.class).getModifiedCount();
+                if (modifiees == 1) {
+                    fileStorageService.supprimerAncienFichier(ancienNom);
+                    reprises++;
+                } else {
+                    fileStorageService.deleteFile(empreinte);
+                }
+            }
+        }
+        log.info("Reprise des pièces jointes : {} pièce(s) jointe(s) de l'ancien stockage lue(s), {} reprise(s)", lues, reprises);
+        return reprises;
+    }
+}
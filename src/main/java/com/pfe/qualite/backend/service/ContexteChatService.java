@@ -0,0 +1,268 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.FicheQualite;
+import com.pfe.qualite.backend.model.Notification;
+import com.pfe.qualite.backend.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Résumé des données qualité injecté dans le prompt du chatbot.
+ * La partie globale est calculée par agrégations MongoDB (jamais de findAll) et gardée en mémoire.
+ * Après une écriture (invalider()), elle est recalculée au prochain appel avant de répondre ;
+ * à l'expiration de sa durée de vie, elle est recalculée en arrière-plan et l'ancienne copie sert en attendant.
+ * Seule la partie propre à l'utilisateur (ses notifications non lues) est lue à chaque appel, via l'index utilisateur_lu.
+ */
+@Service
+@Slf4j
+public class ContexteChatService {
+
+    static final String NON_DEFINI = "Non défini";
+
+    private final MongoTemplate mongoTemplate;
+    private final NotificationRepository notificationRepository;
+    private final ReponseChatCache reponseChatCache;
+    private final long dureeVieMs;
+
+    private volatile Resume resume;
+    // Incrémentée à chaque écriture : un résumé calculé avant la dernière écriture est périmé
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicBoolean calculEnCours = new AtomicBoolean();
+
+    public ContexteChatService(MongoTemplate mongoTemplate,
+                               NotificationRepository notificationRepository,
+                               ReponseChatCache reponseChatCache,
+                               @Value("${chat.contexte.duree-vie-ms:30000}") long dureeVieMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.notificationRepository = notificationRepository;
+        this.reponseChatCache = reponseChatCache;
+        this.dureeVieMs = dureeVieMs;
+    }
+
+    /**
+     * Contexte complet pour un utilisateur : résumé global (en cache) + données personnelles
+     */
+    public String getContexte(String userId) {
+        StringBuilder context = new StringBuilder(resumeCourant());
+        if (userId != null) {
+            try {
+                long nonLues = notificationRepository.countByUtilisateurIdAndLuFalse(userId);
+                if (nonLues > 0) {
+                    context.append("Vos notifications non lues: ").append(nonLues).append("\n");
+                }
+            } catch (Exception e) {
+                log.warn("Impossible de compter les notifications de {}: {}", userId, e.getMessage());
+            }
+        }
+        return context.toString();
+    }
+
+    /**
+     * Signale une écriture sur les fiches : le résumé sera recalculé au prochain appel
+     * et les réponses du chatbot fondées sur l'ancien résumé sont retirées du cache
+     */
+    public void invalider() {
+        version.incrementAndGet();
+        reponseChatCache.vider();
+    }
+
+    /**
+     * Renvoie le résumé en mémoire. Après une écriture, il est recalculé avant de répondre (quelques
+     * agrégations) : une réponse ne s'appuie jamais sur des données antérieures à la dernière écriture.
+     * Simplement expiré, un seul recalcul est lancé en arrière-plan et l'ancienne version est servie en attendant.
+     */
+    private String resumeCourant() {
+        Resume courant = resume;
+        if (courant == null || courant.version != version.get()) {
+            return calculer().texte;
+        }
+        if (System.currentTimeMillis() - courant.calculeA > dureeVieMs && calculEnCours.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    calculer();
+                } catch (Exception e) {
+                    log.warn("Impossible de recalculer le contexte du chatbot: {}", e.getMessage());
+                } finally {
+                    calculEnCours.set(false);
+                }
+            });
+        }
+        return courant.texte;
+    }
+
+    private Resume calculer() {
+        long versionCalculee = version.get();
+        String texte;
+        try {
+            texte = construireResume();
+        } catch (Exception e) {
+            log.error("Error preparing context: ", e);
+            // Pas de mise en cache d'un résumé en erreur
+            return new Resume("Erreur lors de la récupération des données.\n", versionCalculee - 1, 0);
+        }
+        Resume nouveau = new Resume(texte, versionCalculee, System.currentTimeMillis());
+        synchronized (this) {
+            // Un recalcul en arrière-plan plus lent ne remplace pas un résumé plus récent
+            if (resume == null || resume.version <= versionCalculee) {
+                resume = nouveau;
+            }
+        }
+        return nouveau;
+    }
+
+    String construireResume() {
+        StringBuilder context = new StringBuilder();
+
+        // Fiches qualité : total, répartitions par statut et par priorité en une agrégation
+        Document qualite = facettes(Aggregation.newAggregation(
+            Aggregation.facet(
+                    Aggregation.project().and(ConditionalOperators.ifNull("statut").then(NON_DEFINI)).as("cle"),
+                    Aggregation.group("cle").count().as("total"),
+                    Aggregation.sort(Sort.Direction.DESC, "total"))
+                .as("statuts")
+                .and(
+                    Aggregation.match(Criteria.where("priorite").ne(null)),
+                    Aggregation.group("priorite").count().as("total"),
+                    Aggregation.sort(Sort.Direction.DESC, "total"))
+                .as("priorites")
+                .and(Aggregation.count().as("total")).as("total")
+        ), "fiches_qualite");
+
+        long totalQualite = premiereValeur(qualite, "total", "total", 0L).longValue();
+        context.append("=== DONNÉES SYSTÈME QUALITÉ ===\n\n");
+        context.append("Total de fiches qualité: ").append(totalQualite).append("\n");
+
+        if (totalQualite > 0) {
+            context.append("\nRépartition par statut:\n");
+            ajouterRepartition(context, qualite, "statuts");
+
+            // Fiches en retard : requête sur l'index dateEcheance, seules les 5 plus anciennes sont chargées
+            Query enRetard = Query.query(Criteria.where("dateEcheance").lt(LocalDate.now()).and("statut").ne("TERMINE"));
+            long nbEnRetard = mongoTemplate.count(enRetard, FicheQualite.class);
+            if (nbEnRetard > 0) {
+                Query exemples = Query.of(enRetard).with(Sort.by("dateEcheance")).limit(5);
+                exemples.fields().include("titre", "responsable", "dateEcheance");
+                context.append("\nFiches en retard (").append(nbEnRetard).append("):\n");
+                mongoTemplate.find(exemples, FicheQualite.class).forEach(f ->
+                    context.append("  - ").append(f.getTitre())
+                           .append(" (Responsable: ").append(maskEmail(f.getResponsable()))
+                           .append(", Échéance: ").append(f.getDateEcheance())
+                           .append(")\n")
+                );
+            }
+
+            if (!qualite.getList("priorites", Document.class, Collections.emptyList()).isEmpty()) {
+                context.append("\nRépartition par priorité:\n");
+                ajouterRepartition(context, qualite, "priorites");
+            }
+        }
+
+        // Fiches de suivi : total, moyennes (les valeurs absentes sont ignorées par $avg) et problèmes récurrents
+        Document suivi = facettes(Aggregation.newAggregation(
+            Aggregation.facet(
+                    Aggregation.group()
+                        .count().as("total")
+                        .avg("tauxConformite").as("tauxMoyen")
+                        .avg("delaiTraitementJours").as("delaiMoyen"))
+                .as("kpi")
+                .and(
+                    Aggregation.match(Criteria.where("problemes").nin(null, "")),
+                    Aggregation.group("problemes").count().as("total"),
+                    Aggregation.sort(Sort.Direction.DESC, "total"),
+                    Aggregation.limit(3))
+                .as("problemes")
+        ), "fiches_suivi");
+
+        long totalSuivi = premiereValeur(suivi, "kpi", "total", 0L).longValue();
+        context.append("\nTotal de fiches de suivi: ").append(totalSuivi).append("\n");
+
+        if (totalSuivi > 0) {
+            Number tauxConformiteMoyen = premiereValeur(suivi, "kpi", "tauxMoyen", null);
+            Number delaiMoyen = premiereValeur(suivi, "kpi", "delaiMoyen", null);
+
+            if (tauxConformiteMoyen != null) {
+                context.append("Taux de conformité moyen: ")
+                       .append(String.format("%.1f%%", tauxConformiteMoyen.doubleValue()))
+                       .append("\n");
+            }
+
+            if (delaiMoyen != null) {
+                context.append("Délai de traitement moyen: ")
+                       .append(String.format("%.1f jours", delaiMoyen.doubleValue()))
+                       .append("\n");
+            }
+
+            List<Document> problemes = suivi.getList("problemes", Document.class, Collections.emptyList());
+            if (!problemes.isEmpty()) {
+                context.append("\nProblèmes identifiés:\n");
+                problemes.forEach(p ->
+                    context.append("  - ").append(p.get("_id"))
+                           .append(" (").append(((Number) p.get("total")).longValue()).append(" fois)\n")
+                );
+            }
+        }
+
+        // Notifications non lues, toutes confondues
+        long notificationsNonLues = mongoTemplate.count(Query.query(Criteria.where("lu").is(false)), Notification.class);
+        if (notificationsNonLues > 0) {
+            context.append("\nNotifications non lues: ").append(notificationsNonLues).append("\n");
+        }
+
+        return context.toString();
+    }
+
+    private Document facettes(Aggregation aggregation, String collection) {
+        Document facettes = mongoTemplate.aggregate(aggregation, collection, Document.class).getUniqueMappedResult();
+        return facettes != null ? facettes : new Document();
+    }
+
+    private void ajouterRepartition(StringBuilder context, Document facettes, String facette) {
+        for (Document bucket : facettes.getList(facette, Document.class, Collections.emptyList())) {
+            context.append("  - ").append(bucket.get("_id")).append(": ")
+                   .append(((Number) bucket.get("total")).longValue()).append("\n");
+        }
+    }
+
+    private Number premiereValeur(Document facettes, String facette, String champ, Number defaut) {
+        List<Document> buckets = facettes.getList(facette, Document.class, Collections.emptyList());
+        Object valeur = buckets.isEmpty() ? null : buckets.get(0).get(champ);
+        return valeur instanceof Number nombre ? nombre : defaut;
+    }
+
+    /**
+     * Masquer les emails pour la confidentialité
+     */
+    private String maskEmail(String email) {
+        if (email == null || email.length() < 3) {
+            return "***";
+        }
+        return email.substring(0, 3) + "***";
+    }
+
+    private static final class Resume {
+        private final String texte;
+        private final long version;
+        private final long calculeA;
+
+        Resume(String texte, long version, long calculeA) {
+            this.texte = texte;
+            this.version = version;
+            this.calculeA = calculeA;
+        }
+    }
+}
@@ -1,15 +1,29 @@
 package com.pfe.qualite.backend.service;
 
+import com.pfe.qualite.backend.model.FicheQualite;
+import com.pfe.qualite.backend.model.FicheSuivi;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Service d'export de données en Excel et PDF
@@ -19,32 +33,61 @@ import java.util.Map;
 @Slf4j
 public class ExportService {
 
+    private static final int LARGEUR_COLONNE = 20 * 256; // 20 caractères (unité POI : 1/256e de caractère)
+
+    private static final List<String> COLONNES_FICHES_QUALITE = Arrays.asList(
+        "ID", "Titre", "Type", "Statut", "Catégorie", "Priorité", "Responsable", "Date échéance", "Date création");
+
+    private static final List<String> COLONNES_FICHES_SUIVI = Arrays.asList(
+        "ID", "Fiche qualité", "Date suivi", "État d'avancement", "Taux conformité", "Délai traitement (jours)", "Ajouté par");
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Nombre de lignes gardées en mémoire par SXSSF, les précédentes sont vidées sur disque
+     */
+    @Value("${export.excel.fenetre-lignes:100}")
+    private int fenetreLignes;
+
     /**
      * Exporte des données en format Excel
      */
     public byte[] exportToExcel(String sheetName, List<String> headers, List<List<Object>> data) throws IOException {
         log.info("Export Excel - Sheet: {}, Lignes: {}", sheetName, data.size());
         
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            streamToExcel(sheetName, headers, data.iterator(), out);
+            log.info("Export Excel réussi - Taille: {} bytes", out.size());
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Écrit un classeur Excel directement dans le flux de sortie.
+     * Seules {@code fenetreLignes} lignes restent en mémoire : la consommation est constante quel que soit le volume.
+     */
+    public long streamToExcel(String sheetName, List<String> headers, Iterator<List<Object>> lignes, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(fenetreLignes);
+        workbook.setCompressTempFiles(true);
+        try {
             Sheet sheet = workbook.createSheet(sheetName);
-            
-            // Style pour l'en-tête
             CellStyle headerStyle = createHeaderStyle(workbook);
-            
-            // Style pour les données
             CellStyle dataStyle = createDataStyle(workbook);
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.cloneStyleFrom(dataStyle);
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("dd/mm/yyyy hh:mm"));
             
-            // Créer la ligne d'en-tête
+            // Largeur fixe : autoSizeColumn nécessiterait de conserver toutes les lignes
             Row headerRow = sheet.createRow(0);
             for (int i = 0; i < headers.size(); i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(headers.get(i));
-                cell.setCellStyle(headerStyle);
+                sheet.setColumnWidth(i, LARGEUR_COLONNE);
+                createCell(headerRow, i, headers.get(i), headerStyle);
             }
+            sheet.createFreezePane(0, 1);
             
-            // Créer les lignes de données
             int rowNum = 1;
-            for (List<Object> rowData : data) {
+            while (lignes.hasNext()) {
+                List<Object> rowData = lignes.next();
                 Row row = sheet.createRow(rowNum++);
                 for (int i = 0; i < rowData.size(); i++) {
                     Cell cell = row.createCell(i);
@@ -54,6 +97,10 @@ public class ExportService {
                         cell.setCellValue(((Number) value).doubleValue());
                     } else if (value instanceof Boolean) {
                         cell.setCellValue((Boolean) value);
+                    } else if (value instanceof Date || value instanceof LocalDate || value instanceof LocalDateTime) {
+                        setDateValue(cell, value);
+                        cell.setCellStyle(dateStyle);
+                        continue;
                     } else {
                         cell.setCellValue(value != null ? value.toString() : "");
                     }
@@ -62,14 +109,52 @@ public class ExportService {
                 }
             }
             
-            // Auto-dimensionner les colonnes
-            for (int i = 0; i < headers.size(); i++) {
-                sheet.autoSizeColumn(i);
-            }
-            
             workbook.write(out);
-            log.info("Export Excel réussi - Taille: {} bytes", out.size());
-            return out.toByteArray();
+            out.flush();
+            log.info("Export Excel en flux réussi - Sheet: {}, Lignes: {}", sheetName, rowNum - 1);
+            return rowNum - 1L;
+        } finally {
+            // Supprime les fichiers temporaires de la fenêtre glissante
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private void setDateValue(Cell cell, Object value) {
+        if (value instanceof Date) {
+            cell.setCellValue((Date) value);
+        } else if (value instanceof LocalDate) {
+            cell.setCellValue((LocalDate) value);
+        } else {
+            cell.setCellValue((LocalDateTime) value);
+        }
+    }
+
+    /**
+     * Exporte toutes les fiches qualité en lisant la collection avec un curseur MongoDB
+     */
+    public long streamFichesQualiteToExcel(OutputStream out) throws IOException {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "dateCreation"));
+        query.fields().include("titre", "typeFiche", "statut", "categorie", "priorite", "responsable", "dateEcheance", "dateCreation");
+        try (Stream<FicheQualite> fiches = mongoTemplate.stream(query, FicheQualite.class)) {
+            Iterator<List<Object>> lignes = fiches.map(f -> Arrays.<Object>asList(
+                f.getId(), f.getTitre(), f.getTypeFiche(), f.getStatut(), f.getCategorie(), f.getPriorite(),
+                f.getResponsable(), f.getDateEcheance(), f.getDateCreation())).iterator();
+            return streamToExcel("Fiches Qualité", COLONNES_FICHES_QUALITE, lignes, out);
+        }
+    }
+
+    /**
+     * Exporte toutes les fiches de suivi en lisant la collection avec un curseur MongoDB
+     */
+    public long streamFichesSuiviToExcel(OutputStream out) throws IOException {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "dateSuivi"));
+        query.fields().include("ficheId", "dateSuivi", "etatAvancement", "tauxConformite", "delaiTraitementJours", "ajoutePar");
+        try (Stream<FicheSuivi> suivis = mongoTemplate.stream(query, FicheSuivi.class)) {
+            Iterator<List<Object>> lignes = suivis.map(s -> Arrays.<Object>asList(
+                s.getId(), s.getFicheId(), s.getDateSuivi(), s.getEtatAvancement(), s.getTauxConformite(),
+                s.getDelaiTraitementJours(), s.getAjoutePar())).iterator();
+            return streamToExcel("Fiches de Suivi", COLONNES_FICHES_SUIVI, lignes, out);
         }
     }
 
@@ -77,9 +162,19 @@ public class ExportService {
      * Exporte un rapport KPI en Excel
      */
     public byte[] exportRapportKpiToExcel(Map<String, Object> rapportData) throws IOException {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            exportRapportKpiToExcel(rapportData, out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Écrit le rapport KPI directement dans le flux de sortie (quelques dizaines de lignes : XSSF suffit)
+     */
+    public void exportRapportKpiToExcel(Map<String, Object> rapportData, OutputStream out) throws IOException {
         log.info("Export Rapport KPI vers Excel");
         
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        try (Workbook workbook = new XSSFWorkbook()) {
             
             // Feuille 1: Statistiques Générales
             createStatistiquesGeneralesSheet(workbook, rapportData);
@@ -94,8 +189,8 @@ public class ExportService {
             createMetriquesPerformanceSheet(workbook, rapportData);
             
             workbook.write(out);
-            log.info("Export Rapport KPI Excel réussi - Taille: {} bytes", out.size());
-            return out.toByteArray();
+            out.flush();
+            log.info("Export Rapport KPI Excel réussi");
         }
     }
 
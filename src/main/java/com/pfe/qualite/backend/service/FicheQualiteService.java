@@ -24,6 +24,10 @@ public class FicheQualiteService {
     private final FicheQualiteRepository ficheQualiteRepository;
     private final NotificationService notificationService;
     private final HistoriqueService historiqueService;
+    private final KpiSnapshotService kpiSnapshotService;
+    private final ContexteChatService contexteChatService;
+    private final SerieTemporelleService serieTemporelleService;
+    private final RollupQualiteService rollupQualiteService;
 
     /**
      * Récupère toutes les fiches qualité
@@ -72,6 +76,10 @@ public class FicheQualiteService {
         
         // Sauvegarde
         FicheQualite savedFiche = ficheQualiteRepository.save(fiche);
+        kpiSnapshotService.ficheQualiteModifiee(null, savedFiche);
+        serieTemporelleService.ficheQualiteModifiee(null, savedFiche);
+        rollupQualiteService.ficheQualiteModifiee(null, savedFiche);
+        contexteChatService.invalider();
         
         // Notification
         if (fiche.getResponsable() != null && !fiche.getResponsable().isEmpty()) {
@@ -117,6 +125,14 @@ public class FicheQualiteService {
         // Validation métier
         validateFiche(ficheUpdated);
         
+        // Champs comptés dans la vue KPI, avant modification
+        FicheQualite avant = FicheQualite.builder()
+            .statut(existingFiche.getStatut())
+            .typeFiche(existingFiche.getTypeFiche())
+            .priorite(existingFiche.getPriorite())
+            .dateCreation(existingFiche.getDateCreation())
+            .build();
+        
         // Mise à jour des champs
         existingFiche.setTitre(ficheUpdated.getTitre());
         existingFiche.setDescription(ficheUpdated.getDescription());
@@ -133,6 +149,10 @@ public class FicheQualiteService {
         existingFiche.setModifiePar(ficheUpdated.getResponsable());
         
         FicheQualite savedFiche = ficheQualiteRepository.save(existingFiche);
+        kpiSnapshotService.ficheQualiteModifiee(avant, savedFiche);
+        serieTemporelleService.ficheQualiteModifiee(avant, savedFiche);
+        rollupQualiteService.ficheQualiteModifiee(avant, savedFiche);
+        contexteChatService.invalider();
         
         // Notification
         if (savedFiche.getResponsable() != null && !savedFiche.getResponsable().isEmpty()) {
@@ -186,6 +206,10 @@ public class FicheQualiteService {
         );
         
         ficheQualiteRepository.deleteById(id);
+        kpiSnapshotService.ficheQualiteModifiee(fiche, null);
+        serieTemporelleService.ficheQualiteModifiee(fiche, null);
+        rollupQualiteService.ficheQualiteModifiee(fiche, null);
+        contexteChatService.invalider();
         log.info("Fiche qualité supprimée avec succès, ID: {}", id);
     }
 
@@ -4,6 +4,7 @@ import com.pfe.qualite.backend.model.FicheQualite;
 import com.pfe.qualite.backend.model.FicheSuivi;
 import com.pfe.qualite.backend.repository.FicheQualiteRepository;
 import com.pfe.qualite.backend.repository.FicheSuiviRepository;
+import com.pfe.qualite.backend.util.TauxConformiteParser;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -28,6 +30,10 @@ public class FicheSuiviService {
     private final FicheQualiteRepository ficheQualiteRepository;
     private final NotificationService notificationService;
     private final HistoriqueService historiqueService;
+    private final KpiSnapshotService kpiSnapshotService;
+    private final ContexteChatService contexteChatService;
+    private final SerieTemporelleService serieTemporelleService;
+    private final RollupQualiteService rollupQualiteService;
 
     /**
      * Récupère toutes les fiches de suivi
@@ -80,9 +86,14 @@ public class FicheSuiviService {
         if (ficheSuivi.getDateSuivi() == null) {
             ficheSuivi.setDateSuivi(new Date());
         }
+        deriverTauxConformite(ficheSuivi);
         
         // Sauvegarde
         FicheSuivi savedFicheSuivi = ficheSuiviRepository.save(ficheSuivi);
+        kpiSnapshotService.ficheSuiviModifiee(null, savedFicheSuivi);
+        serieTemporelleService.ficheSuiviModifiee(null, savedFicheSuivi);
+        rollupQualiteService.ficheSuiviModifiee(null, savedFicheSuivi);
+        contexteChatService.invalider();
         
         // Notification
         if (ficheSuivi.getAjoutePar() != null && !ficheSuivi.getAjoutePar().isEmpty()) {
@@ -120,20 +131,46 @@ public class FicheSuiviService {
         // Validation métier
         validateFicheSuivi(ficheSuiviUpdated);
         
+        // Document antérieur à la migration : taux déduit avant comptage dans la vue KPI
+        deriverTauxConformite(existingFicheSuivi);
+        
+        // Taux renvoyé tel quel par le client alors qu'il avait été déduit de l'ancien texte : il suit le nouveau texte
+        Double tauxConformite = ficheSuiviUpdated.getTauxConformite();
+        if (tauxConformite != null
+                && tauxConformite.equals(existingFicheSuivi.getTauxConformite())
+                && !Objects.equals(existingFicheSuivi.getIndicateursKpi(), ficheSuiviUpdated.getIndicateursKpi())
+                && tauxConformite.equals(TauxConformiteParser.extraire(existingFicheSuivi.getIndicateursKpi()))) {
+            tauxConformite = null;
+        }
+        
+        // Champs comptés dans la vue KPI, avant modification
+        FicheSuivi avant = FicheSuivi.builder()
+            .etatAvancement(existingFicheSuivi.getEtatAvancement())
+            .dateSuivi(existingFicheSuivi.getDateSuivi())
+            .indicateursKpi(existingFicheSuivi.getIndicateursKpi())
+            .tauxConformite(existingFicheSuivi.getTauxConformite())
+            .delaiTraitementJours(existingFicheSuivi.getDelaiTraitementJours())
+            .build();
+        
         // Mise à jour des champs
         existingFicheSuivi.setEtatAvancement(ficheSuiviUpdated.getEtatAvancement());
         existingFicheSuivi.setProblemes(ficheSuiviUpdated.getProblemes());
         existingFicheSuivi.setDecisions(ficheSuiviUpdated.getDecisions());
         existingFicheSuivi.setIndicateursKpi(ficheSuiviUpdated.getIndicateursKpi());
-        existingFicheSuivi.setTauxConformite(ficheSuiviUpdated.getTauxConformite());
+        existingFicheSuivi.setTauxConformite(tauxConformite);
         existingFicheSuivi.setDelaiTraitementJours(ficheSuiviUpdated.getDelaiTraitementJours());
         existingFicheSuivi.setAjoutePar(ficheSuiviUpdated.getAjoutePar());
         
         if (ficheSuiviUpdated.getDateSuivi() != null) {
             existingFicheSuivi.setDateSuivi(ficheSuiviUpdated.getDateSuivi());
         }
+        deriverTauxConformite(existingFicheSuivi);
         
         FicheSuivi savedFicheSuivi = ficheSuiviRepository.save(existingFicheSuivi);
+        kpiSnapshotService.ficheSuiviModifiee(avant, savedFicheSuivi);
+        serieTemporelleService.ficheSuiviModifiee(avant, savedFicheSuivi);
+        rollupQualiteService.ficheSuiviModifiee(avant, savedFicheSuivi);
+        contexteChatService.invalider();
         
         // Historique
         historiqueService.enregistrerAction(
@@ -169,9 +206,24 @@ public class FicheSuiviService {
         );
         
         ficheSuiviRepository.deleteById(id);
+        deriverTauxConformite(ficheSuivi);
+        kpiSnapshotService.ficheSuiviModifiee(ficheSuivi, null);
+        serieTemporelleService.ficheSuiviModifiee(ficheSuivi, null);
+        rollupQualiteService.ficheSuiviModifiee(ficheSuivi, null);
+        contexteChatService.invalider();
         log.info("Fiche de suivi supprimée avec succès, ID: {}", id);
     }
 
+    /**
+     * Renseigne tauxConformite depuis indicateursKpi quand il n'est pas saisi,
+     * pour que les rapports n'aient jamais à analyser le texte libre
+     */
+    private void deriverTauxConformite(FicheSuivi ficheSuivi) {
+        if (ficheSuivi.getTauxConformite() == null) {
+            ficheSuivi.setTauxConformite(TauxConformiteParser.extraire(ficheSuivi.getIndicateursKpi()));
+        }
+    }
+
     /**
      * Compte le nombre total de fiches de suivi
      */
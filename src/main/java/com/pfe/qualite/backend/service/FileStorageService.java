@@ -1,145 +1,449 @@
 package com.pfe.qualite.backend.service;
 
+import com.pfe.qualite.backend.model.BlobFichier;
+import com.pfe.qualite.backend.util.SignatureFichier;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
 
 /**
- * Service de gestion du stockage des fichiers
+ * Service de gestion du stockage des fichiers.
+ *
+ * Stockage par contenu : chaque fichier est rangé sous son empreinte SHA-256, dans
+ * blobs/ab/cd/abcd… (deux niveaux de répertoires, 65 536 feuilles), et n'est écrit qu'une fois
+ * quel que soit le nombre de pièces jointes qui le référencent. Le compteur de références
+ * est tenu dans la collection blobs ; le fichier disparaît avec sa dernière référence.
+ *
+ * Les fichiers de l'ancien stockage à plat (nom UUID à la racine) restent lisibles jusqu'à
+ * leur reprise par BlobMigration.
  */
 @Service
 @Slf4j
 public class FileStorageService {
 
+    private static final String REPERTOIRE_BLOBS = "blobs";
+    private static final String REPERTOIRE_TEMPORAIRE = "tmp";
+    // Uploads par morceaux : conservés au redémarrage pour pouvoir être repris
+    private static final String REPERTOIRE_PARTIELS = "partiels";
+
+    // Référencement et suppression d'un même blob ne doivent pas s'entrelacer
+    private static final int VERROUS = 64;
+
+    // Seule mémoire tenue par un upload, quelle que soit sa taille
+    private static final int TAILLE_TAMPON = 64 * 1024;
+
     @Value("${file.upload-dir:uploads}")
     private String uploadDir;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     private Path fileStorageLocation;
+    private Path blobsLocation;
+    private Path tmpLocation;
+    private Path partielsLocation;
+
+    private final Object[] verrous = new Object[VERROUS];
+
+    public FileStorageService() {
+        for (int i = 0; i < VERROUS; i++) {
+            verrous[i] = new Object();
+        }
+    }
 
     @PostConstruct
     public void init() {
         this.fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
-        
+        this.blobsLocation = fileStorageLocation.resolve(REPERTOIRE_BLOBS);
+        this.tmpLocation = fileStorageLocation.resolve(REPERTOIRE_TEMPORAIRE);
+        this.partielsLocation = fileStorageLocation.resolve(REPERTOIRE_PARTIELS);
+
         try {
-            Files.createDirectories(this.fileStorageLocation);
+            Files.createDirectories(this.blobsLocation);
+            Files.createDirectories(this.tmpLocation);
+            Files.createDirectories(this.partielsLocation);
             log.info("Répertoire de stockage créé: {}", this.fileStorageLocation);
         } catch (Exception ex) {
             log.error("Impossible de créer le répertoire de stockage", ex);
             throw new RuntimeException("Impossible de créer le répertoire de stockage", ex);
         }
+
+        // Restes d'uploads interrompus par un arrêt brutal
+        try (DirectoryStream<Path> restes = Files.newDirectoryStream(tmpLocation)) {
+            for (Path reste : restes) {
+                Files.deleteIfExists(reste);
+            }
+        } catch (IOException ex) {
+            log.warn("Nettoyage du répertoire temporaire impossible: {}", ex.getMessage());
+        }
     }
 
     /**
-     * Stocke un fichier et retourne le nom généré
+     * Stocke un fichier et retourne l'empreinte SHA-256 de son contenu
      */
     public String storeFile(MultipartFile file) {
-        // Nettoyer le nom du fichier
-        String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
-        
+        try (InputStream in = file.getInputStream()) {
+            String empreinte = stocker(in, null, Long.MAX_VALUE).getEmpreinte();
+            log.info("Fichier stocké: {} (original: {})", empreinte, file.getOriginalFilename());
+            return empreinte;
+        } catch (IOException ex) {
+            log.error("Erreur lors du stockage du fichier: {}", file.getOriginalFilename(), ex);
+            throw new RuntimeException("Erreur lors du stockage du fichier: " + file.getOriginalFilename(), ex);
+        }
+    }
+
+    /**
+     * Stocke un flux lu une seule fois (corps d'un upload en streaming) : signature, taille et
+     * empreinte sont contrôlées au fil de la lecture, sans autre copie que l'écriture sur disque.
+     * Lève une IllegalArgumentException si le contenu est vide, trop volumineux ou ne correspond pas au type déclaré.
+     */
+    public FichierStocke storeStream(InputStream contenu, String contentType, long tailleMax) {
         try {
-            // Vérifier si le fichier contient des caractères invalides
-            if (originalFileName.contains("..")) {
-                throw new RuntimeException("Le nom du fichier contient une séquence de chemin invalide: " + originalFileName);
+            FichierStocke stocke = stocker(contenu, contentType, tailleMax);
+            log.info("Fichier stocké: {} ({} octets)", stocke.getEmpreinte(), stocke.getTaille());
+            return stocke;
+        } catch (IOException ex) {
+            log.error("Erreur lors du stockage du flux", ex);
+            throw new RuntimeException("Erreur lors du stockage du fichier", ex);
+        }
+    }
+
+    /**
+     * Écrit le flux par canal dans un fichier temporaire du répertoire de stockage en calculant l'empreinte
+     * au passage, puis le range sous cette empreinte (simple renommage) s'il n'existe pas déjà et ajoute une référence.
+     *
+     * @param contentType type à vérifier sur les premiers octets, null pour ne pas vérifier
+     */
+    private FichierStocke stocker(InputStream contenu, String contentType, long tailleMax) throws IOException {
+        Path temporaire = Files.createTempFile(tmpLocation, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            ByteBuffer tampon = ByteBuffer.allocate(TAILLE_TAMPON);
+            boolean signatureVerifiee = contentType == null;
+            long taille = 0;
+            try (FileChannel cible = FileChannel.open(temporaire, StandardOpenOption.WRITE)) {
+                boolean fin = false;
+                while (!fin) {
+                    int lus = contenu.read(tampon.array(), tampon.position(), tampon.remaining());
+                    fin = lus < 0;
+                    if (lus > 0) {
+                        tampon.position(tampon.position() + lus);
+                    }
+                    if (!signatureVerifiee) {
+                        // Les premiers octets sont accumulés jusqu'à pouvoir juger la signature
+                        if (!fin && tampon.position() < SignatureFichier.OCTETS) {
+                            continue;
+                        }
+                        if (tampon.position() > 0 && !SignatureFichier.correspond(contentType, tampon.array(), tampon.position())) {
+                            throw new IllegalArgumentException("Le contenu du fichier ne correspond pas au type " + contentType);
+                        }
+                        signatureVerifiee = true;
+                    }
+                    if (tampon.position() == 0 || (!fin && tampon.hasRemaining())) {
+                        continue;
+                    }
+                    tampon.flip();
+                    taille += tampon.remaining();
+                    if (taille > tailleMax) {
+                        throw new IllegalArgumentException("Fichier trop volumineux (max " + tailleMax / (1024 * 1024) + " MB)");
+                    }
+                    digest.update(tampon.array(), 0, tampon.limit());
+                    while (tampon.hasRemaining()) {
+                        cible.write(tampon);
+                    }
+                    tampon.clear();
+                }
+            }
+            if (taille == 0) {
+                throw new IllegalArgumentException("Le fichier est vide");
             }
+            String empreinte = HexFormat.of().formatHex(digest.digest());
+            referencer(empreinte, temporaire, taille);
+            return new FichierStocke(empreinte, taille);
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+    }
+
+    // ==================== Uploads par morceaux ====================
+
+    /**
+     * Crée le fichier partiel d'un upload par morceaux, préalloué à sa taille finale
+     */
+    public Path creerFichierPartiel(String uploadId, long taille) {
+        Path fichier = getFichierPartiel(uploadId);
+        try (RandomAccessFile partiel = new RandomAccessFile(fichier.toFile(), "rw")) {
+            partiel.setLength(taille);
+            return fichier;
+        } catch (IOException ex) {
+            log.error("Impossible de créer le fichier partiel: {}", uploadId, ex);
+            throw new RuntimeException("Impossible de créer le fichier partiel: " + uploadId, ex);
+        }
+    }
 
-            // Générer un nom unique pour éviter les conflits
-            String fileExtension = "";
-            int dotIndex = originalFileName.lastIndexOf('.');
-            if (dotIndex > 0) {
-                fileExtension = originalFileName.substring(dotIndex);
+    public Path getFichierPartiel(String uploadId) {
+        if (uploadId == null || !uploadId.matches("[0-9a-f-]{1,64}")) {
+            throw new IllegalArgumentException("Identifiant d'upload invalide");
+        }
+        return partielsLocation.resolve(uploadId + ".part");
+    }
+
+    public void supprimerFichierPartiel(String uploadId) {
+        try {
+            Files.deleteIfExists(getFichierPartiel(uploadId));
+        } catch (IOException ex) {
+            log.warn("Fichier partiel {} non supprimé: {}", uploadId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Range un fichier partiel complet dans le stockage par contenu : les morceaux ayant été écrits
+     * en place, le fichier est seulement relu pour l'empreinte et la signature, puis renommé.
+     * Le fichier partiel n'existe plus au retour, que le stockage réussisse ou non.
+     */
+    public FichierStocke storeAssembledFile(String uploadId, String contentType) {
+        Path fichier = getFichierPartiel(uploadId);
+        try {
+            MessageDigest digest = sha256();
+            ByteBuffer tampon = ByteBuffer.allocate(TAILLE_TAMPON);
+            long taille = 0;
+            try (FileChannel source = FileChannel.open(fichier, StandardOpenOption.READ)) {
+                ByteBuffer debut = ByteBuffer.allocate(SignatureFichier.OCTETS);
+                source.read(debut, 0);
+                if (!SignatureFichier.correspond(contentType, debut.array(), debut.position())) {
+                    throw new IllegalArgumentException("Le contenu du fichier ne correspond pas au type " + contentType);
+                }
+                while (source.read(tampon) >= 0) {
+                    tampon.flip();
+                    digest.update(tampon.array(), 0, tampon.limit());
+                    taille += tampon.limit();
+                    tampon.clear();
+                }
             }
-            
-            String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
-            
-            // Copier le fichier vers le répertoire de destination
-            Path targetLocation = this.fileStorageLocation.resolve(uniqueFileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            
-            log.info("Fichier stocké: {} (original: {})", uniqueFileName, originalFileName);
-            return uniqueFileName;
-            
+            String empreinte = HexFormat.of().formatHex(digest.digest());
+            referencer(empreinte, fichier, taille);
+            log.info("Upload par morceaux {} stocké: {} ({} octets)", uploadId, empreinte, taille);
+            return new FichierStocke(empreinte, taille);
         } catch (IOException ex) {
-            log.error("Erreur lors du stockage du fichier: {}", originalFileName, ex);
-            throw new RuntimeException("Erreur lors du stockage du fichier: " + originalFileName, ex);
+            log.error("Erreur lors de l'assemblage de l'upload: {}", uploadId, ex);
+            throw new RuntimeException("Erreur lors de l'assemblage de l'upload: " + uploadId, ex);
+        } finally {
+            supprimerFichierPartiel(uploadId);
+        }
+    }
+
+    private void referencer(String empreinte, Path temporaire, long taille) throws IOException {
+        synchronized (verrou(empreinte)) {
+            Path blob = cheminBlob(empreinte);
+            if (!Files.exists(blob)) {
+                Files.createDirectories(blob.getParent());
+                Files.move(temporaire, blob, StandardCopyOption.ATOMIC_MOVE);
+            }
+            mongoTemplate.upsert(parEmpreinte(empreinte),
+                    new Update().inc("references", 1).setOnInsert("taille", taille).setOnInsert("dateCreation", new Date()),
+                    BlobFichier.class);
+        }
+    }
+
+    /**
+     * Chemin absolu du contenu d'empreinte donnée, pour les lectures directes par canal
+     */
+    public Path getFilePath(String empreinte) {
+        if (!estEmpreinte(empreinte)) {
+            throw new RuntimeException("Fichier non trouvé: " + empreinte);
+        }
+        Path filePath = cheminBlob(empreinte);
+        if (!Files.isRegularFile(filePath)) {
+            throw new RuntimeException("Fichier non trouvé: " + empreinte);
         }
+        return filePath;
     }
 
     /**
      * Charge un fichier en tant que Resource
      */
-    public Resource loadFileAsResource(String fileName) {
+    public Resource loadFileAsResource(String empreinte) {
         try {
-            Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            if (resource.exists()) {
-                return resource;
-            } else {
-                throw new RuntimeException("Fichier non trouvé: " + fileName);
-            }
+            return new UrlResource(getFilePath(empreinte).toUri());
         } catch (MalformedURLException ex) {
-            log.error("Fichier non trouvé: {}", fileName, ex);
-            throw new RuntimeException("Fichier non trouvé: " + fileName, ex);
+            log.error("Fichier non trouvé: {}", empreinte, ex);
+            throw new RuntimeException("Fichier non trouvé: " + empreinte, ex);
         }
     }
 
     /**
-     * Supprime un fichier
+     * Retire une référence au contenu ; le fichier est supprimé avec la dernière
      */
-    public void deleteFile(String fileName) {
-        try {
-            Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-            Files.deleteIfExists(filePath);
-            log.info("Fichier supprimé: {}", fileName);
-        } catch (IOException ex) {
-            log.error("Erreur lors de la suppression du fichier: {}", fileName, ex);
-            throw new RuntimeException("Erreur lors de la suppression du fichier: " + fileName, ex);
+    public void deleteFile(String empreinte) {
+        if (!estEmpreinte(empreinte)) {
+            return;
+        }
+        synchronized (verrou(empreinte)) {
+            BlobFichier blob = mongoTemplate.findAndModify(parEmpreinte(empreinte),
+                    new Update().inc("references", -1), FindAndModifyOptions.options().returnNew(true), BlobFichier.class);
+            if (blob != null && blob.getReferences() != null && blob.getReferences() > 0) {
+                return;
+            }
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(empreinte).and("references").lte(0)), BlobFichier.class);
+            try {
+                Files.deleteIfExists(cheminMiniature(empreinte));
+                Files.deleteIfExists(cheminBlob(empreinte));
+                log.info("Fichier supprimé: {}", empreinte);
+            } catch (IOException ex) {
+                log.error("Erreur lors de la suppression du fichier: {}", empreinte, ex);
+                throw new RuntimeException("Erreur lors de la suppression du fichier: " + empreinte, ex);
+            }
         }
     }
 
     /**
      * Vérifie si un fichier existe
      */
-    public boolean fileExists(String fileName) {
-        Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-        return Files.exists(filePath);
+    public boolean fileExists(String empreinte) {
+        return estEmpreinte(empreinte) && Files.exists(cheminBlob(empreinte));
     }
 
     /**
      * Obtient la taille d'un fichier en bytes
      */
-    public long getFileSize(String fileName) {
+    public long getFileSize(String empreinte) {
         try {
-            Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-            return Files.size(filePath);
-        } catch (IOException ex) {
-            log.error("Erreur lors de la récupération de la taille du fichier: {}", fileName, ex);
+            return Files.size(getFilePath(empreinte));
+        } catch (IOException | RuntimeException ex) {
+            log.error("Erreur lors de la récupération de la taille du fichier: {}", empreinte, ex);
             return 0;
         }
     }
 
+    // ==================== Miniatures ====================
+
+    /**
+     * Chemin de la miniature d'un contenu, rangée à côté du blob (le fichier peut ne pas exister)
+     */
+    public Path getThumbnailPath(String empreinte) {
+        if (!estEmpreinte(empreinte)) {
+            throw new RuntimeException("Fichier non trouvé: " + empreinte);
+        }
+        return cheminMiniature(empreinte);
+    }
+
+    /**
+     * Enregistre la miniature d'un contenu, sauf s'il a été supprimé entre-temps
+     */
+    public void storeThumbnail(String empreinte, byte[] miniature) {
+        synchronized (verrou(empreinte)) {
+            if (!fileExists(empreinte)) {
+                return;
+            }
+            try {
+                Path temporaire = Files.createTempFile(tmpLocation, "miniature-", ".tmp");
+                try {
+                    Files.write(temporaire, miniature);
+                    Files.move(temporaire, cheminMiniature(empreinte), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temporaire);
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException("Erreur lors de l'enregistrement de la miniature: " + empreinte, ex);
+            }
+        }
+    }
+
+    // ==================== Ancien stockage à plat ====================
+
+    /**
+     * Chemin d'un fichier de l'ancien stockage (nom UUID à la racine du répertoire)
+     */
+    public Path getAncienFichier(String fileName) {
+        Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
+        if (!filePath.getParent().equals(this.fileStorageLocation) || !Files.isRegularFile(filePath)) {
+            throw new RuntimeException("Fichier non trouvé: " + fileName);
+        }
+        return filePath;
+    }
+
+    /**
+     * Calcule l'empreinte SHA-256 (hexadécimal) d'un fichier de l'ancien stockage
+     */
+    public String calculerEmpreinte(String fileName) {
+        try (InputStream in = Files.newInputStream(getAncienFichier(fileName))) {
+            MessageDigest digest = sha256();
+            byte[] tampon = new byte[64 * 1024];
+            int lus;
+            while ((lus = in.read(tampon)) > 0) {
+                digest.update(tampon, 0, lus);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException ex) {
+            log.error("Erreur lors du calcul de l'empreinte du fichier: {}", fileName, ex);
+            throw new RuntimeException("Erreur lors du calcul de l'empreinte du fichier: " + fileName, ex);
+        }
+    }
+
+    /**
+     * Range un fichier de l'ancien stockage dans le stockage par contenu (une référence ajoutée).
+     * Le fichier d'origine est conservé : il est supprimé par supprimerAncienFichier une fois la pièce jointe mise à jour.
+     */
+    public String importerAncienFichier(String fileName) {
+        try (InputStream in = Files.newInputStream(getAncienFichier(fileName))) {
+            return stocker(in, null, Long.MAX_VALUE).getEmpreinte();
+        } catch (IOException ex) {
+            throw new RuntimeException("Erreur lors de la reprise du fichier: " + fileName, ex);
+        }
+    }
+
+    public void supprimerAncienFichier(String fileName) {
+        try {
+            Files.deleteIfExists(getAncienFichier(fileName));
+            log.info("Fichier supprimé: {}", fileName);
+        } catch (IOException ex) {
+            log.error("Erreur lors de la suppression du fichier: {}", fileName, ex);
+            throw new RuntimeException("Erreur lors de la suppression du fichier: " + fileName, ex);
+        }
+    }
+
     /**
      * Valide le type de fichier
      */
     public boolean isValidFileType(MultipartFile file, String[] allowedTypes) {
-        String contentType = file.getContentType();
+        return isValidFileType(file.getContentType(), allowedTypes);
+    }
+
+    /**
+     * Valide un type MIME déclaré
+     */
+    public boolean isValidFileType(String contentType, String[] allowedTypes) {
         if (contentType == null) {
             return false;
         }
-        
+
         for (String allowedType : allowedTypes) {
             if (contentType.toLowerCase().contains(allowedType.toLowerCase())) {
                 return true;
@@ -155,4 +459,65 @@ public class FileStorageService {
         long maxSizeBytes = maxSizeMB * 1024 * 1024;
         return file.getSize() <= maxSizeBytes;
     }
+
+    private Path cheminBlob(String empreinte) {
+        return blobsLocation.resolve(empreinte.substring(0, 2)).resolve(empreinte.substring(2, 4)).resolve(empreinte);
+    }
+
+    private Path cheminMiniature(String empreinte) {
+        return cheminBlob(empreinte).resolveSibling(empreinte + ".thumb.jpg");
+    }
+
+    private Object verrou(String empreinte) {
+        return verrous[Math.floorMod(empreinte.hashCode(), VERROUS)];
+    }
+
+    private static Query parEmpreinte(String empreinte) {
+        return new Query(Criteria.where("_id").is(empreinte));
+    }
+
+    /**
+     * 64 caractères hexadécimaux minuscules : exclut tout chemin arbitraire
+     */
+    private static boolean estEmpreinte(String valeur) {
+        if (valeur == null || valeur.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < valeur.length(); i++) {
+            char c = valeur.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Résultat d'un stockage : identifiant du contenu et nombre d'octets lus
+     */
+    public static final class FichierStocke {
+        private final String empreinte;
+        private final long taille;
+
+        public FichierStocke(String empreinte, long taille) {
+            this.empreinte = empreinte;
+            this.taille = taille;
+        }
+
+        public String getEmpreinte() {
+            return empreinte;
+        }
+
+        public long getTaille() {
+            return taille;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
 }
@@ -26,6 +26,12 @@ public class FormulaireObligatoireService {
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private KpiSnapshotService kpiSnapshotService;
+
+    @Autowired
+    private RollupQualiteService rollupQualiteService;
+
     /**
      * Créer un nouveau formulaire obligatoire
      */
@@ -44,7 +50,10 @@ public class FormulaireObligatoireService {
             }
         }
 
-        return formulaireRepository.save(formulaire);
+        FormulaireObligatoire saved = formulaireRepository.save(formulaire);
+        kpiSnapshotService.formulaireModifie(null, saved);
+        rollupQualiteService.formulaireModifie(null, saved);
+        return saved;
     }
 
     /**
@@ -52,6 +61,7 @@ public class FormulaireObligatoireService {
      */
     public FormulaireObligatoire updateFormulaireObligatoire(String id, FormulaireObligatoire updated) {
         return formulaireRepository.findById(id).map(formulaire -> {
+            FormulaireObligatoire avant = compteurs(formulaire);
             formulaire.setNom(updated.getNom());
             formulaire.setDescription(updated.getDescription());
             formulaire.setTypeFormulaire(updated.getTypeFormulaire());
@@ -62,7 +72,10 @@ public class FormulaireObligatoireService {
             formulaire.setStatut(updated.getStatut());
             formulaire.setPriorite(updated.getPriorite());
             formulaire.setCommentaire(updated.getCommentaire());
-            return formulaireRepository.save(formulaire);
+            FormulaireObligatoire saved = formulaireRepository.save(formulaire);
+            kpiSnapshotService.formulaireModifie(avant, saved);
+            rollupQualiteService.formulaireModifie(avant, saved);
+            return saved;
         }).orElseThrow(() -> new RuntimeException("Formulaire obligatoire non trouvé"));
     }
 
@@ -71,8 +84,12 @@ public class FormulaireObligatoireService {
      */
     public FormulaireObligatoire marquerCommeSoumis(String id) {
         return formulaireRepository.findById(id).map(formulaire -> {
+            FormulaireObligatoire avant = compteurs(formulaire);
             formulaire.setStatut("SOUMIS");
-            return formulaireRepository.save(formulaire);
+            FormulaireObligatoire saved = formulaireRepository.save(formulaire);
+            kpiSnapshotService.formulaireModifie(avant, saved);
+            rollupQualiteService.formulaireModifie(avant, saved);
+            return saved;
         }).orElseThrow(() -> new RuntimeException("Formulaire obligatoire non trouvé"));
     }
 
@@ -81,8 +98,12 @@ public class FormulaireObligatoireService {
      */
     public FormulaireObligatoire marquerCommeEnRetard(String id) {
         return formulaireRepository.findById(id).map(formulaire -> {
+            FormulaireObligatoire avant = compteurs(formulaire);
             formulaire.setStatut("EN_RETARD");
-            return formulaireRepository.save(formulaire);
+            FormulaireObligatoire saved = formulaireRepository.save(formulaire);
+            kpiSnapshotService.formulaireModifie(avant, saved);
+            rollupQualiteService.formulaireModifie(avant, saved);
+            return saved;
         }).orElseThrow(() -> new RuntimeException("Formulaire obligatoire non trouvé"));
     }
 
@@ -144,7 +165,23 @@ public class FormulaireObligatoireService {
      * Supprimer un formulaire obligatoire
      */
     public void deleteFormulaireObligatoire(String id) {
+        Optional<FormulaireObligatoire> formulaire = formulaireRepository.findById(id);
         formulaireRepository.deleteById(id);
+        formulaire.ifPresent(f -> {
+            kpiSnapshotService.formulaireModifie(f, null);
+            rollupQualiteService.formulaireModifie(f, null);
+        });
+    }
+
+    /**
+     * Copie des champs comptés dans la vue KPI et les agrégats journaliers, avant modification
+     */
+    private FormulaireObligatoire compteurs(FormulaireObligatoire formulaire) {
+        return FormulaireObligatoire.builder()
+            .statut(formulaire.getStatut())
+            .priorite(formulaire.getPriorite())
+            .dateCreation(formulaire.getDateCreation())
+            .build();
     }
 
     /**
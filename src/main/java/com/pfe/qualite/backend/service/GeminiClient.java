@@ -0,0 +1,311 @@
+package com.pfe.qualite.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pfe.qualite.backend.util.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Client HTTP asynchrone de l'API Gemini.
+ * - HttpClient JDK non bloquant (connexions réutilisées), délais de connexion et de réponse explicites
+ * - débit limité par un seau à jetons partagé par toutes les requêtes
+ * - nouvelles tentatives (429, 5xx, erreurs réseau) avec backoff exponentiel aléatoire, planifiées sans bloquer de thread
+ * - réponse complète (generateContent) ou en flux (streamGenerateContent)
+ * L'URL est configurable (gemini.api.url) : un serveur local factice peut la remplacer en test.
+ */
+@Component
+public class GeminiClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiClient.class);
+
+    private final String apiKey;
+    private final String apiUrl;
+    private final int maxRetries;
+    private final long retryDelay;
+    private final long retryDelayMax;
+    private final Duration timeoutLecture;
+    private final HttpClient httpClient;
+    private final TokenBucket limiteur;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public GeminiClient(@Value("${gemini.api.key:}") String apiKey,
+                        @Value("${gemini.api.url:https://generativelanguage.googleapis.com/v1beta/models/gemini-1.5-pro:generateContent}") String apiUrl,
+                        @Value("${gemini.max.retries:2}") int maxRetries,
+                        @Value("${gemini.retry.delay:2000}") long retryDelay,
+                        @Value("${gemini.retry.delay-max:30000}") long retryDelayMax,
+                        @Value("${gemini.timeout.connexion-ms:5000}") long timeoutConnexionMs,
+                        @Value("${gemini.timeout.lecture-ms:30000}") long timeoutLectureMs,
+                        @Value("${gemini.debit.rafale:5}") int rafale,
+                        @Value("${gemini.debit.requetes-par-minute:60}") int requetesParMinute) {
+        this.apiKey = apiKey;
+        this.apiUrl = apiUrl;
+        this.maxRetries = maxRetries;
+        this.retryDelay = retryDelay;
+        this.retryDelayMax = retryDelayMax;
+        this.timeoutLecture = Duration.ofMillis(timeoutLectureMs);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(timeoutConnexionMs))
+                .build();
+        this.limiteur = new TokenBucket(rafale, requetesParMinute / 60.0);
+    }
+
+    public boolean isConfigure() {
+        return apiKey != null && !apiKey.isEmpty();
+    }
+
+    /**
+     * Génère une réponse pour le prompt ; le futur échoue avec GeminiException après épuisement des tentatives
+     */
+    public CompletableFuture<String> generer(String prompt) {
+        return preparer(apiUrl + "?key=" + apiKey, prompt).thenCompose(requete ->
+                tentative(requete, reponse -> HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+                        this::extraireTexte, () -> false, 0));
+    }
+
+    /**
+     * Génère une réponse en flux (streamGenerateContent, format SSE) : chaque fragment de texte est transmis
+     * à surFragment dès sa réception, sur un thread du client HTTP. Le futur renvoie le texte complet.
+     * Les nouvelles tentatives ne sont faites que tant qu'aucun fragment n'a été transmis.
+     */
+    public CompletableFuture<String> genererEnFlux(String prompt, Consumer<String> surFragment) {
+        String urlFlux = apiUrl.replace(":generateContent", ":streamGenerateContent") + "?alt=sse&key=" + apiKey;
+        return preparer(urlFlux, prompt).thenCompose(requete -> {
+            LecteurSse lecteur = new LecteurSse(surFragment);
+            return tentative(requete,
+                    reponse -> reponse.statusCode() == 200
+                            ? HttpResponse.BodySubscribers.fromLineSubscriber(lecteur, LecteurSse::texte, StandardCharsets.UTF_8, null)
+                            : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+                    GeminiClient::verifierNonVide, lecteur::aCommence, 0);
+        });
+    }
+
+    private CompletableFuture<HttpRequest> preparer(String url, String prompt) {
+        if (!isConfigure()) {
+            return CompletableFuture.failedFuture(new GeminiException("Clé API Gemini non configurée", false));
+        }
+        try {
+            return CompletableFuture.completedFuture(HttpRequest.newBuilder(URI.create(url))
+                    .timeout(timeoutLecture)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(corpsRequete(prompt))))
+                    .build());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new GeminiException("Requête Gemini invalide: " + e.getMessage(), false));
+        }
+    }
+
+    /**
+     * @param resultat   transformation du corps d'une réponse 200 ; lève GeminiException si ce corps est inutilisable
+     * @param aCommence  vrai si une partie de la réponse a déjà été transmise (plus de nouvelle tentative possible)
+     */
+    private CompletableFuture<String> tentative(HttpRequest requete, HttpResponse.BodyHandler<String> handler,
+                                                Function<String, String> resultat, BooleanSupplier aCommence, int essai) {
+        return apresJeton()
+                .thenCompose(v -> {
+                    logger.info("🔄 Attempt {}/{} - Calling Gemini API...", essai + 1, maxRetries + 1);
+                    return httpClient.sendAsync(requete, handler);
+                })
+                .handle((reponse, erreur) -> {
+                    if (erreur == null && reponse.statusCode() == 200) {
+                        logger.info("✅ Gemini API call successful!");
+                        try {
+                            return CompletableFuture.completedFuture(resultat.apply(reponse.body()));
+                        } catch (GeminiException e) {
+                            logger.error("❌ Gemini API returned an unusable answer: {}", e.getMessage());
+                            return CompletableFuture.<String>failedFuture(e);
+                        }
+                    }
+                    boolean quota = erreur == null && reponse.statusCode() == 429;
+                    boolean reessayable = (erreur != null || quota || reponse.statusCode() >= 500) && !aCommence.getAsBoolean();
+                    String cause = erreur != null ? racine(erreur).toString() : "HTTP " + reponse.statusCode();
+                    if (!reessayable || essai >= maxRetries) {
+                        logger.error("❌ Gemini API call failed after {} attempt(s): {}", essai + 1, cause);
+                        return CompletableFuture.<String>failedFuture(new GeminiException(cause, quota));
+                    }
+                    long attente = delaiAvant(essai, reponse);
+                    logger.warn("⚠️ Gemini attempt {}/{} failed ({}). Retrying in {} ms", essai + 1, maxRetries + 1, cause, attente);
+                    return CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(attente, TimeUnit.MILLISECONDS))
+                            .thenCompose(v -> tentative(requete, handler, resultat, aCommence, essai + 1));
+                })
+                .thenCompose(f -> f);
+    }
+
+    /**
+     * Futur complété dès qu'un jeton est pris ; l'attente éventuelle est planifiée, jamais bloquante
+     */
+    private CompletableFuture<Void> apresJeton() {
+        long attente = limiteur.essayerAcquerir();
+        if (attente == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(attente, TimeUnit.NANOSECONDS))
+                .thenCompose(v -> apresJeton());
+    }
+
+    /**
+     * Backoff exponentiel à gigue complète, borné ; Retry-After du serveur respecté s'il est plus long
+     */
+    private long delaiAvant(int essai, HttpResponse<String> reponse) {
+        long plafond = Math.min(retryDelayMax, retryDelay << Math.min(essai, 20));
+        long attente = ThreadLocalRandom.current().nextLong(0, plafond + 1);
+        if (reponse != null) {
+            Optional<String> retryAfter = reponse.headers().firstValue("Retry-After");
+            if (retryAfter.isPresent()) {
+                try {
+                    attente = Math.max(attente, Math.min(retryDelayMax, Long.parseLong(retryAfter.get().trim()) * 1000));
+                } catch (NumberFormatException ignored) { }
+            }
+        }
+        return attente;
+    }
+
+    private Map<String, Object> corpsRequete(String prompt) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("contents", Collections.singletonList(
+                Map.of("parts", Collections.singletonList(Map.of("text", prompt)))));
+
+        // Configuration de génération pour des réponses conversationnelles
+        Map<String, Object> generationConfig = new HashMap<>();
+        generationConfig.put("temperature", 0.9);
+        generationConfig.put("topP", 0.95);
+        generationConfig.put("topK", 40);
+        generationConfig.put("maxOutputTokens", 800);
+        requestBody.put("generationConfig", generationConfig);
+        return requestBody;
+    }
+
+    /**
+     * Texte de la réponse ; une réponse sans texte ou illisible fait échouer l'appel (jamais mise en cache)
+     */
+    private String extraireTexte(String responseBody) {
+        JsonNode parts;
+        try {
+            parts = objectMapper.readTree(responseBody).path("candidates").path(0).path("content").path("parts");
+        } catch (Exception e) {
+            logger.error("Error parsing Gemini response: ", e);
+            throw new GeminiException("Réponse Gemini illisible", false, true);
+        }
+        return verifierNonVide(parts.path(0).path("text").asText(""));
+    }
+
+    private static String verifierNonVide(String texte) {
+        if (texte.isBlank()) {
+            throw new GeminiException("Réponse Gemini vide", false, true);
+        }
+        return texte;
+    }
+
+    /**
+     * Lecture ligne à ligne d'une réponse SSE : chaque ligne « data: {...} » porte un fragment de texte
+     */
+    private final class LecteurSse implements Flow.Subscriber<String> {
+        private final Consumer<String> surFragment;
+        private final StringBuilder texte = new StringBuilder();
+        private volatile boolean commence;
+
+        LecteurSse(Consumer<String> surFragment) {
+            this.surFragment = surFragment;
+        }
+
+        boolean aCommence() {
+            return commence;
+        }
+
+        String texte() {
+            return texte.toString();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String ligne) {
+            if (!ligne.startsWith("data:")) {
+                return;
+            }
+            String fragment;
+            try {
+                JsonNode parts = objectMapper.readTree(ligne.substring(5)).path("candidates").path(0).path("content").path("parts");
+                fragment = parts.path(0).path("text").asText("");
+            } catch (Exception e) {
+                logger.warn("Fragment Gemini illisible ignoré: {}", e.getMessage());
+                return;
+            }
+            if (fragment.isEmpty()) {
+                return;
+            }
+            commence = true;
+            texte.append(fragment);
+            try {
+                surFragment.accept(fragment);
+            } catch (Exception e) {
+                // Le destinataire (navigateur) a pu se déconnecter : le flux amont est lu jusqu'au bout quand même
+                logger.warn("Transmission d'un fragment Gemini impossible: {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // Remonté par le futur de la réponse
+        }
+
+        @Override
+        public void onComplete() {
+            // Le texte complet est renvoyé par texte()
+        }
+    }
+
+    private static Throwable racine(Throwable erreur) {
+        return erreur instanceof CompletionException && erreur.getCause() != null ? erreur.getCause() : erreur;
+    }
+
+    /**
+     * Échec définitif d'un appel Gemini
+     */
+    public static class GeminiException extends RuntimeException {
+        private final boolean quotaDepasse;
+        private final boolean reponseInvalide;
+
+        public GeminiException(String message, boolean quotaDepasse) {
+            this(message, quotaDepasse, false);
+        }
+
+        public GeminiException(String message, boolean quotaDepasse, boolean reponseInvalide) {
+            super(message);
+            this.quotaDepasse = quotaDepasse;
+            this.reponseInvalide = reponseInvalide;
+        }
+
+        public boolean isQuotaDepasse() {
+            return quotaDepasse;
+        }
+
+        /**
+         * Réponse 200 sans texte exploitable (vide ou illisible)
+         */
+        public boolean isReponseInvalide() {
+            return reponseInvalide;
+        }
+    }
+}
@@ -4,14 +4,28 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pfe.qualite.backend.model.HistoriqueAction;
 import com.pfe.qualite.backend.repository.HistoriqueActionRepository;
-import com.pfe.qualite.backend.repository.UtilisateurRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 public class HistoriqueService {
@@ -20,12 +34,20 @@ public class HistoriqueService {
     private HistoriqueActionRepository historiqueRepository;
 
     @Autowired
-    private UtilisateurRepository utilisateurRepository;
+    private AuditTrailWriter auditTrailWriter;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private static final String ENTETE_CSV = "date;utilisateur;action;module;entiteId;details\n";
+    private static final int TAILLE_TAMPON_CSV = 64 * 1024;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
      * Enregistre une action dans l'historique
+     * L'écriture est confiée à AuditTrailWriter (file bornée, insertion par lots hors du thread de requête) ;
+     * seules les données liées à la requête HTTP sont capturées ici.
      */
     public void enregistrerAction(String action, String entite, String entiteId, String utilisateurId, 
                                  String details, Object anciennesValeurs, Object nouvellesValeurs, 
@@ -36,7 +58,6 @@ public class HistoriqueService {
                     .entite(entite)
                     .entiteId(entiteId)
                     .utilisateurId(utilisateurId)
-                    .utilisateurNom(getNomUtilisateur(utilisateurId))
                     .details(details)
                     .dateAction(new Date())
                     .anciennesValeurs(anciennesValeurs != null ? objectMapper.writeValueAsString(anciennesValeurs) : null)
@@ -45,7 +66,7 @@ public class HistoriqueService {
                     .userAgent(request != null ? request.getHeader("User-Agent") : null)
                     .build();
 
-            historiqueRepository.save(historique);
+            auditTrailWriter.soumettre(historique);
         } catch (JsonProcessingException e) {
             // Log l'erreur mais ne pas faire échouer l'opération principale
             System.err.println("Erreur lors de la sérialisation JSON pour l'historique: " + e.getMessage());
@@ -120,6 +141,99 @@ public class HistoriqueService {
     }
 
     public List<HistoriqueAction> getHistoriqueFiltres(com.pfe.qualite.backend.controller.HistoriqueController.FiltresHistoriqueRequest f) {
+        Query query = requeteFiltres(f).with(Sort.by(Sort.Direction.DESC, "dateAction"));
+        return mongoTemplate.find(query, HistoriqueAction.class);
+    }
+
+    /**
+     * Filtres avancés paginés côté serveur (le total n'est compté que si la page n'est pas la dernière)
+     */
+    public Page<HistoriqueAction> getHistoriqueFiltres(com.pfe.qualite.backend.controller.HistoriqueController.FiltresHistoriqueRequest f,
+                                                       Pageable pageable) {
+        Query query = requeteFiltres(f).with(Sort.by(Sort.Direction.DESC, "dateAction")).with(pageable);
+        List<HistoriqueAction> contenu = mongoTemplate.find(query, HistoriqueAction.class);
+        return PageableExecutionUtils.getPage(contenu, pageable,
+                () -> mongoTemplate.count(Query.of(query).limit(-1).skip(-1), HistoriqueAction.class));
+    }
+
+    /**
+     * Écrit l'historique filtré en CSV UTF-8 directement dans le flux de sortie.
+     * Les actions sont lues une à une depuis un curseur MongoDB : mémoire constante quel que soit le volume.
+     *
+     * @return nombre de lignes écrites
+     */
+    public long exporterCsv(com.pfe.qualite.backend.controller.HistoriqueController.FiltresHistoriqueRequest f,
+                            OutputStream out, boolean gzip) throws IOException {
+        Query query = f != null ? requeteFiltres(f) : new Query();
+        query.with(Sort.by(Sort.Direction.DESC, "dateAction"));
+        query.fields().include("dateAction", "utilisateurNom", "action", "entite", "entiteId", "details");
+
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, TAILLE_TAMPON_CSV) : null;
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(gzipOut != null ? gzipOut : out, StandardCharsets.UTF_8), TAILLE_TAMPON_CSV);
+
+        long lignes = 0;
+        writer.write(ENTETE_CSV);
+        try (Stream<HistoriqueAction> actions = mongoTemplate.stream(query, HistoriqueAction.class)) {
+            Iterator<HistoriqueAction> it = actions.iterator();
+            while (it.hasNext()) {
+                HistoriqueAction a = it.next();
+                writer.write(escapeCsv(a.getDateAction()));
+                writer.write(';');
+                writer.write(escapeCsv(a.getUtilisateurNom()));
+                writer.write(';');
+                writer.write(escapeCsv(a.getAction()));
+                writer.write(';');
+                writer.write(escapeCsv(a.getEntite()));
+                writer.write(';');
+                writer.write(escapeCsv(a.getEntiteId()));
+                writer.write(';');
+                writer.write(escapeCsv(a.getDetails()));
+                writer.write('\n');
+                lignes++;
+            }
+        }
+        writer.flush();
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        out.flush();
+        return lignes;
+    }
+
+    /**
+     * Traduit les filtres avancés en une seule requête MongoDB (filtrage côté base).
+     * Égalités exactes sur des codes normalisés en majuscules pour rester couvertes par les index
+     * (utilisateurId, dateAction) et (entite, entiteId, dateAction).
+     */
+    private Query requeteFiltres(com.pfe.qualite.backend.controller.HistoriqueController.FiltresHistoriqueRequest f) {
+        Date[] bornes = resoudrePeriode(f);
+        Criteria criteria = new Criteria();
+        if (bornes[0] != null && bornes[1] != null) {
+            criteria.and("dateAction").gte(bornes[0]).lte(bornes[1]);
+        }
+        if (f.typeAction != null) {
+            criteria.and("action").is(f.typeAction.toUpperCase());
+        }
+        if (f.module != null) {
+            criteria.and("entite").is(f.module.toUpperCase());
+        }
+        if (f.utilisateurId != null) {
+            criteria.and("utilisateurId").is(f.utilisateurId);
+        }
+        return new Query(criteria);
+    }
+
+    private String escapeCsv(Object value) {
+        if (value == null) return "";
+        String s = value.toString();
+        return s.replace(";", ",").replace("\n", " ");
+    }
+
+    /**
+     * Bornes [début, fin] des filtres : dates explicites, sinon période prédéfinie (TODAY, WEEK, ...)
+     */
+    private Date[] resoudrePeriode(com.pfe.qualite.backend.controller.HistoriqueController.FiltresHistoriqueRequest f) {
         Date start = f.dateDebut;
         Date end = f.dateFin;
         if (f.periode != null && (start == null || end == null)) {
@@ -159,26 +273,7 @@ public class HistoriqueService {
                     break;
             }
         }
-
-        List<HistoriqueAction> base = (start != null && end != null)
-                ? historiqueRepository.findByDateActionBetweenOrderByDateActionDesc(start, end)
-                : historiqueRepository.findAll();
-
-        return base.stream()
-                .filter(a -> f.typeAction == null || f.typeAction.equalsIgnoreCase(a.getAction()))
-                .filter(a -> f.module == null || f.module.equalsIgnoreCase(a.getEntite()))
-                .filter(a -> f.utilisateurId == null || f.utilisateurId.equals(a.getUtilisateurId()))
-                .toList();
-    }
-
-    /**
-     * Récupère le nom d'un utilisateur
-     */
-    private String getNomUtilisateur(String utilisateurId) {
-        if (utilisateurId == null) return "Système";
-        
-        Optional<com.pfe.qualite.backend.model.Utilisateur> utilisateur = utilisateurRepository.findById(utilisateurId);
-        return utilisateur.map(u -> u.getNom()).orElse("Utilisateur inconnu");
+        return new Date[] { start, end };
     }
 
     /**
@@ -0,0 +1,252 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.FicheQualite;
+import com.pfe.qualite.backend.model.FicheSuivi;
+import com.pfe.qualite.backend.model.FormulaireObligatoire;
+import com.pfe.qualite.backend.model.KpiSnapshot;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Service de maintenance de la vue matérialisée kpi_snapshots
+ * Les écritures appliquent des deltas atomiques ($inc), les lectures coûtent un seul document
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KpiSnapshotService {
+
+    static final String NON_DEFINI = "NON_DEFINI";
+    static final double SEUIL_CONFORMITE = 80.0;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Retourne la vue courante, reconstruite si elle n'existe pas encore
+     */
+    public KpiSnapshot getSnapshot() {
+        KpiSnapshot snapshot = mongoTemplate.findById(KpiSnapshot.ID_GLOBAL, KpiSnapshot.class);
+        return snapshot != null ? snapshot : reconstruire();
+    }
+
+    // ===== Mises à jour incrémentales (avant = null pour une création, apres = null pour une suppression) =====
+
+    public void ficheQualiteModifiee(FicheQualite avant, FicheQualite apres) {
+        Map<String, Number> deltas = new HashMap<>();
+        if (avant != null) {
+            ajouter(deltas, "totalFichesQualite", -1);
+            ajouter(deltas, "statutsQualite." + cle(avant.getStatut()), -1);
+            ajouter(deltas, "typesFiche." + cle(avant.getTypeFiche()), -1);
+        }
+        if (apres != null) {
+            ajouter(deltas, "totalFichesQualite", 1);
+            ajouter(deltas, "statutsQualite." + cle(apres.getStatut()), 1);
+            ajouter(deltas, "typesFiche." + cle(apres.getTypeFiche()), 1);
+        }
+        appliquer(deltas);
+    }
+
+    public void ficheSuiviModifiee(FicheSuivi avant, FicheSuivi apres) {
+        Map<String, Number> deltas = new HashMap<>();
+        if (avant != null) {
+            ajouterSuivi(deltas, avant, -1);
+        }
+        if (apres != null) {
+            ajouterSuivi(deltas, apres, 1);
+        }
+        appliquer(deltas);
+    }
+
+    public void formulaireModifie(FormulaireObligatoire avant, FormulaireObligatoire apres) {
+        Map<String, Number> deltas = new HashMap<>();
+        if (avant != null) {
+            ajouter(deltas, "totalFormulaires", -1);
+            ajouter(deltas, "formulairesParStatut." + cle(avant.getStatut()), -1);
+            ajouter(deltas, "formulairesParPriorite." + cle(avant.getPriorite()), -1);
+        }
+        if (apres != null) {
+            ajouter(deltas, "totalFormulaires", 1);
+            ajouter(deltas, "formulairesParStatut." + cle(apres.getStatut()), 1);
+            ajouter(deltas, "formulairesParPriorite." + cle(apres.getPriorite()), 1);
+        }
+        appliquer(deltas);
+    }
+
+    private void ajouterSuivi(Map<String, Number> deltas, FicheSuivi suivi, int signe) {
+        ajouter(deltas, "totalFichesSuivi", signe);
+        ajouter(deltas, "statutsSuivi." + cle(suivi.getEtatAvancement()), signe);
+        if (suivi.getDateSuivi() != null) {
+            ajouter(deltas, "suivisParMois." + new SimpleDateFormat("yyyy-MM").format(suivi.getDateSuivi()), signe);
+        }
+        Double taux = suivi.getTauxConformite();
+        if (taux != null) {
+            ajouter(deltas, "evaluationsConformite", signe);
+            ajouter(deltas, "sommeTauxConformite", signe * taux);
+            if (taux >= SEUIL_CONFORMITE) {
+                ajouter(deltas, "nbConformes", signe);
+            }
+        }
+    }
+
+    private void ajouter(Map<String, Number> deltas, String champ, long delta) {
+        deltas.merge(champ, delta, (a, b) -> a.longValue() + b.longValue());
+    }
+
+    private void ajouter(Map<String, Number> deltas, String champ, double delta) {
+        deltas.merge(champ, delta, (a, b) -> a.doubleValue() + b.doubleValue());
+    }
+
+    /**
+     * Applique les deltas non nuls en une seule mise à jour atomique.
+     * Sans vue existante rien n'est écrit : la prochaine lecture la reconstruira.
+     */
+    private void appliquer(Map<String, Number> deltas) {
+        Update update = new Update();
+        deltas.forEach((champ, delta) -> {
+            if (delta.doubleValue() != 0) {
+                update.inc(champ, delta);
+            }
+        });
+        update.set("dateMiseAJour", new Date());
+        try {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(KpiSnapshot.ID_GLOBAL)), update, KpiSnapshot.class);
+        } catch (Exception e) {
+            log.warn("Impossible de mettre à jour la vue KPI: {}", e.getMessage());
+        }
+    }
+
+    // ===== Reconstruction complète =====
+
+    /**
+     * Recalcule la vue depuis les collections sources (une agrégation $facet par collection)
+     */
+    public KpiSnapshot reconstruire() {
+        log.info("Reconstruction de la vue KPI");
+
+        Document qualite = executerFacettes(Aggregation.newAggregation(
+            Aggregation.facet(repartitionPar("statut")).as("statuts")
+                .and(repartitionPar("typeFiche")).as("types")
+                .and(Aggregation.count().as("total")).as("total")
+        ), "fiches_qualite");
+
+        Document suivi = executerFacettes(Aggregation.newAggregation(
+            Aggregation.facet(repartitionPar("etatAvancement")).as("statuts")
+                .and(
+                    Aggregation.match(Criteria.where("dateSuivi").ne(null)),
+                    Aggregation.project().and(DateOperators.DateToString.dateOf("dateSuivi")
+                            .toString("%Y-%m")
+                            .withTimezone(DateOperators.Timezone.fromZone(ZoneId.systemDefault())))
+                        .as("cle"),
+                    Aggregation.group("cle").count().as("total"))
+                .as("parMois")
+                .and(
+                    Aggregation.match(Criteria.where("tauxConformite").ne(null)),
+                    Aggregation.group()
+                        .count().as("evalues")
+                        .sum("tauxConformite").as("somme")
+                        .sum(ConditionalOperators.when(Criteria.where("tauxConformite").gte(SEUIL_CONFORMITE))
+                            .then(1).otherwise(0)).as("conformes"))
+                .as("conformite")
+                .and(Aggregation.count().as("total")).as("total")
+        ), "fiches_suivi");
+
+        Document formulaires = executerFacettes(Aggregation.newAggregation(
+            Aggregation.facet(repartitionPar("statut")).as("statuts")
+                .and(repartitionPar("priorite")).as("priorites")
+                .and(Aggregation.count().as("total")).as("total")
+        ), "formulaires_obligatoires");
+
+        // tauxConformite est renseigné à l'écriture (et par TauxConformiteMigration pour l'existant) :
+        // aucun texte libre n'est analysé ici
+        long evalues = premierCompteur(suivi, "conformite", "evalues");
+        long conformes = premierCompteur(suivi, "conformite", "conformes");
+        double somme = premiereSomme(suivi, "conformite", "somme");
+
+        Date maintenant = new Date();
+        KpiSnapshot snapshot = KpiSnapshot.builder()
+            .id(KpiSnapshot.ID_GLOBAL)
+            .totalFichesQualite(premierCompteur(qualite, "total", "total"))
+            .statutsQualite(toCompteurs(qualite, "statuts"))
+            .typesFiche(toCompteurs(qualite, "types"))
+            .totalFichesSuivi(premierCompteur(suivi, "total", "total"))
+            .statutsSuivi(toCompteurs(suivi, "statuts"))
+            .suivisParMois(toCompteurs(suivi, "parMois"))
+            .evaluationsConformite(evalues)
+            .nbConformes(conformes)
+            .sommeTauxConformite(somme)
+            .totalFormulaires(premierCompteur(formulaires, "total", "total"))
+            .formulairesParStatut(toCompteurs(formulaires, "statuts"))
+            .formulairesParPriorite(toCompteurs(formulaires, "priorites"))
+            .dateReconstruction(maintenant)
+            .dateMiseAJour(maintenant)
+            .build();
+
+        return mongoTemplate.save(snapshot);
+    }
+
+    /**
+     * Étapes de comptage par valeur d'un champ (valeur absente → NON_DEFINI)
+     */
+    private AggregationOperation[] repartitionPar(String champ) {
+        return new AggregationOperation[] {
+            Aggregation.project().and(ConditionalOperators.ifNull(champ).then(NON_DEFINI)).as("cle"),
+            Aggregation.group("cle").count().as("total")
+        };
+    }
+
+    private Document executerFacettes(Aggregation aggregation, String collection) {
+        Document facettes = mongoTemplate.aggregate(aggregation, collection, Document.class).getUniqueMappedResult();
+        return facettes != null ? facettes : new Document();
+    }
+
+    /**
+     * Convertit une facette [{_id, total}] en map clé → nombre
+     */
+    private Map<String, Long> toCompteurs(Document facettes, String facette) {
+        Map<String, Long> compteurs = new HashMap<>();
+        for (Document bucket : facettes.getList(facette, Document.class, Collections.emptyList())) {
+            Object valeur = bucket.get("_id");
+            compteurs.merge(cle(valeur != null ? valeur.toString() : null), ((Number) bucket.get("total")).longValue(), Long::sum);
+        }
+        return compteurs;
+    }
+
+    private long premierCompteur(Document facettes, String facette, String champ) {
+        Number valeur = premiereValeur(facettes, facette, champ);
+        return valeur != null ? valeur.longValue() : 0L;
+    }
+
+    private double premiereSomme(Document facettes, String facette, String champ) {
+        Number valeur = premiereValeur(facettes, facette, champ);
+        return valeur != null ? valeur.doubleValue() : 0.0;
+    }
+
+    private Number premiereValeur(Document facettes, String facette, String champ) {
+        List<Document> buckets = facettes.getList(facette, Document.class, Collections.emptyList());
+        return buckets.isEmpty() ? null : (Number) buckets.get(0).get(champ);
+    }
+
+    /**
+     * Clé de map utilisable comme nom de champ MongoDB
+     */
+    private static String cle(String valeur) {
+        if (valeur == null || valeur.isEmpty()) {
+            return NON_DEFINI;
+        }
+        return valeur.replace('.', '_').replace('$', '_');
+    }
+}
@@ -0,0 +1,300 @@
+package com.pfe.qualite.backend.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfCanvasProcessor;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.data.ImageRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.IEventListener;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.pfe.qualite.backend.model.Attachment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Génération en arrière-plan des miniatures JPEG des pièces jointes (images, PDF).
+ * Chaque nouvelle pièce jointe place une tâche dans une file bornée traitée par un petit pool dédié ;
+ * file pleine : la tâche est abandonnée et sera replanifiée à la première demande de miniature.
+ *
+ * Les images sont décodées avec sous-échantillonnage (jamais en pleine résolution). iText ne sait pas
+ * rastériser une page : l'aperçu d'un PDF est la plus grande image affichée sur sa première page
+ * (cas des preuves numérisées) ; une première page sans image n'a pas de miniature.
+ *
+ * Seuls les contenus illisibles ou sans aperçu sont retenus comme sans miniature. Une erreur
+ * d'entrée-sortie (blob pas encore en place, disque) n'est que journalisée : la prochaine demande
+ * replanifie la tâche.
+ */
+@Component
+@Slf4j
+public class MiniatureService {
+
+    private static final Set<String> TYPES_SUPPORTES = Set.of("image/jpeg", "image/png", "image/gif", "application/pdf");
+
+    // Contenus sans miniature possible, pour ne pas les relire à chaque demande
+    private static final int ECHECS_MEMORISES = 10_000;
+
+    private static final float QUALITE_JPEG = 0.8f;
+
+    private final FileStorageService fileStorageService;
+    private final int taillePx;
+    private final ThreadPoolExecutor executeur;
+
+    private final Set<String> enCours = ConcurrentHashMap.newKeySet();
+    private final Set<String> sansMiniature = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > ECHECS_MEMORISES;
+                }
+            }));
+
+    private final Counter compteurGenerees;
+    private final Counter compteurEchecs;
+    private final Counter compteurRejets;
+
+    public MiniatureService(FileStorageService fileStorageService,
+                            MeterRegistry meterRegistry,
+                            @Value("${miniatures.threads:1}") int threads,
+                            @Value("${miniatures.file.capacite:200}") int capacite,
+                            @Value("${miniatures.taille-px:256}") int taillePx) {
+        this.fileStorageService = fileStorageService;
+        this.taillePx = taillePx;
+
+        AtomicInteger numero = new AtomicInteger();
+        this.executeur = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacite),
+                tache -> {
+                    Thread thread = new Thread(tache, "miniatures-" + numero.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+
+        this.compteurGenerees = meterRegistry.counter("miniatures.generees");
+        this.compteurEchecs = meterRegistry.counter("miniatures.echecs");
+        this.compteurRejets = meterRegistry.counter("miniatures.rejets");
+        meterRegistry.gauge("miniatures.file.taille", executeur, e -> e.getQueue().size());
+    }
+
+    /**
+     * Planifie la miniature d'une pièce jointe si elle n'existe pas encore
+     * @return false si aucune miniature n'est possible pour cette pièce jointe
+     */
+    public boolean planifier(Attachment attachment) {
+        String empreinte = attachment.getSha256();
+        if (!estSupporte(attachment.getContentType())) {
+            return false;
+        }
+        // Pièce jointe de l'ancien stockage : miniature générée à la première demande après sa reprise par BlobMigration
+        if (attachment.getStoredFileName() != null) {
+            return true;
+        }
+        if (empreinte == null) {
+            return false;
+        }
+        if (sansMiniature.contains(empreinte)) {
+            return false;
+        }
+        if (Files.exists(fileStorageService.getThumbnailPath(empreinte)) || !enCours.add(empreinte)) {
+            return true;
+        }
+        try {
+            executeur.execute(() -> generer(empreinte, attachment.getContentType()));
+        } catch (RejectedExecutionException e) {
+            enCours.remove(empreinte);
+            compteurRejets.increment();
+        }
+        return true;
+    }
+
+    public static boolean estSupporte(String contentType) {
+        return contentType != null && TYPES_SUPPORTES.contains(contentType.toLowerCase());
+    }
+
+    private void generer(String empreinte, String contentType) {
+        try {
+            if (!fileStorageService.fileExists(empreinte)) {
+                compteurEchecs.increment();
+                log.warn("Miniature de {} reportée : contenu absent du stockage", empreinte);
+                return;
+            }
+            Path source = fileStorageService.getFilePath(empreinte);
+            byte[] miniature;
+            try {
+                miniature = rendre(source, contentType);
+            } catch (IIOException | RuntimeException e) {
+                // Arrêt du pool pendant la lecture : le contenu n'est pas en cause
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                log.warn("Miniature impossible pour {}: {}", empreinte, e.getMessage());
+                miniature = null;
+            }
+            if (miniature == null) {
+                sansMiniature.add(empreinte);
+                compteurEchecs.increment();
+                return;
+            }
+            fileStorageService.storeThumbnail(empreinte, miniature);
+            compteurGenerees.increment();
+        } catch (Exception e) {
+            compteurEchecs.increment();
+            log.warn("Miniature de {} reportée à la prochaine demande: {}", empreinte, e.getMessage());
+        } finally {
+            enCours.remove(empreinte);
+        }
+    }
+
+    /**
+     * @return la miniature JPEG (au plus taillePx de côté), ou null si le contenu n'en permet pas
+     */
+    byte[] rendre(Path source, String contentType) throws IOException {
+        BufferedImage image;
+        if ("application/pdf".equalsIgnoreCase(contentType)) {
+            byte[] premiereImage = premiereImagePdf(source);
+            image = premiereImage != null ? lireReduite(ImageIO.createImageInputStream(new ByteArrayInputStream(premiereImage))) : null;
+        } else {
+            image = lireReduite(ImageIO.createImageInputStream(source.toFile()));
+        }
+        return image != null ? encoder(redimensionner(image)) : null;
+    }
+
+    /**
+     * Octets encodés (JPEG, PNG…) de la plus grande image affichée sur la première page
+     */
+    private static byte[] premiereImagePdf(Path source) throws IOException {
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(source.toFile()))) {
+            if (pdf.getNumberOfPages() == 0) {
+                return null;
+            }
+            PlusGrandeImage ecouteur = new PlusGrandeImage();
+            new PdfCanvasProcessor(ecouteur).processPageContent(pdf.getPage(1));
+            return ecouteur.image != null ? ecouteur.image.getImageBytes() : null;
+        }
+    }
+
+    /**
+     * Décode l'image en sautant des pixels : la résolution lue reste de l'ordre de deux fois la miniature
+     */
+    private BufferedImage lireReduite(ImageInputStream entree) throws IOException {
+        if (entree == null) {
+            return null;
+        }
+        try (entree) {
+            Iterator<ImageReader> lecteurs = ImageIO.getImageReaders(entree);
+            if (!lecteurs.hasNext()) {
+                return null;
+            }
+            ImageReader lecteur = lecteurs.next();
+            try {
+                lecteur.setInput(entree, true, true);
+                int cote = Math.max(lecteur.getWidth(0), lecteur.getHeight(0));
+                ImageReadParam parametres = lecteur.getDefaultReadParam();
+                int pas = Math.max(1, cote / (2 * taillePx));
+                parametres.setSourceSubsampling(pas, pas, 0, 0);
+                return lecteur.read(0, parametres);
+            } finally {
+                lecteur.dispose();
+            }
+        }
+    }
+
+    /**
+     * Réduit l'image pour tenir dans taillePx × taillePx, sur fond blanc (le JPEG n'a pas de transparence)
+     */
+    private BufferedImage redimensionner(BufferedImage source) {
+        double echelle = Math.min(1.0, (double) taillePx / Math.max(source.getWidth(), source.getHeight()));
+        int largeur = Math.max(1, (int) Math.round(source.getWidth() * echelle));
+        int hauteur = Math.max(1, (int) Math.round(source.getHeight() * echelle));
+        BufferedImage miniature = new BufferedImage(largeur, hauteur, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = miniature.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, largeur, hauteur);
+            g.drawImage(source, 0, 0, largeur, hauteur, null);
+        } finally {
+            g.dispose();
+        }
+        return miniature;
+    }
+
+    private static byte[] encoder(BufferedImage image) throws IOException {
+        ImageWriter ecrivain = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        try (ImageOutputStream flux = ImageIO.createImageOutputStream(sortie)) {
+            ecrivain.setOutput(flux);
+            ImageWriteParam parametres = ecrivain.getDefaultWriteParam();
+            parametres.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametres.setCompressionQuality(QUALITE_JPEG);
+            ecrivain.write(null, new IIOImage(image, null, null), parametres);
+        } finally {
+            ecrivain.dispose();
+        }
+        return sortie.toByteArray();
+    }
+
+    @PreDestroy
+    void arreter() {
+        executeur.shutdownNow();
+    }
+
+    /**
+     * Retient l'image de plus grande surface affichée sur la page (sans la décoder)
+     */
+    private static final class PlusGrandeImage implements IEventListener {
+        private PdfImageXObject image;
+        private float surface;
+
+        @Override
+        public void eventOccurred(IEventData donnees, EventType type) {
+            ImageRenderInfo info = (ImageRenderInfo) donnees;
+            if (info.getArea() > surface) {
+                surface = info.getArea();
+                image = info.getImage();
+            }
+        }
+
+        @Override
+        public Set<EventType> getSupportedEvents() {
+            return EnumSet.of(EventType.RENDER_IMAGE);
+        }
+    }
+}
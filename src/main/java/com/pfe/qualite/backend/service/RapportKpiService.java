@@ -1,66 +1,78 @@
 package com.pfe.qualite.backend.service;
 
-import com.pfe.qualite.backend.model.FicheQualite;
-import com.pfe.qualite.backend.model.FicheSuivi;
 import com.pfe.qualite.backend.model.FicheProjet;
-import com.pfe.qualite.backend.model.FormulaireObligatoire;
-import com.pfe.qualite.backend.repository.FicheQualiteRepository;
-import com.pfe.qualite.backend.repository.FicheSuiviRepository;
+import com.pfe.qualite.backend.model.KpiSnapshot;
+import com.pfe.qualite.backend.model.RollupQualiteJour;
 import com.pfe.qualite.backend.repository.FicheProjetRepository;
-import com.pfe.qualite.backend.repository.FormulaireObligatoireRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
 
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
 
 /**
- * Service désactivé temporairement - Sprint 2
- * Les modèles FicheQualite, FicheSuivi, FicheProjet seront créés au Sprint 2
+ * Service de génération des rapports KPI
+ * Les compteurs sont lus dans la vue matérialisée kpi_snapshots (voir KpiSnapshotService),
+ * les rapports par période dans les agrégats journaliers daily_quality_rollups (voir RollupQualiteService)
  */
-// @Service  // Désactivé temporairement
+@Service
 public class RapportKpiService {
 
     @Autowired
-    private FicheQualiteRepository ficheQualiteRepository;
+    private FicheProjetRepository ficheProjetRepository;
 
     @Autowired
-    private FicheSuiviRepository ficheSuiviRepository;
+    private MongoTemplate mongoTemplate;
 
     @Autowired
-    private FicheProjetRepository ficheProjetRepository;
+    private KpiSnapshotService kpiSnapshotService;
 
     @Autowired
-    private FormulaireObligatoireRepository formulaireObligatoireRepository;
+    private RollupQualiteService rollupQualiteService;
 
     /**
      * Générer un rapport KPI complet
+     * Lecture d'un seul document de compteurs : le coût ne dépend plus du volume des collections
      */
     public Map<String, Object> genererRapportKpiComplet() {
         Map<String, Object> rapport = new HashMap<>();
-        
+
+        // Fenêtre de l'évolution temporelle : 6 derniers mois (mois en cours inclus)
+        Date dateFin = new Date();
+        Date dateDebut = debutFenetreMois(dateFin, 6);
+
+        KpiSnapshot snapshot = kpiSnapshotService.getSnapshot();
+
         // Statistiques générales
-        rapport.put("statistiquesGenerales", getStatistiquesGenerales());
+        rapport.put("statistiquesGenerales", getStatistiquesGenerales(snapshot));
         
         // Statistiques par statut
-        rapport.put("statistiquesParStatut", getStatistiquesParStatut());
+        rapport.put("statistiquesParStatut", getStatistiquesParStatut(snapshot));
         
         // Statistiques par type
-        rapport.put("statistiquesParType", getStatistiquesParType());
+        rapport.put("statistiquesParType", getStatistiquesParType(snapshot));
         
         // Évolution temporelle
-        rapport.put("evolutionTemporelle", getEvolutionTemporelle());
+        rapport.put("evolutionTemporelle", getEvolutionTemporelle(snapshot, dateDebut, dateFin));
         
         // Formulaires obligatoires
-        rapport.put("formulairesObligatoires", getStatistiquesFormulairesObligatoires());
+        rapport.put("formulairesObligatoires", getStatistiquesFormulairesObligatoires(snapshot));
         
         // Top des projets
         rapport.put("topProjets", getTopProjets());
         
         // Métriques de performance
-        rapport.put("metriquesPerformance", getMetriquesPerformance());
+        rapport.put("metriquesPerformance", getMetriquesPerformance(snapshot));
         
         // Date de génération
         rapport.put("dateGeneration", new Date());
+        rapport.put("dateDonnees", snapshot.getDateMiseAJour());
         
         return rapport;
     }
@@ -68,13 +80,13 @@ public class RapportKpiService {
     /**
      * Statistiques générales
      */
-    private Map<String, Object> getStatistiquesGenerales() {
+    private Map<String, Object> getStatistiquesGenerales(KpiSnapshot snapshot) {
         Map<String, Object> stats = new HashMap<>();
         
-        long totalFichesQualite = ficheQualiteRepository.count();
-        long totalFichesSuivi = ficheSuiviRepository.count();
+        long totalFichesQualite = snapshot.getTotalFichesQualite();
+        long totalFichesSuivi = snapshot.getTotalFichesSuivi();
         long totalProjets = ficheProjetRepository.count();
-        long totalFormulairesObligatoires = formulaireObligatoireRepository.count();
+        long totalFormulairesObligatoires = snapshot.getTotalFormulaires();
         
         stats.put("totalFichesQualite", totalFichesQualite);
         stats.put("totalFichesSuivi", totalFichesSuivi);
@@ -88,28 +100,11 @@ public class RapportKpiService {
     /**
      * Statistiques par statut
      */
-    private Map<String, Object> getStatistiquesParStatut() {
+    private Map<String, Object> getStatistiquesParStatut(KpiSnapshot snapshot) {
         Map<String, Object> stats = new HashMap<>();
         
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
-        Map<String, Long> statutsQualite = new HashMap<>();
-        Map<String, Long> statutsSuivi = new HashMap<>();
-        
-        // Compter par statut pour les fiches qualité
-        for (FicheQualite fiche : fichesQualite) {
-            String statut = fiche.getStatut() != null ? fiche.getStatut() : "NON_DEFINI";
-            statutsQualite.put(statut, statutsQualite.getOrDefault(statut, 0L) + 1);
-        }
-        
-        // Compter par statut pour les fiches de suivi
-        List<FicheSuivi> fichesSuivi = ficheSuiviRepository.findAll();
-        for (FicheSuivi fiche : fichesSuivi) {
-            String statut = fiche.getEtatAvancement() != null ? fiche.getEtatAvancement() : "NON_DEFINI";
-            statutsSuivi.put(statut, statutsSuivi.getOrDefault(statut, 0L) + 1);
-        }
-        
-        stats.put("statutsQualite", statutsQualite);
-        stats.put("statutsSuivi", statutsSuivi);
+        stats.put("statutsQualite", nonNuls(snapshot.getStatutsQualite()));
+        stats.put("statutsSuivi", nonNuls(snapshot.getStatutsSuivi()));
         
         return stats;
     }
@@ -117,18 +112,10 @@ public class RapportKpiService {
     /**
      * Statistiques par type
      */
-    private Map<String, Object> getStatistiquesParType() {
+    private Map<String, Object> getStatistiquesParType(KpiSnapshot snapshot) {
         Map<String, Object> stats = new HashMap<>();
         
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
-        Map<String, Long> typesFiche = new HashMap<>();
-        
-        for (FicheQualite fiche : fichesQualite) {
-            String type = fiche.getTypeFiche() != null ? fiche.getTypeFiche() : "NON_DEFINI";
-            typesFiche.put(type, typesFiche.getOrDefault(type, 0L) + 1);
-        }
-        
-        stats.put("typesFiche", typesFiche);
+        stats.put("typesFiche", nonNuls(snapshot.getTypesFiche()));
         
         return stats;
     }
@@ -137,51 +124,24 @@ public class RapportKpiService {
      * Évolution temporelle (agrégation par mois sur les 6 derniers mois)
      * Utilise FicheSuivi.dateSuivi comme source temporelle.
      */
-    private Map<String, Object> getEvolutionTemporelle() {
+    private Map<String, Object> getEvolutionTemporelle(KpiSnapshot snapshot, Date dateDebut, Date dateFin) {
         Map<String, Object> evolution = new HashMap<>();
 
-        // Fenêtre: 6 derniers mois (mois en cours inclus)
-        Calendar cal = Calendar.getInstance();
-        Date dateFin = cal.getTime();
-
-        // Normaliser au début du mois courant
-        cal.set(Calendar.DAY_OF_MONTH, 1);
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
+        // Compteurs maintenus dans la vue, indexés par "yyyy-MM"
+        Map<String, Long> parMois = snapshot.getSuivisParMois();
+        SimpleDateFormat cleMois = new SimpleDateFormat("yyyy-MM");
 
         // Construire les 6 mois (ordre chronologique)
-        List<Date> mois = new ArrayList<>();
-        for (int i = 5; i >= 0; i--) {
-            Calendar c = (Calendar) cal.clone();
-            c.add(Calendar.MONTH, -i);
-            mois.add(c.getTime());
-        }
-        Date dateDebut = mois.get(0);
-
-        // Préparer le compteur par libellé de mois
         Map<String, Long> fichesParMois = new LinkedHashMap<>();
         List<String> labels = new ArrayList<>();
-        for (Date m : mois) {
+        Calendar c = Calendar.getInstance();
+        c.setTime(dateDebut);
+        for (int i = 0; i < 6; i++) {
+            Date m = c.getTime();
             String label = formatMonthLabel(m);
             labels.add(label);
-            fichesParMois.put(label, 0L);
-        }
-
-        // Charger les suivis et compter par mois
-        List<FicheSuivi> fichesSuivi = ficheSuiviRepository.findAll();
-        for (FicheSuivi fs : fichesSuivi) {
-            Date d = fs.getDateSuivi();
-            if (d == null) continue;
-            // Si hors période, ignorer
-            if (d.before(dateDebut) || d.after(dateFin)) continue;
-
-            // Trouver le mois correspondant
-            String label = formatMonthLabel(truncateToMonth(d));
-            if (fichesParMois.containsKey(label)) {
-                fichesParMois.put(label, fichesParMois.get(label) + 1);
-            }
+            fichesParMois.put(label, parMois.getOrDefault(cleMois.format(m), 0L));
+            c.add(Calendar.MONTH, 1);
         }
 
         // Compatibilité: exposer aussi "fichesParJour" avec les mêmes données
@@ -193,6 +153,27 @@ public class RapportKpiService {
         return evolution;
     }
 
+    /**
+     * Retire les compteurs retombés à zéro après des mises à jour incrémentales
+     */
+    private Map<String, Long> nonNuls(Map<String, Long> compteurs) {
+        Map<String, Long> resultat = new HashMap<>();
+        compteurs.forEach((cle, total) -> {
+            if (total != null && total > 0) resultat.put(cle, total);
+        });
+        return resultat;
+    }
+
+    /**
+     * Début du mois situé (nbMois - 1) mois avant la date de référence
+     */
+    private Date debutFenetreMois(Date reference, int nbMois) {
+        Calendar c = Calendar.getInstance();
+        c.setTime(truncateToMonth(reference));
+        c.add(Calendar.MONTH, -(nbMois - 1));
+        return c.getTime();
+    }
+
     private Date truncateToMonth(Date date) {
         Calendar c = Calendar.getInstance();
         c.setTime(date);
@@ -229,45 +210,26 @@ public class RapportKpiService {
     /**
      * Statistiques des formulaires obligatoires
      */
-    private Map<String, Object> getStatistiquesFormulairesObligatoires() {
+    private Map<String, Object> getStatistiquesFormulairesObligatoires(KpiSnapshot snapshot) {
         Map<String, Object> stats = new HashMap<>();
         
-        List<FormulaireObligatoire> formulaires = formulaireObligatoireRepository.findAll();
-        
-        long enAttente = 0, soumis = 0, enRetard = 0, annule = 0;
-        long haute = 0, moyenne = 0, basse = 0;
-        
-        for (FormulaireObligatoire formulaire : formulaires) {
-            // Compter par statut
-            switch (formulaire.getStatut()) {
-                case "EN_ATTENTE": enAttente++; break;
-                case "SOUMIS": soumis++; break;
-                case "EN_RETARD": enRetard++; break;
-                case "ANNULE": annule++; break;
-            }
-            
-            // Compter par priorité
-            switch (formulaire.getPriorite()) {
-                case "HAUTE": haute++; break;
-                case "MOYENNE": moyenne++; break;
-                case "BASSE": basse++; break;
-            }
-        }
+        Map<String, Long> parStatut = snapshot.getFormulairesParStatut();
+        Map<String, Long> parPriorite = snapshot.getFormulairesParPriorite();
         
         stats.put("parStatut", Map.of(
-            "EN_ATTENTE", enAttente,
-            "SOUMIS", soumis,
-            "EN_RETARD", enRetard,
-            "ANNULE", annule
+            "EN_ATTENTE", parStatut.getOrDefault("EN_ATTENTE", 0L),
+            "SOUMIS", parStatut.getOrDefault("SOUMIS", 0L),
+            "EN_RETARD", parStatut.getOrDefault("EN_RETARD", 0L),
+            "ANNULE", parStatut.getOrDefault("ANNULE", 0L)
         ));
         
         stats.put("parPriorite", Map.of(
-            "HAUTE", haute,
-            "MOYENNE", moyenne,
-            "BASSE", basse
+            "HAUTE", parPriorite.getOrDefault("HAUTE", 0L),
+            "MOYENNE", parPriorite.getOrDefault("MOYENNE", 0L),
+            "BASSE", parPriorite.getOrDefault("BASSE", 0L)
         ));
         
-        stats.put("total", formulaires.size());
+        stats.put("total", (int) snapshot.getTotalFormulaires());
         
         return stats;
     }
@@ -278,18 +240,15 @@ public class RapportKpiService {
     private Map<String, Object> getTopProjets() {
         Map<String, Object> top = new HashMap<>();
         
-        List<FicheProjet> projets = ficheProjetRepository.findAll();
-        
-        // Trier par date d'échéance (plus proche en premier)
-        projets.sort((p1, p2) -> {
-            if (p1.getEcheance() == null && p2.getEcheance() == null) return 0;
-            if (p1.getEcheance() == null) return 1;
-            if (p2.getEcheance() == null) return -1;
-            return p1.getEcheance().compareTo(p2.getEcheance());
-        });
-        
-        // Prendre les 10 premiers
-        List<FicheProjet> top10 = projets.size() > 10 ? projets.subList(0, 10) : projets;
+        // Trier par date d'échéance (plus proche en premier), les projets sans échéance en dernier
+        Query avecEcheance = new Query(Criteria.where("echeance").ne(null))
+            .with(Sort.by(Sort.Direction.ASC, "echeance"))
+            .limit(10);
+        List<FicheProjet> top10 = new ArrayList<>(mongoTemplate.find(avecEcheance, FicheProjet.class));
+        if (top10.size() < 10) {
+            Query sansEcheance = new Query(Criteria.where("echeance").is(null)).limit(10 - top10.size());
+            top10.addAll(mongoTemplate.find(sansEcheance, FicheProjet.class));
+        }
         
         List<Map<String, Object>> projetsFormates = new ArrayList<>();
         for (FicheProjet projet : top10) {
@@ -309,43 +268,30 @@ public class RapportKpiService {
     /**
      * Métriques de performance
      */
-    private Map<String, Object> getMetriquesPerformance() {
+    private Map<String, Object> getMetriquesPerformance(KpiSnapshot snapshot) {
         Map<String, Object> metriques = new HashMap<>();
         
-        List<FormulaireObligatoire> formulaires = formulaireObligatoireRepository.findAll();
-        List<FicheSuivi> fichesSuivi = ficheSuiviRepository.findAll();
-        
-        // Taux de conformité basé sur FicheSuivi.indicateursKpi
-        long totalEvalues = 0;
-        long nbConformes = 0;
-        for (FicheSuivi suivi : fichesSuivi) {
-            Double taux = null;
-            if (suivi.getTauxConformite() != null) {
-                taux = suivi.getTauxConformite();
-            } else if (suivi.getIndicateursKpi() != null) {
-                taux = extraireTauxConformite(suivi.getIndicateursKpi().toLowerCase());
-            }
-            if (taux == null) continue;
-            totalEvalues++;
-            if (taux >= 80.0) nbConformes++;
-        }
+        // Taux de conformité : sommes courantes maintenues dans la vue
+        long totalEvalues = snapshot.getEvaluationsConformite();
+        long nbConformes = snapshot.getNbConformes();
         double tauxConformite = totalEvalues > 0 ? (double) nbConformes / totalEvalues * 100 : 0;
+        double tauxMoyen = totalEvalues > 0 ? snapshot.getSommeTauxConformite() / totalEvalues : 0;
+        
+        Map<String, Long> parStatut = snapshot.getFormulairesParStatut();
+        long totalFormulaires = snapshot.getTotalFormulaires();
         
         // Taux de soumission des formulaires obligatoires
-        long formulairesSoumis = formulaires.stream()
-            .filter(f -> "SOUMIS".equals(f.getStatut()))
-            .count();
-        double tauxSoumission = formulaires.size() > 0 ? 
-            (double) formulairesSoumis / formulaires.size() * 100 : 0;
+        long formulairesSoumis = parStatut.getOrDefault("SOUMIS", 0L);
+        double tauxSoumission = totalFormulaires > 0 ? 
+            (double) formulairesSoumis / totalFormulaires * 100 : 0;
         
         // Taux de retard
-        long formulairesEnRetard = formulaires.stream()
-            .filter(f -> "EN_RETARD".equals(f.getStatut()))
-            .count();
-        double tauxRetard = formulaires.size() > 0 ? 
-            (double) formulairesEnRetard / formulaires.size() * 100 : 0;
+        long formulairesEnRetard = parStatut.getOrDefault("EN_RETARD", 0L);
+        double tauxRetard = totalFormulaires > 0 ? 
+            (double) formulairesEnRetard / totalFormulaires * 100 : 0;
         
         metriques.put("tauxConformite", Math.round(tauxConformite * 100.0) / 100.0);
+        metriques.put("tauxConformiteMoyen", Math.round(tauxMoyen * 100.0) / 100.0);
         metriques.put("evaluationsConformite", totalEvalues);
         metriques.put("nbConformes", nbConformes);
         metriques.put("tauxSoumission", Math.round(tauxSoumission * 100.0) / 100.0);
@@ -356,63 +302,81 @@ public class RapportKpiService {
         return metriques;
     }
 
-    private Double extraireTauxConformite(String text) {
-        if (text == null) return null;
-        String t = text.trim();
-        // a) JSON key-like: "tauxConformite": 85 or 85%
-        java.util.regex.Matcher m = java.util.regex.Pattern
-            .compile("taux\\s*[_-]?\\s*conform(?:ite|ité)\\s*\"?\\s*:\\s*(\\d{1,3})\\s*%?")
-            .matcher(t);
-        if (m.find()) {
-            try {
-                int v = Integer.parseInt(m.group(1));
-                return (double) Math.max(0, Math.min(100, v));
-            } catch (NumberFormatException ignored) { }
-        }
-        // b) Label + % : "taux de conformité ... 85%"
-        m = java.util.regex.Pattern
-            .compile("taux\\s*(?:de)?\\s*conform(?:ite|ité)[^\\d%]{0,30}(\\d{1,3})\\s*%")
-            .matcher(t);
-        if (m.find()) {
-            try {
-                int v = Integer.parseInt(m.group(1));
-                return (double) Math.max(0, Math.min(100, v));
-            } catch (NumberFormatException ignored) { }
-        }
-        // c) Label + décimal : "taux de conformité ... 0.85"
-        m = java.util.regex.Pattern
-            .compile("taux\\s*(?:de)?\\s*conform(?:ite|ité)[^\\d.]{0,30}(0?\\.\\d+|1(?:\\.0+)?)\\b")
-            .matcher(t);
-        if (m.find()) {
-            try {
-                double v = Double.parseDouble(m.group(1));
-                double pct = v * 100.0;
-                return Math.max(0.0, Math.min(100.0, pct));
-            } catch (NumberFormatException ignored) { }
-        }
-        return null;
-    }
-
     /**
      * Générer un rapport personnalisé par période
+     * Totaux, répartitions, conformité et évolution sommés sur les agrégats journaliers (daily_quality_rollups,
+     * un document par jour) ; seuls les retards sont comptés à la volée, sur les index des dates d'échéance
      */
     public Map<String, Object> genererRapportParPeriode(Date dateDebut, Date dateFin) {
         Map<String, Object> rapport = new HashMap<>();
-        
-        // Filtrer les données par période
-        List<FicheQualite> fichesQualite = ficheQualiteRepository.findAll();
-        List<FicheSuivi> fichesSuivi = ficheSuiviRepository.findAll();
-        List<FormulaireObligatoire> formulaires = formulaireObligatoireRepository.findAll();
-        
-        // Pour l'instant, on utilise toutes les données car les modèles n'ont pas de date de création
-        List<FicheQualite> fichesQualiteFiltrees = fichesQualite;
-        List<FormulaireObligatoire> formulairesFiltres = formulaires;
-        
+
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate debut = LocalDate.ofInstant(dateDebut.toInstant(), zone);
+        LocalDate fin = LocalDate.ofInstant(dateFin.toInstant(), zone);
+
+        long fichesQualite = 0, fichesSuivi = 0, formulaires = 0;
+        long evalues = 0, nbConformes = 0, delais = 0;
+        double sommeTaux = 0, sommeDelais = 0;
+        Map<String, Long> statutsQualite = new HashMap<>();
+        Map<String, Long> typesFiche = new HashMap<>();
+        Map<String, Long> prioritesQualite = new HashMap<>();
+        Map<String, Long> statutsSuivi = new HashMap<>();
+        Map<String, Long> suivisParMois = new LinkedHashMap<>();
+        for (RollupQualiteJour jour : rollupQualiteService.lire(debut, fin)) {
+            fichesQualite += jour.getFichesQualiteCreees();
+            fichesSuivi += jour.getFichesSuivi();
+            formulaires += jour.getFormulairesCrees();
+            evalues += jour.getEvaluationsConformite();
+            nbConformes += jour.getNbConformes();
+            sommeTaux += jour.getSommeTauxConformite();
+            delais += jour.getDelaisRenseignes();
+            sommeDelais += jour.getSommeDelaiTraitementJours();
+            cumuler(statutsQualite, jour.getStatutsQualite());
+            cumuler(typesFiche, jour.getTypesFiche());
+            cumuler(prioritesQualite, jour.getPrioritesQualite());
+            cumuler(statutsSuivi, jour.getStatutsSuivi());
+
+            Date date = Date.from(LocalDate.parse(jour.getId()).atStartOfDay(zone).toInstant());
+            suivisParMois.merge(formatMonthLabel(date) + " " + jour.getId().substring(0, 4), jour.getFichesSuivi(), Long::sum);
+        }
+        // Les deltas peuvent laisser des compteurs à zéro (valeur qui n'est plus utilisée)
+        for (Map<String, Long> repartition : List.of(statutsQualite, typesFiche, prioritesQualite, statutsSuivi)) {
+            repartition.values().removeIf(total -> total == 0);
+        }
+
         rapport.put("periode", Map.of("debut", dateDebut, "fin", dateFin));
-        rapport.put("fichesQualite", fichesQualiteFiltrees.size());
-        rapport.put("fichesSuivi", fichesSuivi.size());
-        rapport.put("formulairesObligatoires", formulairesFiltres.size());
-        
+        rapport.put("fichesQualite", fichesQualite);
+        rapport.put("fichesSuivi", fichesSuivi);
+        rapport.put("formulairesObligatoires", formulaires);
+
+        Map<String, Object> generales = new HashMap<>();
+        generales.put("totalFichesQualite", fichesQualite);
+        generales.put("totalFichesSuivi", fichesSuivi);
+        generales.put("totalFormulairesObligatoires", formulaires);
+        generales.put("totalElements", fichesQualite + fichesSuivi);
+        rapport.put("statistiquesGenerales", generales);
+
+        rapport.put("statistiquesParStatut", Map.of("statutsQualite", statutsQualite, "statutsSuivi", statutsSuivi));
+        rapport.put("statistiquesParType", Map.of("typesFiche", typesFiche, "prioritesQualite", prioritesQualite));
+        rapport.put("evolutionTemporelle", Map.of("fichesParMois", suivisParMois, "labels", new ArrayList<>(suivisParMois.keySet())));
+
+        Map<String, Object> metriques = new HashMap<>();
+        metriques.put("tauxConformite", evalues > 0 ? Math.round((double) nbConformes / evalues * 10000.0) / 100.0 : 0.0);
+        metriques.put("tauxConformiteMoyen", evalues > 0 ? Math.round(sommeTaux / evalues * 100.0) / 100.0 : 0.0);
+        metriques.put("evaluationsConformite", evalues);
+        metriques.put("nbConformes", nbConformes);
+        metriques.put("delaiTraitementMoyen", delais > 0 ? Math.round(sommeDelais / delais * 100.0) / 100.0 : 0.0);
+        // Éléments encore non clos (statut actuel) dont l'échéance précède le dernier jour de la période
+        metriques.put("fichesQualiteEnRetard", rollupQualiteService.fichesQualiteEnRetard(fin));
+        metriques.put("formulairesEnRetard", rollupQualiteService.formulairesEnRetard(fin));
+        rapport.put("metriquesPerformance", metriques);
+
         return rapport;
     }
-} 
\ No newline at end of file
+
+    private static void cumuler(Map<String, Long> total, Map<String, Long> jour) {
+        if (jour != null) {
+            jour.forEach((cle, nombre) -> total.merge(cle, nombre, Long::sum));
+        }
+    }
+}
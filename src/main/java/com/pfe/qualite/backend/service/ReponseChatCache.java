@@ -0,0 +1,118 @@
+package com.pfe.qualite.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache mémoire borné (LRU + durée de vie) des réponses du chatbot.
+ * Clé : question normalisée (casse, accents, ponctuation et espaces ignorés) + empreinte SHA-256 du contexte
+ * de données envoyé avec elle. Une même question posée sur les mêmes données ne coûte donc qu'un appel Gemini ;
+ * dès que les données changent, l'empreinte change et vider() retire les réponses devenues obsolètes.
+ * Seules les réponses réussies sont mises en cache, jamais les messages d'erreur.
+ */
+@Component
+public class ReponseChatCache {
+
+    private final long dureeVieMs;
+
+    // Ordre d'accès : l'entrée la moins récemment lue est évincée en premier
+    private final LinkedHashMap<String, Entree> reponses;
+
+    private final Counter succes;
+    private final Counter echecs;
+
+    public ReponseChatCache(MeterRegistry meterRegistry,
+                            @Value("${chat.cache.taille-max:500}") int tailleMax,
+                            @Value("${chat.cache.duree-vie-ms:600000}") long dureeVieMs) {
+        this.dureeVieMs = dureeVieMs;
+        this.reponses = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entree> eldest) {
+                return size() > tailleMax;
+            }
+        };
+
+        // Taux de succès = succes / (succes + echecs)
+        this.succes = meterRegistry.counter("chat.cache.requetes", "resultat", "succes");
+        this.echecs = meterRegistry.counter("chat.cache.requetes", "resultat", "echec");
+        meterRegistry.gauge("chat.cache.taille", this, ReponseChatCache::taille);
+    }
+
+    /**
+     * Clé de cache d'une question posée avec un contexte donné
+     */
+    public String cle(String question, String contexte) {
+        return normaliser(question) + "|" + empreinte(contexte);
+    }
+
+    public Optional<String> lire(String cle) {
+        String reponse;
+        synchronized (this) {
+            Entree entree = reponses.get(cle);
+            if (entree != null && entree.expiration < System.currentTimeMillis()) {
+                reponses.remove(cle);
+                entree = null;
+            }
+            reponse = entree != null ? entree.reponse : null;
+        }
+        (reponse != null ? succes : echecs).increment();
+        return Optional.ofNullable(reponse);
+    }
+
+    public synchronized void memoriser(String cle, String reponse) {
+        reponses.put(cle, new Entree(reponse, System.currentTimeMillis() + dureeVieMs));
+    }
+
+    /**
+     * Retire toutes les réponses (données qualité modifiées)
+     */
+    public synchronized void vider() {
+        reponses.clear();
+    }
+
+    private synchronized int taille() {
+        return reponses.size();
+    }
+
+    /**
+     * « Combien de fiches en retard ? » et « combien de  fiches en retard » donnent la même forme
+     */
+    static String normaliser(String question) {
+        String sansAccents = Normalizer.normalize(question == null ? "" : question, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+        return sansAccents.toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{Alnum}]+", " ")
+                .trim();
+    }
+
+    private static String empreinte(String contexte) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(contexte.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    private static final class Entree {
+        private final String reponse;
+        private final long expiration;
+
+        Entree(String reponse, long expiration) {
+            this.reponse = reponse;
+            this.expiration = expiration;
+        }
+    }
+}
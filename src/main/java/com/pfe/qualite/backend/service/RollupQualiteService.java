@@ -0,0 +1,413 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.FicheQualite;
+import com.pfe.qualite.backend.model.FicheSuivi;
+import com.pfe.qualite.backend.model.FormulaireObligatoire;
+import com.pfe.qualite.backend.model.RollupQualiteJour;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Maintenance de la collection daily_quality_rollups (un document par jour).
+ * Chaque élément est compté au jour de sa date de référence (création d'une fiche qualité ou d'un formulaire,
+ * date de suivi d'une fiche de suivi) avec son état actuel. Comme pour kpi_snapshots, chaque écriture applique
+ * des deltas atomiques ($inc) au jour de l'ancienne version et à celui de la nouvelle.
+ * Une plage de jours peut être recalculée depuis les collections sources (une agrégation par collection,
+ * $group par jour) : historique complet au premier démarrage, ou sur demande après une correction de données.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RollupQualiteService {
+
+    static final int JOURS_MAX = 3660;
+    static final String NON_DEFINI = KpiSnapshotService.NON_DEFINI;
+    private static final List<String> STATUTS_QUALITE_CLOS = List.of("TERMINE", "TERMINEE", "VALIDEE", "CLOTUREE");
+    private static final List<String> STATUTS_FORMULAIRE_CLOS = List.of("SOUMIS", "ANNULE");
+
+    // Longueur des tranches de la reconstruction complète
+    private static final int JOURS_PAR_TRANCHE = 366;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Premier démarrage : tout l'historique est calculé en arrière-plan
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialiser() {
+        try {
+            if (mongoTemplate.estimatedCount(RollupQualiteJour.class) == 0) {
+                reconstruire();
+            }
+        } catch (Exception e) {
+            log.warn("Initialisation des agrégats journaliers interrompue: {}", e.getMessage());
+        }
+    }
+
+    // ===== Mises à jour incrémentales (avant = null pour une création, apres = null pour une suppression) =====
+
+    public void ficheQualiteModifiee(FicheQualite avant, FicheQualite apres) {
+        Map<String, Map<String, Number>> deltas = new HashMap<>();
+        if (avant != null) {
+            ajouterQualite(deltas, avant, -1);
+        }
+        if (apres != null) {
+            ajouterQualite(deltas, apres, 1);
+        }
+        appliquer(deltas);
+    }
+
+    public void ficheSuiviModifiee(FicheSuivi avant, FicheSuivi apres) {
+        Map<String, Map<String, Number>> deltas = new HashMap<>();
+        if (avant != null) {
+            ajouterSuivi(deltas, avant, -1);
+        }
+        if (apres != null) {
+            ajouterSuivi(deltas, apres, 1);
+        }
+        appliquer(deltas);
+    }
+
+    public void formulaireModifie(FormulaireObligatoire avant, FormulaireObligatoire apres) {
+        Map<String, Map<String, Number>> deltas = new HashMap<>();
+        if (avant != null) {
+            ajouterFormulaire(deltas, avant, -1);
+        }
+        if (apres != null) {
+            ajouterFormulaire(deltas, apres, 1);
+        }
+        appliquer(deltas);
+    }
+
+    private void ajouterQualite(Map<String, Map<String, Number>> deltas, FicheQualite fiche, int signe) {
+        Map<String, Number> jour = deltasDuJour(deltas, jour(fiche.getDateCreation()));
+        if (jour == null) {
+            return;
+        }
+        ajouter(jour, "fichesQualiteCreees", signe);
+        ajouter(jour, "statutsQualite." + cle(fiche.getStatut()), signe);
+        ajouter(jour, "typesFiche." + cle(fiche.getTypeFiche()), signe);
+        ajouter(jour, "prioritesQualite." + cle(fiche.getPriorite()), signe);
+    }
+
+    private void ajouterSuivi(Map<String, Map<String, Number>> deltas, FicheSuivi suivi, int signe) {
+        Map<String, Number> jour = deltasDuJour(deltas, jour(suivi.getDateSuivi()));
+        if (jour == null) {
+            return;
+        }
+        ajouter(jour, "fichesSuivi", signe);
+        ajouter(jour, "statutsSuivi." + cle(suivi.getEtatAvancement()), signe);
+        Double taux = suivi.getTauxConformite();
+        if (taux != null) {
+            ajouter(jour, "evaluationsConformite", signe);
+            ajouter(jour, "sommeTauxConformite", signe * taux);
+            if (taux >= KpiSnapshotService.SEUIL_CONFORMITE) {
+                ajouter(jour, "nbConformes", signe);
+            }
+        }
+        Double delai = suivi.getDelaiTraitementJours();
+        if (delai != null) {
+            ajouter(jour, "delaisRenseignes", signe);
+            ajouter(jour, "sommeDelaiTraitementJours", signe * delai);
+        }
+    }
+
+    private void ajouterFormulaire(Map<String, Map<String, Number>> deltas, FormulaireObligatoire formulaire, int signe) {
+        Map<String, Number> jour = deltasDuJour(deltas, jour(formulaire.getDateCreation()));
+        if (jour == null) {
+            return;
+        }
+        ajouter(jour, "formulairesCrees", signe);
+        ajouter(jour, "formulairesParStatut." + cle(formulaire.getStatut()), signe);
+        ajouter(jour, "formulairesParPriorite." + cle(formulaire.getPriorite()), signe);
+    }
+
+    /**
+     * Deltas du jour, null pour un élément sans date (il n'est compté dans aucun jour)
+     */
+    private static Map<String, Number> deltasDuJour(Map<String, Map<String, Number>> deltas, String jour) {
+        return jour != null ? deltas.computeIfAbsent(jour, j -> new HashMap<>()) : null;
+    }
+
+    private static void ajouter(Map<String, Number> deltas, String champ, long delta) {
+        deltas.merge(champ, delta, (a, b) -> a.longValue() + b.longValue());
+    }
+
+    private static void ajouter(Map<String, Number> deltas, String champ, double delta) {
+        deltas.merge(champ, delta, (a, b) -> a.doubleValue() + b.doubleValue());
+    }
+
+    /**
+     * Une mise à jour atomique par jour touché, le document du jour étant créé au besoin
+     */
+    private void appliquer(Map<String, Map<String, Number>> deltas) {
+        deltas.forEach((jour, champs) -> {
+            Update update = new Update();
+            champs.forEach((champ, delta) -> {
+                if (delta.doubleValue() != 0) {
+                    update.inc(champ, delta);
+                }
+            });
+            if (update.getUpdateObject().isEmpty()) {
+                return;
+            }
+            update.set("dateMiseAJour", new Date());
+            try {
+                mongoTemplate.upsert(Query.query(Criteria.where("_id").is(jour)), update, RollupQualiteJour.class);
+            } catch (Exception e) {
+                log.warn("Impossible de mettre à jour l'agrégat du {}: {}", jour, e.getMessage());
+            }
+        });
+    }
+
+    // ===== Lecture =====
+
+    /**
+     * Agrégats des jours [debut, fin], du plus ancien au plus récent ; un jour sans document n'a aucune activité
+     */
+    public List<RollupQualiteJour> lire(LocalDate debut, LocalDate fin) {
+        verifierPeriode(debut, fin);
+        Query periode = Query.query(Criteria.where("_id").gte(debut.toString()).lte(fin.toString()));
+        Map<String, RollupQualiteJour> parJour = new HashMap<>();
+        for (RollupQualiteJour rollup : mongoTemplate.find(periode, RollupQualiteJour.class)) {
+            parJour.put(rollup.getId(), rollup);
+        }
+
+        List<RollupQualiteJour> resultat = new ArrayList<>();
+        for (LocalDate jour = debut; !jour.isAfter(fin); jour = jour.plusDays(1)) {
+            String id = jour.toString();
+            resultat.add(parJour.getOrDefault(id, RollupQualiteJour.builder().id(id).build()));
+        }
+        return resultat;
+    }
+
+    /**
+     * Fiches qualité non closes dont l'échéance précède le jour donné (au plus tard aujourd'hui).
+     * Les statuts passés ne sont pas conservés : c'est le statut actuel qui compte.
+     */
+    public long fichesQualiteEnRetard(LocalDate jour) {
+        return compterEnRetard("fiches_qualite", STATUTS_QUALITE_CLOS, jour);
+    }
+
+    /**
+     * Formulaires non soumis ni annulés dont l'échéance précède le jour donné (au plus tard aujourd'hui)
+     */
+    public long formulairesEnRetard(LocalDate jour) {
+        return compterEnRetard("formulaires_obligatoires", STATUTS_FORMULAIRE_CLOS, jour);
+    }
+
+    // ===== Recalcul depuis les collections sources =====
+
+    /**
+     * Recalcule tout l'historique, du premier élément daté jusqu'au dernier (au moins jusqu'à aujourd'hui),
+     * par tranches d'un an ; les jours hors de cette plage sont supprimés
+     */
+    public void reconstruire() {
+        LocalDate premier = null;
+        LocalDate dernier = LocalDate.now();
+        for (String[] source : List.of(new String[] {"fiches_qualite", "dateCreation"},
+                new String[] {"fiches_suivi", "dateSuivi"},
+                new String[] {"formulaires_obligatoires", "dateCreation"})) {
+            LocalDate min = dateExtreme(source[0], source[1], Sort.Direction.ASC);
+            LocalDate max = dateExtreme(source[0], source[1], Sort.Direction.DESC);
+            if (min != null && (premier == null || min.isBefore(premier))) {
+                premier = min;
+            }
+            if (max != null && max.isAfter(dernier)) {
+                dernier = max;
+            }
+        }
+        if (premier == null || premier.isAfter(dernier)) {
+            premier = dernier;
+        }
+
+        log.info("Reconstruction des agrégats journaliers du {} au {}", premier, dernier);
+        for (LocalDate debut = premier; !debut.isAfter(dernier); debut = debut.plusDays(JOURS_PAR_TRANCHE)) {
+            LocalDate fin = debut.plusDays(JOURS_PAR_TRANCHE - 1);
+            recalculer(debut, fin.isAfter(dernier) ? dernier : fin);
+        }
+        mongoTemplate.remove(Query.query(new Criteria().orOperator(
+                Criteria.where("_id").lt(premier.toString()),
+                Criteria.where("_id").gt(dernier.toString()))), RollupQualiteJour.class);
+    }
+
+    /**
+     * Recalcule et enregistre les agrégats des jours [debut, fin]
+     */
+    public List<RollupQualiteJour> recalculer(LocalDate debut, LocalDate fin) {
+        verifierPeriode(debut, fin);
+        log.info("Calcul des agrégats journaliers du {} au {}", debut, fin);
+        ZoneId zone = ZoneId.systemDefault();
+        Date borneDebut = Date.from(debut.atStartOfDay(zone).toInstant());
+        Date borneFin = Date.from(fin.plusDays(1).atStartOfDay(zone).toInstant());
+
+        Map<String, RollupQualiteJour> parJour = new LinkedHashMap<>();
+        Date maintenant = new Date();
+        for (LocalDate jour = debut; !jour.isAfter(fin); jour = jour.plusDays(1)) {
+            parJour.put(jour.toString(), RollupQualiteJour.builder().id(jour.toString()).dateCalcul(maintenant).build());
+        }
+
+        // Fiches qualité créées
+        Document qualite = facettes("fiches_qualite", "dateCreation", borneDebut, borneFin, zone, new Document()
+                .append("statuts", repartitionParJour("statut"))
+                .append("types", repartitionParJour("typeFiche"))
+                .append("priorites", repartitionParJour("priorite")));
+        appliquer(qualite, "statuts", parJour, RollupQualiteJour::getStatutsQualite);
+        appliquer(qualite, "types", parJour, RollupQualiteJour::getTypesFiche);
+        appliquer(qualite, "priorites", parJour, RollupQualiteJour::getPrioritesQualite);
+        parJour.values().forEach(r -> r.setFichesQualiteCreees(somme(r.getStatutsQualite())));
+
+        // Fiches de suivi : statuts, conformité et délais
+        Document suivi = facettes("fiches_suivi", "dateSuivi", borneDebut, borneFin, zone, new Document()
+                .append("statuts", repartitionParJour("etatAvancement"))
+                .append("kpi", List.of(new Document("$group", new Document("_id", "$jour")
+                        .append("evalues", compterSi(new Document("$gt", Arrays.asList("$tauxConformite", null))))
+                        .append("conformes", compterSi(new Document("$gte", List.of("$tauxConformite", KpiSnapshotService.SEUIL_CONFORMITE))))
+                        .append("sommeTaux", new Document("$sum", "$tauxConformite"))
+                        .append("delais", compterSi(new Document("$gt", Arrays.asList("$delaiTraitementJours", null))))
+                        .append("sommeDelais", new Document("$sum", "$delaiTraitementJours"))))));
+        appliquer(suivi, "statuts", parJour, RollupQualiteJour::getStatutsSuivi);
+        for (Document kpi : suivi.getList("kpi", Document.class, Collections.emptyList())) {
+            RollupQualiteJour rollup = parJour.get(kpi.getString("_id"));
+            if (rollup != null) {
+                rollup.setEvaluationsConformite(((Number) kpi.get("evalues")).longValue());
+                rollup.setNbConformes(((Number) kpi.get("conformes")).longValue());
+                rollup.setSommeTauxConformite(((Number) kpi.get("sommeTaux")).doubleValue());
+                rollup.setDelaisRenseignes(((Number) kpi.get("delais")).longValue());
+                rollup.setSommeDelaiTraitementJours(((Number) kpi.get("sommeDelais")).doubleValue());
+            }
+        }
+        parJour.values().forEach(r -> r.setFichesSuivi(somme(r.getStatutsSuivi())));
+
+        // Formulaires obligatoires créés
+        Document formulaires = facettes("formulaires_obligatoires", "dateCreation", borneDebut, borneFin, zone, new Document()
+                .append("statuts", repartitionParJour("statut"))
+                .append("priorites", repartitionParJour("priorite")));
+        appliquer(formulaires, "statuts", parJour, RollupQualiteJour::getFormulairesParStatut);
+        appliquer(formulaires, "priorites", parJour, RollupQualiteJour::getFormulairesParPriorite);
+        parJour.values().forEach(r -> r.setFormulairesCrees(somme(r.getFormulairesParStatut())));
+
+        BulkOperations lot = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RollupQualiteJour.class);
+        for (RollupQualiteJour rollup : parJour.values()) {
+            lot.replaceOne(Query.query(Criteria.where("_id").is(rollup.getId())), rollup, FindAndReplaceOptions.options().upsert());
+        }
+        lot.execute();
+        return new ArrayList<>(parJour.values());
+    }
+
+    private void verifierPeriode(LocalDate debut, LocalDate fin) {
+        if (debut == null || fin == null || debut.isAfter(fin)) {
+            throw new IllegalArgumentException("Période invalide");
+        }
+        if (ChronoUnit.DAYS.between(debut, fin) >= JOURS_MAX) {
+            throw new IllegalArgumentException("Période trop longue (maximum " + JOURS_MAX + " jours)");
+        }
+    }
+
+    /**
+     * Jour local de la plus petite (ASC) ou plus grande (DESC) date renseignée du champ, null si aucune
+     */
+    private LocalDate dateExtreme(String collection, String champDate, Sort.Direction sens) {
+        Query query = Query.query(Criteria.where(champDate).ne(null)).with(Sort.by(sens, champDate)).limit(1);
+        query.fields().include(champDate);
+        Document document = mongoTemplate.findOne(query, Document.class, collection);
+        Date date = document != null ? document.getDate(champDate) : null;
+        return date != null ? LocalDate.ofInstant(date.toInstant(), ZoneId.systemDefault()) : null;
+    }
+
+    /**
+     * Documents de la période, datés du jour local "yyyy-MM-dd", puis répartis en facettes
+     */
+    private Document facettes(String collection, String champDate, Date debut, Date fin, ZoneId zone, Document facettes) {
+        AggregationOperation match = contexte -> new Document("$match",
+                new Document(champDate, new Document("$gte", debut).append("$lt", fin)));
+        AggregationOperation jour = contexte -> new Document("$addFields", new Document("jour",
+                new Document("$dateToString", new Document("date", "$" + champDate)
+                        .append("format", "%Y-%m-%d")
+                        .append("timezone", zone.getId()))));
+        AggregationOperation facet = contexte -> new Document("$facet", facettes);
+        Document resultat = mongoTemplate.aggregate(Aggregation.newAggregation(match, jour, facet), collection, Document.class)
+                .getUniqueMappedResult();
+        return resultat != null ? resultat : new Document();
+    }
+
+    /**
+     * Comptage par (jour, valeur du champ) ; valeur absente → NON_DEFINI
+     */
+    private List<Document> repartitionParJour(String champ) {
+        return List.of(new Document("$group", new Document("_id", new Document("jour", "$jour")
+                .append("valeur", new Document("$ifNull", List.of("$" + champ, NON_DEFINI))))
+                .append("total", new Document("$sum", 1))));
+    }
+
+    private Document compterSi(Document condition) {
+        return new Document("$sum", new Document("$cond", List.of(condition, 1, 0)));
+    }
+
+    private void appliquer(Document facettes, String facette, Map<String, RollupQualiteJour> parJour,
+                           Function<RollupQualiteJour, Map<String, Long>> compteurs) {
+        for (Document bucket : facettes.getList(facette, Document.class, Collections.emptyList())) {
+            Document id = bucket.get("_id", Document.class);
+            RollupQualiteJour rollup = parJour.get(id.getString("jour"));
+            if (rollup != null) {
+                Object valeur = id.get("valeur");
+                compteurs.apply(rollup).merge(cle(valeur != null ? valeur.toString() : null),
+                        ((Number) bucket.get("total")).longValue(), Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Éléments non clos (statut actuel) dont l'échéance précède le jour (borné à aujourd'hui)
+     */
+    private long compterEnRetard(String collection, List<String> statutsClos, LocalDate jour) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate aujourdhui = LocalDate.now(zone);
+        Date limite = Date.from((jour.isBefore(aujourdhui) ? jour : aujourdhui).atStartOfDay(zone).toInstant());
+        return mongoTemplate.count(Query.query(Criteria.where("dateEcheance").lt(limite).and("statut").nin(statutsClos)), collection);
+    }
+
+    private static String jour(LocalDateTime date) {
+        return date != null ? date.toLocalDate().toString() : null;
+    }
+
+    private static String jour(Date date) {
+        return date != null ? LocalDate.ofInstant(date.toInstant(), ZoneId.systemDefault()).toString() : null;
+    }
+
+    private static long somme(Map<String, Long> compteurs) {
+        return compteurs.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Clé de map utilisable comme nom de champ MongoDB
+     */
+    private static String cle(String valeur) {
+        if (valeur == null || valeur.isEmpty()) {
+            return NON_DEFINI;
+        }
+        return valeur.replace('.', '_').replace('$', '_');
+    }
+}
@@ -0,0 +1,256 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.FicheQualite;
+import com.pfe.qualite.backend.model.FicheSuivi;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.stereotype.Service;
+
+import java.time.*;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Séries temporelles par tranche (jour, semaine, mois) calculées par MongoDB ($dateTrunc + $group).
+ * Les tranches sans donnée sont présentes (valeur null, nombre 0).
+ * Les tranches closes sont gardées en mémoire : un appel ne recalcule que la tranche en cours,
+ * sauf après une écriture datée dans le passé (voir ficheSuiviModifiee / ficheQualiteModifiee).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SerieTemporelleService {
+
+    static final int PERIODES_MAX = 366;
+
+    private final MongoTemplate mongoTemplate;
+
+    // Tranches closes : "SERIE|GRANULARITE|date de début" → point
+    private final Map<String, Point> tranchesCloses = new ConcurrentHashMap<>();
+
+    // Incrémentée à chaque invalidation : une agrégation commencée avant n'alimente pas le cache
+    private long generation;
+
+    public enum Granularite {
+        JOUR("day"), SEMAINE("week"), MOIS("month");
+
+        private final String unite;
+
+        Granularite(String unite) {
+            this.unite = unite;
+        }
+
+        /**
+         * Accepte jour/semaine/mois ou day/week/month, sans tenir compte de la casse
+         */
+        public static Granularite parse(String valeur) {
+            for (Granularite g : values()) {
+                if (g.name().equalsIgnoreCase(valeur) || g.unite.equalsIgnoreCase(valeur)) {
+                    return g;
+                }
+            }
+            throw new IllegalArgumentException("Granularité inconnue: " + valeur);
+        }
+
+        LocalDate debut(LocalDate date) {
+            switch (this) {
+                case SEMAINE: return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MOIS: return date.withDayOfMonth(1);
+                default: return date;
+            }
+        }
+
+        LocalDate decaler(LocalDate debut, long n) {
+            switch (this) {
+                case SEMAINE: return debut.plusWeeks(n);
+                case MOIS: return debut.plusMonths(n);
+                default: return debut.plusDays(n);
+            }
+        }
+    }
+
+    public enum Serie {
+        /** Moyenne de FicheSuivi.tauxConformite par date de suivi */
+        TAUX_CONFORMITE("fiches_suivi", "dateSuivi", "tauxConformite"),
+        /** Nombre de fiches qualité par date de création */
+        FICHES_QUALITE_CREEES("fiches_qualite", "dateCreation", null);
+
+        private final String collection;
+        private final String champDate;
+        private final String champValeur;
+
+        Serie(String collection, String champDate, String champValeur) {
+            this.collection = collection;
+            this.champDate = champDate;
+            this.champValeur = champValeur;
+        }
+    }
+
+    /**
+     * Une tranche : valeur moyenne (ou nombre pour une série de comptage) et nombre de documents
+     */
+    public static final class Point {
+        private final LocalDate debut;
+        private final Double valeur;
+        private final long nombre;
+
+        Point(LocalDate debut, Double valeur, long nombre) {
+            this.debut = debut;
+            this.valeur = valeur;
+            this.nombre = nombre;
+        }
+
+        public LocalDate getDebut() {
+            return debut;
+        }
+
+        public Double getValeur() {
+            return valeur;
+        }
+
+        public long getNombre() {
+            return nombre;
+        }
+    }
+
+    /**
+     * Les {@code periodes} dernières tranches, la plus ancienne en premier ; la dernière est la tranche en cours
+     */
+    public List<Point> serie(Serie serie, Granularite granularite, int periodes) {
+        int n = Math.max(1, Math.min(PERIODES_MAX, periodes));
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate courante = granularite.debut(LocalDate.now(zone));
+
+        List<LocalDate> debuts = new ArrayList<>(n);
+        for (int i = n - 1; i >= 0; i--) {
+            debuts.add(granularite.decaler(courante, -i));
+        }
+
+        // Une seule agrégation : depuis la plus ancienne tranche close absente du cache, sinon la tranche en cours
+        LocalDate depuis = courante;
+        for (LocalDate debut : debuts) {
+            if (debut.isBefore(courante) && !tranchesCloses.containsKey(cle(serie, granularite, debut))) {
+                depuis = debut;
+                break;
+            }
+        }
+        long generationLue = generation();
+        Map<LocalDate, Point> calcules = agreger(serie, granularite, depuis, zone);
+
+        List<Point> points = new ArrayList<>(n);
+        Map<String, Point> closes = new HashMap<>();
+        for (LocalDate debut : debuts) {
+            Point point;
+            if (debut.isBefore(depuis)) {
+                point = tranchesCloses.get(cle(serie, granularite, debut));
+            } else {
+                point = calcules.getOrDefault(debut, new Point(debut, null, 0));
+                if (debut.isBefore(courante)) {
+                    closes.put(cle(serie, granularite, debut), point);
+                }
+            }
+            // Tranche invalidée entre-temps : recalculée au prochain appel
+            points.add(point != null ? point : new Point(debut, null, 0));
+        }
+        memoriser(closes, generationLue);
+        return points;
+    }
+
+    /**
+     * Mémorise les tranches closes calculées, sauf si une écriture les a invalidées pendant l'agrégation :
+     * le résultat pourrait ne pas en tenir compte
+     */
+    private synchronized void memoriser(Map<String, Point> closes, long generationLue) {
+        if (generation == generationLue) {
+            tranchesCloses.putAll(closes);
+        }
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    // ===== Invalidation des tranches closes (avant = null pour une création, apres = null pour une suppression) =====
+
+    public void ficheSuiviModifiee(FicheSuivi avant, FicheSuivi apres) {
+        if (avant != null && avant.getDateSuivi() != null) {
+            invalider(Serie.TAUX_CONFORMITE, avant.getDateSuivi().toInstant());
+        }
+        if (apres != null && apres.getDateSuivi() != null) {
+            invalider(Serie.TAUX_CONFORMITE, apres.getDateSuivi().toInstant());
+        }
+    }
+
+    public void ficheQualiteModifiee(FicheQualite avant, FicheQualite apres) {
+        for (FicheQualite fiche : Arrays.asList(avant, apres)) {
+            if (fiche != null && fiche.getDateCreation() != null) {
+                invalider(Serie.FICHES_QUALITE_CREEES, fiche.getDateCreation().atZone(ZoneId.systemDefault()).toInstant());
+            }
+        }
+    }
+
+    /**
+     * Oublie toutes les tranches closes d'une série (mise à jour en masse)
+     */
+    public synchronized void vider(Serie serie) {
+        generation++;
+        tranchesCloses.keySet().removeIf(cle -> cle.startsWith(serie.name() + "|"));
+    }
+
+    private synchronized void invalider(Serie serie, Instant date) {
+        generation++;
+        LocalDate jour = LocalDate.ofInstant(date, ZoneId.systemDefault());
+        for (Granularite granularite : Granularite.values()) {
+            tranchesCloses.remove(cle(serie, granularite, granularite.debut(jour)));
+        }
+    }
+
+    /**
+     * Tranches non vides à partir de {@code depuis}, bornes calculées dans le fuseau du serveur
+     */
+    private Map<LocalDate, Point> agreger(Serie serie, Granularite granularite, LocalDate depuis, ZoneId zone) {
+        Document filtre = new Document(serie.champDate, new Document("$gte", Date.from(depuis.atStartOfDay(zone).toInstant())));
+        if (serie.champValeur != null) {
+            filtre.append(serie.champValeur, new Document("$ne", null));
+        }
+        Document tranche = new Document("date", "$" + serie.champDate)
+                .append("unit", granularite.unite)
+                .append("timezone", zone.getId())
+                .append("startOfWeek", "monday");
+        Document groupe = new Document("_id", new Document("$dateTrunc", tranche))
+                .append("nombre", new Document("$sum", 1));
+        if (serie.champValeur != null) {
+            groupe.append("valeur", new Document("$avg", "$" + serie.champValeur));
+        }
+
+        AggregationOperation match = contexte -> new Document("$match", filtre);
+        AggregationOperation group = contexte -> new Document("$group", groupe);
+        List<Document> resultats = mongoTemplate.aggregate(Aggregation.newAggregation(match, group), serie.collection, Document.class)
+                .getMappedResults();
+
+        Map<LocalDate, Point> points = new HashMap<>();
+        for (Document resultat : resultats) {
+            LocalDate debut = LocalDate.ofInstant(resultat.getDate("_id").toInstant(), zone);
+            long nombre = ((Number) resultat.get("nombre")).longValue();
+            Double valeur = serie.champValeur != null
+                    ? arrondir(((Number) resultat.get("valeur")).doubleValue())
+                    : (double) nombre;
+            points.put(debut, new Point(debut, valeur, nombre));
+        }
+        log.debug("Série {} ({}) recalculée depuis {} : {} tranche(s) non vide(s)", serie, granularite, depuis, points.size());
+        return points;
+    }
+
+    private static String cle(Serie serie, Granularite granularite, LocalDate debut) {
+        return serie.name() + "|" + granularite.name() + "|" + debut;
+    }
+
+    private static double arrondir(double valeur) {
+        return Math.round(valeur * 10.0) / 10.0;
+    }
+}
@@ -0,0 +1,92 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.FicheSuivi;
+import com.pfe.qualite.backend.util.TauxConformiteParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Migration des fiches de suivi existantes : tauxConformite déduit de indicateursKpi.
+ * Exécutée en arrière-plan au démarrage ; idempotente (seuls les documents sans taux sont relus).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TauxConformiteMigration {
+
+    private static final int TAILLE_LOT = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final KpiSnapshotService kpiSnapshotService;
+    private final SerieTemporelleService serieTemporelleService;
+    private final RollupQualiteService rollupQualiteService;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrer() {
+        try {
+            long migres = renseignerTauxManquants();
+            if (migres > 0) {
+                // La vue KPI et les agrégats journaliers ne lisent plus que le champ numérique : ils sont recalculés une fois
+                kpiSnapshotService.reconstruire();
+                rollupQualiteService.reconstruire();
+                serieTemporelleService.vider(SerieTemporelleService.Serie.TAUX_CONFORMITE);
+            }
+        } catch (Exception e) {
+            log.warn("Migration des taux de conformité interrompue: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return le nombre de fiches de suivi mises à jour
+     */
+    public long renseignerTauxManquants() {
+        Query sansTaux = new Query(Criteria.where("tauxConformite").is(null).and("indicateursKpi").ne(null));
+        sansTaux.fields().include("indicateursKpi");
+
+        long lus = 0;
+        long migres = 0;
+        BulkOperations lot = null;
+        int tailleLot = 0;
+        try (Stream<FicheSuivi> suivis = mongoTemplate.stream(sansTaux, FicheSuivi.class)) {
+            Iterator<FicheSuivi> it = suivis.iterator();
+            while (it.hasNext()) {
+                FicheSuivi suivi = it.next();
+                lus++;
+                Double taux = TauxConformiteParser.extraire(suivi.getIndicateursKpi());
+                if (taux == null) {
+                    continue;
+                }
+                if (lot == null) {
+                    lot = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FicheSuivi.class);
+                }
+                // Ne remplace jamais un taux saisi entre-temps
+                lot.updateOne(
+                    Query.query(Criteria.where("_id").is(suivi.getId()).and("tauxConformite").is(null)),
+                    Update.update("tauxConformite", taux));
+                if (++tailleLot == TAILLE_LOT) {
+                    migres += lot.execute().getModifiedCount();
+                    lot = null;
+                    tailleLot = 0;
+                }
+            }
+        }
+        if (lot != null) {
+            migres += lot.execute().getModifiedCount();
+        }
+        log.info("Migration des taux de conformité : {} fiche(s) de suivi sans taux lue(s), {} mise(s) à jour", lus, migres);
+        return migres;
+    }
+}
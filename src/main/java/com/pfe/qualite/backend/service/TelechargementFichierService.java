@@ -0,0 +1,208 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.Attachment;
+import com.pfe.qualite.backend.util.PlagesOctets;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Envoi des pièces jointes : requêtes conditionnelles (ETag fort = SHA-256 du contenu) et
+ * plages d'octets (Range simple ou multiple, If-Range).
+ *
+ * Une région unique est confiée au connecteur Tomcat (sendfile : copie noyau du fichier vers
+ * la socket, sans passer par le tas). À défaut (TLS, HTTP/2, petites régions, multipart/byteranges),
+ * le fichier est écrit par FileChannel.transferTo dans le flux de réponse.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TelechargementFichierService {
+
+    // Attributs de requête lus par Tomcat après le retour du contrôleur
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FICHIER = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_DEBUT = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    // En dessous, une copie directe coûte moins que la mise en place de sendfile (seuil par défaut de Tomcat)
+    private static final long SEUIL_SENDFILE = 48 * 1024;
+
+    private static final String TYPE_PAR_DEFAUT = "application/octet-stream";
+
+    private final FileStorageService fileStorageService;
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Écrit la réponse complète (statut, en-têtes, corps) pour une pièce jointe.
+     * Lève une RuntimeException avant toute écriture si le fichier n'existe plus (y compris s'il
+     * disparaît entre sa résolution et sa lecture, par exemple repris par BlobMigration).
+     */
+    public void envoyer(Attachment attachment, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path fichier = attachment.getStoredFileName() != null
+                ? fileStorageService.getAncienFichier(attachment.getStoredFileName())
+                : fileStorageService.getFilePath(attachment.getSha256());
+        long taille;
+        try {
+            taille = Files.size(fichier);
+        } catch (IOException e) {
+            throw new RuntimeException("Fichier non trouvé: " + fichier.getFileName(), e);
+        }
+        String etag = "\"" + empreinte(attachment) + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        String contentType = attachment.getContentType() != null ? attachment.getContentType() : TYPE_PAR_DEFAUT;
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(attachment.getOriginalFileName(), StandardCharsets.UTF_8).build().toString());
+
+        List<PlagesOctets.Plage> plages = plagesDemandees(request, etag, taille);
+        boolean corps = !"HEAD".equals(request.getMethod());
+
+        if (plages == null) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(contentType);
+            response.setContentLengthLong(taille);
+            if (corps) {
+                envoyerRegion(fichier, 0, taille, request, response);
+            }
+        } else if (plages.isEmpty()) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + taille);
+            response.setContentLength(0);
+        } else if (plages.size() == 1) {
+            PlagesOctets.Plage plage = plages.get(0);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, plage.contentRange(taille));
+            response.setContentLengthLong(plage.longueur());
+            if (corps) {
+                envoyerRegion(fichier, plage.getDebut(), plage.longueur(), request, response);
+            }
+        } else {
+            envoyerMultipart(fichier, taille, contentType, plages, corps, response);
+        }
+    }
+
+    /**
+     * Range n'est pris en compte que si If-Range est absent ou désigne la version courante
+     * (comparaison forte ; pas de Last-Modified, donc une date ne correspond jamais)
+     */
+    private List<PlagesOctets.Plage> plagesDemandees(HttpServletRequest request, String etag, long taille) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.trim().equals(etag)) {
+            return null;
+        }
+        return PlagesOctets.analyser(request.getHeader(HttpHeaders.RANGE), taille);
+    }
+
+    private void envoyerRegion(Path fichier, long debut, long longueur, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        if (longueur >= SEUIL_SENDFILE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat exige un chemin canonique
+            request.setAttribute(SENDFILE_FICHIER, fichier.toRealPath().toString());
+            request.setAttribute(SENDFILE_DEBUT, debut);
+            request.setAttribute(SENDFILE_FIN, debut + longueur);
+            return;
+        }
+        try (FileChannel source = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            copier(source, debut, longueur, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    /**
+     * Réponse multipart/byteranges ; la longueur totale est calculée à l'avance pour éviter le découpage chunked
+     */
+    private void envoyerMultipart(Path fichier, long taille, String contentType, List<PlagesOctets.Plage> plages,
+                                  boolean corps, HttpServletResponse response) throws IOException {
+        String frontiere = UUID.randomUUID().toString().replace("-", "");
+        byte[][] entetes = new byte[plages.size()][];
+        long longueur = 0;
+        for (int i = 0; i < plages.size(); i++) {
+            PlagesOctets.Plage plage = plages.get(i);
+            entetes[i] = ("\r\n--" + frontiere + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + plage.contentRange(taille) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            longueur += entetes[i].length + plage.longueur();
+        }
+        byte[] fin = ("\r\n--" + frontiere + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        longueur += fin.length;
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + frontiere);
+        response.setContentLengthLong(longueur);
+        if (!corps) {
+            return;
+        }
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel cible = Channels.newChannel(out);
+        try (FileChannel source = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            for (int i = 0; i < plages.size(); i++) {
+                out.write(entetes[i]);
+                copier(source, plages.get(i).getDebut(), plages.get(i).longueur(), cible);
+            }
+        }
+        out.write(fin);
+    }
+
+    private static void copier(FileChannel source, long debut, long longueur, WritableByteChannel cible) throws IOException {
+        long position = debut;
+        long reste = longueur;
+        while (reste > 0) {
+            long transferes = source.transferTo(position, reste, cible);
+            if (transferes <= 0) {
+                throw new EOFException("Fichier tronqué pendant l'envoi");
+            }
+            position += transferes;
+            reste -= transferes;
+        }
+    }
+
+    /**
+     * Les pièces jointes de l'ancien stockage pas encore reprises sont hachées au premier téléchargement.
+     * Seul sha256 est écrit, et seulement s'il est encore absent : un save() du document entier
+     * rétablirait storedFileName sur une pièce jointe reprise entre-temps par BlobMigration.
+     */
+    private String empreinte(Attachment attachment) {
+        if (attachment.getSha256() == null) {
+            attachment.setSha256(fileStorageService.calculerEmpreinte(attachment.getStoredFileName()));
+            try {
+                mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(attachment.getId()).and("sha256").is(null)),
+                        Update.update("sha256", attachment.getSha256()),
+                        Attachment.class);
+            } catch (Exception e) {
+                log.warn("Impossible d'enregistrer l'empreinte de la pièce jointe {}: {}", attachment.getId(), e.getMessage());
+            }
+        }
+        return attachment.getSha256();
+    }
+}
@@ -0,0 +1,273 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.dto.UploadFragmenteRequest;
+import com.pfe.qualite.backend.model.UploadFragmente;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Uploads par morceaux reprenables (POST /api/files/uploads).
+ *
+ * Le fichier partiel est préalloué ; chaque morceau est écrit à sa position par FileChannel.write
+ * positionnel, si bien que les morceaux peuvent arriver en parallèle et dans le désordre. Un morceau
+ * n'est marqué reçu qu'une fois synchronisé sur disque : après une coupure, le client renvoie
+ * seulement les morceaux absents de l'état. À la fin, le fichier déjà assemblé en place est rangé
+ * dans le stockage par contenu par simple renommage.
+ *
+ * Un verrou lecture/écriture par upload sépare les deux : les morceaux s'écrivent sous le verrou en
+ * lecture, la terminaison et l'annulation le prennent en écriture. Sans lui, un canal encore ouvert
+ * sur le fichier partiel suivrait le renommage et modifierait le blob déjà haché.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadFragmenteService {
+
+    public static final String EN_COURS = "EN_COURS";
+    public static final String ASSEMBLAGE = "ASSEMBLAGE";
+
+    private static final int TAILLE_TAMPON = 64 * 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final FileStorageService fileStorageService;
+
+    // Verrous des uploads actifs sur cette instance, retirés à la terminaison ou à l'annulation
+    private final ConcurrentMap<String, ReentrantReadWriteLock> verrous = new ConcurrentHashMap<>();
+
+    @Value("${uploads.fragmentes.taille-chunk-mb:5}")
+    private int tailleChunkMb;
+
+    @Value("${uploads.fragmentes.taille-max-mb:2048}")
+    private long tailleMaxMb;
+
+    @Value("${uploads.fragmentes.duree-vie-heures:24}")
+    private long dureeVieHeures;
+
+    /**
+     * Ouvre un upload : session enregistrée et fichier partiel préalloué
+     */
+    public UploadFragmente ouvrir(UploadFragmenteRequest requete, String userId) {
+        if (requete.getFileName() == null || requete.getFileName().isBlank()) {
+            throw new IllegalArgumentException("Le nom du fichier est obligatoire");
+        }
+        if (requete.getFileSize() == null || requete.getFileSize() <= 0) {
+            throw new IllegalArgumentException("Le fichier est vide");
+        }
+        if (requete.getFileSize() > tailleMaxMb * 1024 * 1024) {
+            throw new IllegalArgumentException("Fichier trop volumineux (max " + tailleMaxMb + " MB)");
+        }
+        int chunkSize = tailleChunkMb * 1024 * 1024;
+        UploadFragmente upload = UploadFragmente.builder()
+                .id(UUID.randomUUID().toString())
+                .originalFileName(requete.getFileName())
+                .contentType(requete.getContentType())
+                .fileSize(requete.getFileSize())
+                .chunkSize(chunkSize)
+                .totalChunks((int) ((requete.getFileSize() + chunkSize - 1) / chunkSize))
+                .receivedChunks(new HashSet<>())
+                .statut(EN_COURS)
+                .entityType(requete.getEntityType())
+                .entityId(requete.getEntityId())
+                .description(requete.getDescription())
+                .uploadedBy(userId)
+                .dateCreation(new Date())
+                .expiration(expiration())
+                .build();
+        fileStorageService.creerFichierPartiel(upload.getId(), upload.getFileSize());
+        try {
+            return mongoTemplate.insert(upload);
+        } catch (RuntimeException e) {
+            fileStorageService.supprimerFichierPartiel(upload.getId());
+            throw e;
+        }
+    }
+
+    /**
+     * Session d'upload de l'utilisateur ; celle d'un autre utilisateur est traitée comme absente
+     */
+    public UploadFragmente lire(String uploadId, String userId) {
+        UploadFragmente upload = mongoTemplate.findById(uploadId, UploadFragmente.class);
+        if (upload == null || !upload.getUploadedBy().equals(userId)) {
+            throw new RuntimeException("Upload non trouvé: " + uploadId);
+        }
+        return upload;
+    }
+
+    /**
+     * Écrit le morceau index à sa position dans le fichier partiel. Idempotent : un morceau renvoyé
+     * après une coupure est simplement réécrit.
+     *
+     * @param longueurAnnoncee Content-Length de la requête, -1 si inconnu
+     */
+    public UploadFragmente ecrireChunk(String uploadId, int index, InputStream corps, long longueurAnnoncee, String userId)
+            throws IOException {
+        // Aucun verrou créé pour une session absente ou d'un autre utilisateur
+        lire(uploadId, userId);
+        ReentrantReadWriteLock verrou = verrou(uploadId);
+        verrou.readLock().lock();
+        boolean actif = false;
+        try {
+            // Relu sous le verrou : la terminaison a pu commencer pendant l'attente
+            UploadFragmente courant = lire(uploadId, userId);
+            actif = EN_COURS.equals(courant.getStatut());
+            return ecrireChunk(courant, index, corps, longueurAnnoncee);
+        } finally {
+            verrou.readLock().unlock();
+            if (!actif) {
+                // Upload terminé ou annulé entre les deux lectures : le verrou a pu être recréé pour rien
+                verrous.remove(uploadId, verrou);
+            }
+        }
+    }
+
+    private UploadFragmente ecrireChunk(UploadFragmente upload, int index, InputStream corps, long longueurAnnoncee)
+            throws IOException {
+        String uploadId = upload.getId();
+        if (!EN_COURS.equals(upload.getStatut())) {
+            throw new IllegalStateException("L'upload n'accepte plus de morceaux");
+        }
+        if (index < 0 || index >= upload.getTotalChunks()) {
+            throw new IllegalArgumentException("Morceau hors de l'upload: " + index);
+        }
+        long position = (long) index * upload.getChunkSize();
+        long attendu = Math.min(upload.getChunkSize(), upload.getFileSize() - position);
+        if (longueurAnnoncee >= 0 && longueurAnnoncee != attendu) {
+            throw new IllegalArgumentException("Le morceau " + index + " doit faire " + attendu + " octets");
+        }
+
+        try (FileChannel cible = FileChannel.open(fileStorageService.getFichierPartiel(uploadId), StandardOpenOption.WRITE)) {
+            ByteBuffer tampon = ByteBuffer.allocate(TAILLE_TAMPON);
+            long ecrits = 0;
+            int lus;
+            while ((lus = corps.read(tampon.array(), 0, tampon.capacity())) >= 0) {
+                if (ecrits + lus > attendu) {
+                    throw new IllegalArgumentException("Le morceau " + index + " doit faire " + attendu + " octets");
+                }
+                tampon.limit(lus);
+                while (tampon.hasRemaining()) {
+                    ecrits += cible.write(tampon, position + ecrits);
+                }
+                tampon.clear();
+            }
+            if (ecrits != attendu) {
+                throw new IllegalArgumentException("Morceau " + index + " incomplet: " + ecrits + "/" + attendu + " octets");
+            }
+            cible.force(false);
+        }
+
+        UploadFragmente maj = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(uploadId).and("statut").is(EN_COURS)),
+                new Update().addToSet("receivedChunks", index).set("expiration", expiration()),
+                FindAndModifyOptions.options().returnNew(true),
+                UploadFragmente.class);
+        if (maj == null) {
+            throw new IllegalStateException("L'upload n'accepte plus de morceaux");
+        }
+        return maj;
+    }
+
+    /**
+     * Termine l'upload : tous les morceaux doivent être reçus. Le contenu est rangé dans le stockage
+     * et la session supprimée ; l'appelant enregistre la pièce jointe.
+     */
+    public FileStorageService.FichierStocke terminer(UploadFragmente upload) {
+        List<Integer> manquants = manquants(upload);
+        if (!manquants.isEmpty()) {
+            throw new IllegalArgumentException(manquants.size() + " morceau(x) manquant(s), dont le n°" + manquants.get(0));
+        }
+        // Attend la fin des morceaux en cours d'écriture ; les suivants verront le nouveau statut
+        ReentrantReadWriteLock verrou = verrou(upload.getId());
+        verrou.writeLock().lock();
+        try {
+            // Une seule terminaison, et plus aucun morceau accepté à partir d'ici
+            UploadFragmente verrouille = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(upload.getId()).and("statut").is(EN_COURS)),
+                    Update.update("statut", ASSEMBLAGE),
+                    UploadFragmente.class);
+            if (verrouille == null) {
+                throw new IllegalStateException("L'upload est déjà en cours de finalisation");
+            }
+            try {
+                return fileStorageService.storeAssembledFile(upload.getId(), upload.getContentType());
+            } finally {
+                mongoTemplate.remove(Query.query(Criteria.where("_id").is(upload.getId())), UploadFragmente.class);
+            }
+        } finally {
+            verrous.remove(upload.getId(), verrou);
+            verrou.writeLock().unlock();
+        }
+    }
+
+    public void annuler(UploadFragmente upload) {
+        ReentrantReadWriteLock verrou = verrou(upload.getId());
+        verrou.writeLock().lock();
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(upload.getId())), UploadFragmente.class);
+            fileStorageService.supprimerFichierPartiel(upload.getId());
+        } finally {
+            verrous.remove(upload.getId(), verrou);
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index des morceaux encore attendus, dans l'ordre
+     */
+    public List<Integer> manquants(UploadFragmente upload) {
+        List<Integer> manquants = new ArrayList<>();
+        for (int i = 0; i < upload.getTotalChunks(); i++) {
+            if (upload.getReceivedChunks() == null || !upload.getReceivedChunks().contains(i)) {
+                manquants.add(i);
+            }
+        }
+        return manquants;
+    }
+
+    /**
+     * Supprime les uploads sans activité depuis leur durée de vie
+     * @return le nombre d'uploads purgés
+     */
+    public int purgerExpires() {
+        Query expires = Query.query(Criteria.where("expiration").lt(new Date()));
+        expires.fields().include("_id");
+        int purges = 0;
+        for (UploadFragmente upload : mongoTemplate.find(expires, UploadFragmente.class)) {
+            annuler(upload);
+            purges++;
+        }
+        if (purges > 0) {
+            log.info("Uploads par morceaux expirés purgés: {}", purges);
+        }
+        return purges;
+    }
+
+    private ReentrantReadWriteLock verrou(String uploadId) {
+        return verrous.computeIfAbsent(uploadId, id -> new ReentrantReadWriteLock());
+    }
+
+    private Date expiration() {
+        return new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(dureeVieHeures));
+    }
+}
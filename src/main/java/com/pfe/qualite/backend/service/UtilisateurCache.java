@@ -0,0 +1,174 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.Utilisateur;
+import com.pfe.qualite.backend.repository.UtilisateurRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache mémoire borné (LRU + durée de vie) des utilisateurs, indexé par id et par email.
+ * Sert les lectures du chemin d'authentification et des planificateurs ; toute écriture
+ * sur un utilisateur doit appeler invalider().
+ * Seuls id, email, rôle et statut sont conservés (ni mot de passe ni jeton de réinitialisation) ;
+ * les objets renvoyés sont des copies qu'un appelant peut modifier sans altérer le cache.
+ */
+@Component
+public class UtilisateurCache {
+
+    private final UtilisateurRepository utilisateurRepository;
+    private final long dureeVieMs;
+
+    // Ordre d'accès : l'entrée la moins récemment lue est évincée en premier
+    private final LinkedHashMap<String, Entree> parId;
+    private final Map<String, String> idParEmail = new HashMap<>();
+
+    // Incrémentée à chaque invalidation : une lecture en base commencée avant n'est pas mémorisée
+    private long generation;
+
+    private final Counter succes;
+    private final Counter echecs;
+
+    public UtilisateurCache(UtilisateurRepository utilisateurRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${utilisateurs.cache.taille-max:1000}") int tailleMax,
+                            @Value("${utilisateurs.cache.duree-vie-ms:300000}") long dureeVieMs) {
+        this.utilisateurRepository = utilisateurRepository;
+        this.dureeVieMs = dureeVieMs;
+        this.parId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entree> eldest) {
+                if (size() > tailleMax) {
+                    idParEmail.remove(eldest.getValue().utilisateur.getEmail());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        // Taux de succès = succes / (succes + echecs)
+        this.succes = meterRegistry.counter("utilisateurs.cache.requetes", "resultat", "succes");
+        this.echecs = meterRegistry.counter("utilisateurs.cache.requetes", "resultat", "echec");
+        meterRegistry.gauge("utilisateurs.cache.taille", this, UtilisateurCache::taille);
+    }
+
+    public Optional<Utilisateur> parId(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        Utilisateur utilisateur = lire(id);
+        if (utilisateur != null) {
+            succes.increment();
+            return Optional.of(copie(utilisateur));
+        }
+        echecs.increment();
+        long generationLue = generation();
+        return utilisateurRepository.findById(id).map(u -> memoriser(u, generationLue));
+    }
+
+    public Optional<Utilisateur> parEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        Utilisateur utilisateur;
+        synchronized (this) {
+            String id = idParEmail.get(email);
+            utilisateur = id != null ? lire(id) : null;
+        }
+        if (utilisateur != null) {
+            succes.increment();
+            return Optional.of(copie(utilisateur));
+        }
+        echecs.increment();
+        long generationLue = generation();
+        return utilisateurRepository.findByEmail(email).map(u -> memoriser(u, generationLue));
+    }
+
+    /**
+     * Retire un utilisateur du cache (mise à jour, changement de statut, mot de passe, suppression)
+     */
+    public synchronized void invalider(String id) {
+        if (id == null) {
+            return;
+        }
+        generation++;
+        retirer(id);
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    private synchronized void retirer(String id) {
+        Entree entree = parId.remove(id);
+        if (entree != null) {
+            idParEmail.remove(entree.utilisateur.getEmail());
+        }
+    }
+
+    private synchronized Utilisateur lire(String id) {
+        Entree entree = parId.get(id);
+        if (entree == null) {
+            return null;
+        }
+        if (entree.expiration < System.currentTimeMillis()) {
+            retirer(id);
+            return null;
+        }
+        return entree.utilisateur;
+    }
+
+    /**
+     * Mémorise l'utilisateur lu en base, sauf si une invalidation a eu lieu depuis le début de la lecture :
+     * l'entité lue peut alors précéder l'écriture invalidante (rôle changé, compte désactivé)
+     */
+    private Utilisateur memoriser(Utilisateur utilisateur, long generationLue) {
+        Utilisateur reduit = reduire(utilisateur);
+        synchronized (this) {
+            if (generation == generationLue) {
+                retirer(reduit.getId());
+                parId.put(reduit.getId(), new Entree(reduit, System.currentTimeMillis() + dureeVieMs));
+                if (reduit.getEmail() != null) {
+                    idParEmail.put(reduit.getEmail(), reduit.getId());
+                }
+            }
+        }
+        return copie(reduit);
+    }
+
+    private synchronized int taille() {
+        return parId.size();
+    }
+
+    private static Utilisateur reduire(Utilisateur source) {
+        return Utilisateur.builder()
+                .id(source.getId())
+                .email(source.getEmail())
+                .role(source.getRole())
+                .actif(source.getActif())
+                .build();
+    }
+
+    private static Utilisateur copie(Utilisateur source) {
+        Utilisateur copie = new Utilisateur();
+        BeanUtils.copyProperties(source, copie);
+        return copie;
+    }
+
+    private static final class Entree {
+        private final Utilisateur utilisateur;
+        private final long expiration;
+
+        Entree(Utilisateur utilisateur, long expiration) {
+            this.utilisateur = utilisateur;
+            this.expiration = expiration;
+        }
+    }
+}
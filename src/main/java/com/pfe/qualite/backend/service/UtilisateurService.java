@@ -2,6 +2,7 @@ package com.pfe.qualite.backend.service;
 
 import com.pfe.qualite.backend.model.Utilisateur;
 import com.pfe.qualite.backend.repository.UtilisateurRepository;
+import com.pfe.qualite.backend.security.jwt.JwtPrincipalCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -20,6 +21,8 @@ public class UtilisateurService {
     private final UtilisateurRepository utilisateurRepository;
     private final PasswordEncoder passwordEncoder;
     private final NotificationService notificationService;
+    private final JwtPrincipalCache principalCache;
+    private final UtilisateurCache utilisateurCache;
     // Note: HistoriqueService sera ajouté au Sprint 2 pour la traçabilité avancée
 
     /**
@@ -119,7 +122,11 @@ public class UtilisateurService {
             
             user.setDateModification(LocalDateTime.now());
             
-            return utilisateurRepository.save(user);
+            Utilisateur saved = utilisateurRepository.save(user);
+            // Rôle, email ou statut ont pu changer : les sessions en cache sont relues
+            utilisateurCache.invalider(id);
+            principalCache.invalider(id);
+            return saved;
         }).orElseThrow(() -> new RuntimeException("Utilisateur non trouvé avec l'id: " + id));
     }
 
@@ -134,6 +141,8 @@ public class UtilisateurService {
             user.setDateModification(LocalDateTime.now());
             
             Utilisateur saved = utilisateurRepository.save(user);
+            utilisateurCache.invalider(id);
+            principalCache.invalider(id);
             
             // Envoyer notification
             String message = saved.getActif() ? "activé" : "désactivé";
@@ -164,6 +173,7 @@ public class UtilisateurService {
             user.setDateModification(LocalDateTime.now());
             
             utilisateurRepository.save(user);
+            utilisateurCache.invalider(id);
             
             // Envoyer email avec nouveau mot de passe
             try {
@@ -191,6 +201,8 @@ public class UtilisateurService {
         }
         
         utilisateurRepository.deleteById(id);
+        utilisateurCache.invalider(id);
+        principalCache.invalider(id);
     }
 
     /**
@@ -1,12 +1,14 @@
 package com.pfe.qualite.backend.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
@@ -21,6 +23,14 @@ public class JwtUtil {
     @Value("${jwt.secret:VotreCleSecreteTresLongueEtComplexePourJWT2024!}")
     private String jwtSecret;
 
+    // Parseur thread-safe construit une seule fois au démarrage
+    private JwtParser parser;
+
+    @PostConstruct
+    void initialiserParser() {
+        parser = Jwts.parserBuilder().setSigningKey(getSigningKey()).build();
+    }
+
     /**
      * Obtenir la clé de signature
      */
@@ -44,11 +54,7 @@ public class JwtUtil {
      */
     public String extractUserIdFromToken(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = parser.parseClaimsJws(token).getBody();
             
             // Le userId peut être dans "sub" ou "userId" selon votre implémentation
             String userId = claims.get("userId", String.class);
@@ -79,11 +85,7 @@ public class JwtUtil {
      */
     public String extractRoleFromToken(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = parser.parseClaimsJws(token).getBody();
             
             return claims.get("role", String.class);
         } catch (Exception e) {
@@ -108,11 +110,7 @@ public class JwtUtil {
      */
     public String extractEmailFromToken(String token) {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = parser.parseClaimsJws(token).getBody();
             
             String email = claims.get("email", String.class);
             if (email == null) {
@@ -0,0 +1,144 @@
+package com.pfe.qualite.backend.util;
+
+import com.pfe.qualite.backend.dto.KeysetPage;
+import com.pfe.qualite.backend.dto.KeysetPageRequest;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Pagination par curseur (keyset / seek) sur MongoDB.
+ * Chaque page reprend après la clé (champ de tri, id) du dernier élément renvoyé :
+ * le coût d'une page ne dépend pas de sa position, contrairement à skip/limit.
+ */
+@Component
+@RequiredArgsConstructor
+public class KeysetPaginator {
+
+    private static final JsonWriterSettings JSON_CURSEUR = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+    private final MongoTemplate mongoTemplate;
+
+    public <T> KeysetPage<T> paginer(Class<T> type, KeysetPageRequest requete) {
+        return paginer(type, new Query(), requete);
+    }
+
+    /**
+     * @param base filtres propres à l'endpoint (vide pour une liste complète)
+     */
+    public <T> KeysetPage<T> paginer(Class<T> type, Query base, KeysetPageRequest requete) {
+        MongoPersistentEntity<?> entite = mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+        MongoPersistentProperty idProp = entite.getRequiredIdProperty();
+
+        // Tri : champ validé + id en départage pour un ordre total
+        String champTri = idProp.getName();
+        Sort.Direction direction = Sort.Direction.ASC;
+        if (requete.getSort() != null && !requete.getSort().isBlank()) {
+            String[] parties = requete.getSort().split(",");
+            champTri = propriete(entite, parties[0].trim()).getName();
+            if (parties.length > 1) {
+                direction = Sort.Direction.fromString(parties[1].trim());
+            }
+        }
+        boolean triParId = champTri.equals(idProp.getName());
+
+        Query query = Query.of(base);
+        if (requete.getCursor() != null) {
+            Document curseur = decoder(requete.getCursor());
+            if (!champTri.equals(curseur.getString("s")) || !direction.name().equals(curseur.getString("d"))) {
+                throw new IllegalArgumentException("Le curseur ne correspond pas au tri demandé");
+            }
+            query.addCriteria(apres(champTri, idProp.getName(), direction, triParId, curseur.get("v"), curseur.get("id")));
+        }
+        query.with(triParId
+                ? Sort.by(direction, champTri)
+                : Sort.by(direction, champTri).and(Sort.by(direction, idProp.getName())));
+
+        if (requete.getFields() != null && !requete.getFields().isBlank()) {
+            for (String champ : requete.getFields().split(",")) {
+                query.fields().include(propriete(entite, champ.trim()).getName());
+            }
+            query.fields().include(champTri);
+        }
+
+        // Un élément de plus pour savoir s'il existe une page suivante sans compter
+        int limite = requete.limiteEffective();
+        query.limit(limite + 1);
+        List<T> resultats = mongoTemplate.find(query, type);
+
+        String curseurSuivant = null;
+        if (resultats.size() > limite) {
+            resultats = resultats.subList(0, limite);
+            T dernier = resultats.get(limite - 1);
+            PersistentPropertyAccessor<T> accessor = entite.getPropertyAccessor(dernier);
+            Object valeur = mongoTemplate.getConverter().convertToMongoType(accessor.getProperty(entite.getRequiredPersistentProperty(champTri)));
+            curseurSuivant = encoder(champTri, direction, valeur, accessor.getProperty(idProp));
+        }
+
+        Long total = null;
+        if (requete.isTotal()) {
+            // Calculé uniquement sur demande ; sans filtre, le compteur de métadonnées suffit
+            total = base.getQueryObject().isEmpty()
+                    ? mongoTemplate.estimatedCount(type)
+                    : mongoTemplate.count(Query.of(base).limit(-1).skip(-1), type);
+        }
+        return new KeysetPage<>(resultats, curseurSuivant, total);
+    }
+
+    /**
+     * Éléments strictement après la clé (valeur, id) dans l'ordre demandé.
+     * MongoDB classe null avant toute valeur : les deux cas sont traités explicitement.
+     */
+    private Criteria apres(String champ, String champId, Sort.Direction direction, boolean triParId, Object valeur, Object id) {
+        boolean asc = direction.isAscending();
+        Criteria idApres = asc ? Criteria.where(champId).gt(id) : Criteria.where(champId).lt(id);
+        if (triParId) {
+            return idApres;
+        }
+        Criteria egal = new Criteria().andOperator(Criteria.where(champ).is(valeur), idApres);
+        if (valeur == null) {
+            return asc
+                    ? new Criteria().orOperator(egal, Criteria.where(champ).ne(null))
+                    : egal;
+        }
+        Criteria strictementApres = asc ? Criteria.where(champ).gt(valeur) : Criteria.where(champ).lt(valeur);
+        return asc
+                ? new Criteria().orOperator(strictementApres, egal)
+                : new Criteria().orOperator(strictementApres, egal, Criteria.where(champ).is(null));
+    }
+
+    private MongoPersistentProperty propriete(MongoPersistentEntity<?> entite, String nom) {
+        MongoPersistentProperty prop = entite.getPersistentProperty(nom);
+        if (prop == null) {
+            throw new IllegalArgumentException("Champ inconnu: " + nom);
+        }
+        return prop;
+    }
+
+    private String encoder(String champ, Sort.Direction direction, Object valeur, Object id) {
+        Document curseur = new Document("s", champ).append("d", direction.name()).append("v", valeur).append("id", id);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(curseur.toJson(JSON_CURSEUR).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Document decoder(String jeton) {
+        try {
+            return Document.parse(new String(Base64.getUrlDecoder().decode(jeton), StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Curseur de pagination invalide");
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.pfe.qualite.backend.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Analyse de l'en-tête HTTP Range (unité « bytes » uniquement, RFC 9110 §14).
+ * Les plages qui se chevauchent sont fusionnées : un client ne peut pas faire relire
+ * plusieurs fois la même zone du fichier dans une seule réponse.
+ */
+public final class PlagesOctets {
+
+    /**
+     * Au-delà, l'en-tête est ignoré et le fichier est renvoyé en entier
+     */
+    public static final int PLAGES_MAX = 16;
+
+    private static final String UNITE = "bytes=";
+
+    private PlagesOctets() {
+    }
+
+    /**
+     * @param entete valeur de l'en-tête Range
+     * @param taille taille du fichier en octets
+     * @return null si l'en-tête est absent, mal formé ou trop fragmenté (réponse 200 complète),
+     *         liste vide si aucune plage n'est satisfiable (réponse 416),
+     *         sinon les plages triées et fusionnées (réponse 206)
+     */
+    public static List<Plage> analyser(String entete, long taille) {
+        if (entete == null || !entete.regionMatches(true, 0, UNITE, 0, UNITE.length())) {
+            return null;
+        }
+        String[] specs = entete.substring(UNITE.length()).split(",");
+        if (specs.length > PLAGES_MAX) {
+            return null;
+        }
+        List<Plage> plages = new ArrayList<>();
+        boolean vide = true;
+        for (String brute : specs) {
+            String spec = brute.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            vide = false;
+            int tiret = spec.indexOf('-');
+            if (tiret < 0) {
+                return null;
+            }
+            String premier = spec.substring(0, tiret).trim();
+            String dernier = spec.substring(tiret + 1).trim();
+
+            if (premier.isEmpty()) {
+                // Suffixe : les n derniers octets
+                long n = nombre(dernier);
+                if (n < 0) {
+                    return null;
+                }
+                if (n > 0 && taille > 0) {
+                    plages.add(new Plage(Math.max(0, taille - n), taille - 1));
+                }
+                continue;
+            }
+            long debut = nombre(premier);
+            long fin = dernier.isEmpty() ? Long.MAX_VALUE : nombre(dernier);
+            if (debut < 0 || fin < 0 || fin < debut) {
+                return null;
+            }
+            if (debut < taille) {
+                plages.add(new Plage(debut, Math.min(fin, taille - 1)));
+            }
+        }
+        return vide ? null : fusionner(plages);
+    }
+
+    private static List<Plage> fusionner(List<Plage> plages) {
+        if (plages.size() < 2) {
+            return plages;
+        }
+        plages.sort(Comparator.comparingLong(Plage::getDebut));
+        List<Plage> fusion = new ArrayList<>();
+        Plage courante = plages.get(0);
+        for (int i = 1; i < plages.size(); i++) {
+            Plage suivante = plages.get(i);
+            if (suivante.debut <= courante.fin + 1) {
+                courante = new Plage(courante.debut, Math.max(courante.fin, suivante.fin));
+            } else {
+                fusion.add(courante);
+                courante = suivante;
+            }
+        }
+        fusion.add(courante);
+        return fusion;
+    }
+
+    /**
+     * Entier décimal positif, -1 si invalide ou trop grand pour une position de fichier
+     */
+    private static long nombre(String texte) {
+        if (texte.isEmpty() || texte.length() > 18) {
+            return -1;
+        }
+        long valeur = 0;
+        for (int i = 0; i < texte.length(); i++) {
+            char c = texte.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            valeur = valeur * 10 + (c - '0');
+        }
+        return valeur;
+    }
+
+    /**
+     * Plage d'octets, bornes incluses
+     */
+    public static final class Plage {
+        private final long debut;
+        private final long fin;
+
+        public Plage(long debut, long fin) {
+            this.debut = debut;
+            this.fin = fin;
+        }
+
+        public long getDebut() {
+            return debut;
+        }
+
+        public long getFin() {
+            return fin;
+        }
+
+        public long longueur() {
+            return fin - debut + 1;
+        }
+
+        /**
+         * Valeur de l'en-tête Content-Range
+         */
+        public String contentRange(long taille) {
+            return "bytes " + debut + "-" + fin + "/" + taille;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.pfe.qualite.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Vérification du type déclaré d'un fichier d'après ses premiers octets (« nombres magiques »).
+ * Seuls les types acceptés en pièce jointe sont connus ; tout autre type est refusé.
+ */
+public final class SignatureFichier {
+
+    /**
+     * Nombre d'octets à lire avant de pouvoir vérifier une signature
+     */
+    public static final int OCTETS = 8;
+
+    private static final byte[] OLE = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+    private static final byte[] ZIP = {'P', 'K', 0x03, 0x04};
+
+    private static final Map<String, byte[][]> SIGNATURES = Map.of(
+        "image/jpeg", new byte[][]{{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}},
+        "image/png", new byte[][]{{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A}},
+        "image/gif", new byte[][]{ascii("GIF87a"), ascii("GIF89a")},
+        "application/pdf", new byte[][]{ascii("%PDF-")},
+        // Formats Office binaires : conteneur OLE2
+        "application/msword", new byte[][]{OLE},
+        "application/vnd.ms-excel", new byte[][]{OLE},
+        // Formats Office Open XML : archive ZIP
+        "application/vnd.openxmlformats-officedocument.wordprocessingml.document", new byte[][]{ZIP},
+        "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", new byte[][]{ZIP}
+    );
+
+    private SignatureFichier() {
+    }
+
+    /**
+     * @param contentType type déclaré (paramètres éventuels ignorés)
+     * @param debut premiers octets du contenu
+     * @param longueur nombre d'octets significatifs dans debut
+     */
+    public static boolean correspond(String contentType, byte[] debut, int longueur) {
+        if (contentType == null) {
+            return false;
+        }
+        int separateur = contentType.indexOf(';');
+        String type = (separateur < 0 ? contentType : contentType.substring(0, separateur)).trim().toLowerCase(Locale.ROOT);
+        byte[][] signatures = SIGNATURES.get(type);
+        if (signatures == null) {
+            return false;
+        }
+        for (byte[] signature : signatures) {
+            if (commencePar(debut, longueur, signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean commencePar(byte[] debut, int longueur, byte[] signature) {
+        if (longueur < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (debut[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String texte) {
+        return texte.getBytes(StandardCharsets.US_ASCII);
+    }
+}
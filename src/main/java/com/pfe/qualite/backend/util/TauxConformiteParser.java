@@ -0,0 +1,231 @@
+package com.pfe.qualite.backend.util;
+
+/**
+ * Extraction du taux de conformité depuis le texte libre indicateursKpi.
+ * Un seul parcours linéaire du texte, sans expression régulière ni allocation ; insensible à la casse.
+ *
+ * Formes reconnues, par ordre de priorité (la première forme trouvée dans tout le texte l'emporte) :
+ *   a) clé JSON   : "tauxConformite": 85   (séparateurs _ ou - admis, % facultatif)
+ *   b) pourcentage : taux de conformité ... 85 %   (30 caractères au plus entre libellé et nombre)
+ *   c) décimal     : taux de conformité ... 0.85   (0.85 → 85 %)
+ * Le résultat est borné à [0, 100].
+ */
+public final class TauxConformiteParser {
+
+    private static final int ECART_MAX = 30;
+    private static final int ABSENT = -1;
+
+    private TauxConformiteParser() {
+    }
+
+    /**
+     * @return le taux en pourcentage, ou null si le texte n'en contient pas
+     */
+    public static Double extraire(CharSequence texte) {
+        double taux = extraireOuNaN(texte);
+        return Double.isNaN(taux) ? null : taux;
+    }
+
+    /**
+     * Variante sans boxing : NaN si le texte ne contient pas de taux
+     */
+    public static double extraireOuNaN(CharSequence texte) {
+        if (texte == null) {
+            return Double.NaN;
+        }
+        double pourcentage = Double.NaN;
+        double decimal = Double.NaN;
+        int n = texte.length();
+        for (int i = 0; i <= n - 4; i++) {
+            if (!commencePar(texte, i, "taux")) {
+                continue;
+            }
+            int debut = i + 4;
+
+            // a) clé JSON : prioritaire, on peut s'arrêter dès la première occurrence
+            int fin = libelle(texte, debut, true);
+            if (fin != ABSENT) {
+                double valeur = cleJson(texte, fin);
+                if (!Double.isNaN(valeur)) {
+                    return valeur;
+                }
+            }
+
+            // b) et c) : libellé avec « de » facultatif, premiers résultats mémorisés
+            if (Double.isNaN(pourcentage) || Double.isNaN(decimal)) {
+                fin = libelle(texte, debut, false);
+                if (fin != ABSENT) {
+                    if (Double.isNaN(pourcentage)) {
+                        pourcentage = pourcentage(texte, fin);
+                    }
+                    if (Double.isNaN(decimal)) {
+                        decimal = decimal(texte, fin);
+                    }
+                }
+            }
+        }
+        return !Double.isNaN(pourcentage) ? pourcentage : decimal;
+    }
+
+    /**
+     * Reconnaît [séparateur] « conformite » ou « conformité » après « taux ».
+     * Séparateur : blancs, avec un « _ »/« - » (forme JSON) ou un « de » (forme libellé).
+     * @return la position après le libellé, ou ABSENT
+     */
+    private static int libelle(CharSequence t, int i, boolean formeJson) {
+        i = blancs(t, i);
+        if (formeJson) {
+            if (i < t.length() && (t.charAt(i) == '_' || t.charAt(i) == '-')) {
+                i = blancs(t, i + 1);
+            }
+        } else if (commencePar(t, i, "de")) {
+            int apresDe = blancs(t, i + 2);
+            if (commencePar(t, apresDe, "conform")) {
+                i = apresDe;
+            }
+        }
+        if (!commencePar(t, i, "conform")) {
+            return ABSENT;
+        }
+        i += 7;
+        if (commencePar(t, i, "ite") || commencePar(t, i, "ité")) {
+            return i + 3;
+        }
+        return ABSENT;
+    }
+
+    /**
+     * a) [blancs] ["] [blancs] : [blancs] 1 à 3 chiffres
+     */
+    private static double cleJson(CharSequence t, int i) {
+        i = blancs(t, i);
+        if (i < t.length() && t.charAt(i) == '"') {
+            i = blancs(t, i + 1);
+        }
+        if (i >= t.length() || t.charAt(i) != ':') {
+            return Double.NaN;
+        }
+        i = blancs(t, i + 1);
+        int valeur = 0;
+        int chiffres = 0;
+        while (chiffres < 3 && i < t.length() && estChiffre(t.charAt(i))) {
+            valeur = valeur * 10 + (t.charAt(i) - '0');
+            chiffres++;
+            i++;
+        }
+        return chiffres == 0 ? Double.NaN : Math.min(100, valeur);
+    }
+
+    /**
+     * b) au plus 30 caractères ni chiffre ni %, puis 1 à 3 chiffres, [blancs] %
+     */
+    private static double pourcentage(CharSequence t, int i) {
+        int debut = i;
+        while (i < t.length() && i - debut < ECART_MAX && !estChiffre(t.charAt(i)) && t.charAt(i) != '%') {
+            i++;
+        }
+        if (i >= t.length() || !estChiffre(t.charAt(i))) {
+            return Double.NaN;
+        }
+        int valeur = 0;
+        int chiffres = 0;
+        while (i < t.length() && estChiffre(t.charAt(i))) {
+            if (++chiffres > 3) {
+                return Double.NaN;
+            }
+            valeur = valeur * 10 + (t.charAt(i) - '0');
+            i++;
+        }
+        i = blancs(t, i);
+        return i < t.length() && t.charAt(i) == '%' ? Math.min(100, valeur) : Double.NaN;
+    }
+
+    /**
+     * c) au plus 30 caractères ni chiffre ni point, puis 0.xx / .xx ou 1 / 1.0…, suivi d'une fin de mot
+     */
+    private static double decimal(CharSequence t, int i) {
+        int debut = i;
+        while (i < t.length() && i - debut < ECART_MAX && !estChiffre(t.charAt(i)) && t.charAt(i) != '.') {
+            i++;
+        }
+        if (i >= t.length()) {
+            return Double.NaN;
+        }
+        int n = t.length();
+
+        // 0?\.\d+
+        int j = i;
+        if (t.charAt(j) == '0') {
+            j++;
+        }
+        if (j < n && t.charAt(j) == '.' && j + 1 < n && estChiffre(t.charAt(j + 1))) {
+            double valeur = 0;
+            double echelle = 1;
+            j++;
+            while (j < n && estChiffre(t.charAt(j))) {
+                echelle /= 10;
+                valeur += (t.charAt(j) - '0') * echelle;
+                j++;
+            }
+            if (finDeMot(t, j)) {
+                return Math.min(100.0, valeur * 100.0);
+            }
+        }
+
+        // 1(\.0+)? : la partie décimale n'est retenue que si elle est suivie d'une fin de mot
+        if (t.charAt(i) == '1') {
+            j = i + 1;
+            if (j < n && t.charAt(j) == '.' && j + 1 < n && t.charAt(j + 1) == '0') {
+                int k = j + 1;
+                while (k < n && t.charAt(k) == '0') {
+                    k++;
+                }
+                if (finDeMot(t, k)) {
+                    return 100.0;
+                }
+            }
+            if (finDeMot(t, j)) {
+                return 100.0;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static boolean commencePar(CharSequence t, int i, String motif) {
+        if (i < 0 || i + motif.length() > t.length()) {
+            return false;
+        }
+        for (int k = 0; k < motif.length(); k++) {
+            if (Character.toLowerCase(t.charAt(i + k)) != motif.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int blancs(CharSequence t, int i) {
+        while (i < t.length() && estBlanc(t.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Fin de mot après un chiffre (équivalent de \b) : fin du texte ou caractère non alphanumérique
+     */
+    private static boolean finDeMot(CharSequence t, int i) {
+        if (i >= t.length()) {
+            return true;
+        }
+        char c = t.charAt(i);
+        return !(Character.isLetterOrDigit(c) || c == '_');
+    }
+
+    private static boolean estChiffre(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean estBlanc(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+}
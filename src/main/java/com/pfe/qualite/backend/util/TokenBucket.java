@@ -0,0 +1,38 @@
+package com.pfe.qualite.backend.util;
+
+/**
+ * Seau à jetons thread-safe : rafale de {@code capacite} requêtes, puis {@code debitParSeconde} en régime permanent.
+ * Ne bloque jamais : l'appelant reçoit le délai d'attente et planifie lui-même sa nouvelle tentative.
+ */
+public class TokenBucket {
+
+    private final double capacite;
+    private final double jetonsParNano;
+    private double jetons;
+    private long derniereRecharge;
+
+    public TokenBucket(int capacite, double debitParSeconde) {
+        if (capacite <= 0 || debitParSeconde <= 0) {
+            throw new IllegalArgumentException("Capacité et débit doivent être positifs");
+        }
+        this.capacite = capacite;
+        this.jetonsParNano = debitParSeconde / 1_000_000_000.0;
+        this.jetons = capacite;
+        this.derniereRecharge = System.nanoTime();
+    }
+
+    /**
+     * Prend un jeton s'il y en a un.
+     * @return 0 si le jeton est pris, sinon le délai en nanosecondes avant qu'un jeton soit disponible
+     */
+    public synchronized long essayerAcquerir() {
+        long maintenant = System.nanoTime();
+        jetons = Math.min(capacite, jetons + (maintenant - derniereRecharge) * jetonsParNano);
+        derniereRecharge = maintenant;
+        if (jetons >= 1) {
+            jetons -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - jetons) / jetonsParNano);
+    }
+}
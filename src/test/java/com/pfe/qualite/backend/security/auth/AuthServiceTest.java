@@ -3,6 +3,7 @@ package com.pfe.qualite.backend.security.auth;
 import com.pfe.qualite.backend.model.Utilisateur;
 import com.pfe.qualite.backend.repository.UtilisateurRepository;
 import com.pfe.qualite.backend.security.jwt.JwtUtils;
+import com.pfe.qualite.backend.service.UtilisateurCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -47,6 +48,9 @@ class AuthServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private UtilisateurCache utilisateurCache;
+
     @InjectMocks
     private AuthService authService;
 
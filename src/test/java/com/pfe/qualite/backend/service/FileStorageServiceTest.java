@@ -0,0 +1,151 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.BlobFichier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour FileStorageService
+ * Vérifie la déduplication par empreinte et la suppression à la dernière référence
+ */
+@ExtendWith(MockitoExtension.class)
+class FileStorageServiceTest {
+
+    // SHA-256 de "contenu"
+    private static final String EMPREINTE = "3016ef88e3166466281c563b984abed5412a2de823d37ed99c2af39be422fab1";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private FileStorageService fileStorageService;
+
+    @TempDir
+    Path repertoire;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", repertoire.toString());
+        fileStorageService.init();
+    }
+
+    private static MockMultipartFile fichier(String nom, String contenu) {
+        return new MockMultipartFile("file", nom, "text/plain", contenu.getBytes());
+    }
+
+    private long nombreDeBlobs() throws Exception {
+        try (Stream<Path> fichiers = Files.walk(repertoire.resolve("blobs"))) {
+            return fichiers.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    void testContenuIdentiqueStockeUneSeuleFois() throws Exception {
+        String premier = fileStorageService.storeFile(fichier("a.txt", "contenu"));
+        String second = fileStorageService.storeFile(fichier("b.pdf", "contenu"));
+        String autre = fileStorageService.storeFile(fichier("c.txt", "autre contenu"));
+
+        assertEquals(EMPREINTE, premier);
+        assertEquals(premier, second);
+        assertNotEquals(premier, autre);
+        assertEquals(2, nombreDeBlobs());
+
+        // Répartition sur deux niveaux de répertoires
+        Path chemin = fileStorageService.getFilePath(premier);
+        assertEquals(repertoire.resolve("blobs").resolve(premier.substring(0, 2)).resolve(premier.substring(2, 4)).resolve(premier),
+                chemin);
+        assertEquals("contenu", Files.readString(chemin));
+
+        // Une référence ajoutée par upload, fichier temporaire retiré
+        verify(mongoTemplate, times(3)).upsert(any(Query.class), any(Update.class), eq(BlobFichier.class));
+        try (Stream<Path> restes = Files.list(repertoire.resolve("tmp"))) {
+            assertEquals(0, restes.count());
+        }
+    }
+
+    @Test
+    void testSuppressionALaDerniereReference() throws Exception {
+        String empreinte = fileStorageService.storeFile(fichier("a.txt", "contenu"));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(BlobFichier.class)))
+                .thenReturn(BlobFichier.builder().id(empreinte).references(1).build())
+                .thenReturn(BlobFichier.builder().id(empreinte).references(0).build());
+
+        fileStorageService.deleteFile(empreinte);
+        assertTrue(fileStorageService.fileExists(empreinte));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(BlobFichier.class));
+
+        fileStorageService.deleteFile(empreinte);
+        assertFalse(fileStorageService.fileExists(empreinte));
+        verify(mongoTemplate).remove(any(Query.class), eq(BlobFichier.class));
+    }
+
+    @Test
+    void testFluxStockeEnUnePasse() throws Exception {
+        byte[] pdf = new byte[300_000];
+        System.arraycopy("%PDF-1.7".getBytes(), 0, pdf, 0, 8);
+        // Flux livré par petits morceaux, comme le corps d'une requête
+        InputStream corps = new ByteArrayInputStream(pdf) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+
+        FileStorageService.FichierStocke stocke = fileStorageService.storeStream(corps, "application/pdf", 1024 * 1024);
+
+        assertEquals(pdf.length, stocke.getTaille());
+        assertArrayEquals(pdf, Files.readAllBytes(fileStorageService.getFilePath(stocke.getEmpreinte())));
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(pdf)), stocke.getEmpreinte());
+    }
+
+    @Test
+    void testFluxRefuseSansFichierResiduel() throws Exception {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 1, 2, 3};
+        IllegalArgumentException typeFaux = assertThrows(IllegalArgumentException.class,
+                () -> fileStorageService.storeStream(new ByteArrayInputStream(png), "application/pdf", 1024));
+        assertTrue(typeFaux.getMessage().contains("application/pdf"));
+        assertThrows(IllegalArgumentException.class,
+                () -> fileStorageService.storeStream(new ByteArrayInputStream(new byte[0]), "image/png", 1024));
+        assertThrows(IllegalArgumentException.class,
+                () -> fileStorageService.storeStream(new ByteArrayInputStream(png), "image/png", 10));
+        assertNotNull(fileStorageService.storeStream(new ByteArrayInputStream(png), "image/png; charset=binary", 1024));
+
+        assertEquals(1, nombreDeBlobs());
+        try (Stream<Path> restes = Files.list(repertoire.resolve("tmp"))) {
+            assertEquals(0, restes.count());
+        }
+    }
+
+    @Test
+    void testEmpreinteInvalideRefusee() {
+        assertThrows(RuntimeException.class, () -> fileStorageService.getFilePath("../../etc/passwd"));
+        assertThrows(RuntimeException.class, () -> fileStorageService.getFilePath(EMPREINTE.toUpperCase()));
+        assertFalse(fileStorageService.fileExists(null));
+        fileStorageService.deleteFile("inconnu");
+        verifyNoInteractions(mongoTemplate);
+    }
+}
@@ -0,0 +1,95 @@
+package com.pfe.qualite.backend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests du client Gemini contre le faux serveur local GeminiStubServer
+ */
+class GeminiClientTest {
+
+    private GeminiStubServer stub;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new GeminiStubServer(0).fragments("Bon", "jour");
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    private GeminiClient client(int maxRetries) {
+        return new GeminiClient("cle-test", stub.url(), maxRetries, 10, 50, 1000, 5000, 10, 6000);
+    }
+
+    @Test
+    void testReponseDirecte() throws Exception {
+        assertEquals("Bonjour", client(2).generer("question").get(5, TimeUnit.SECONDS));
+        assertEquals(1, stub.appels());
+    }
+
+    @Test
+    void testNouvelleTentativeApres429() throws Exception {
+        stub.codes(429, 503, 200);
+        assertEquals("Bonjour", client(2).generer("question").get(5, TimeUnit.SECONDS));
+        assertEquals(3, stub.appels());
+    }
+
+    @Test
+    void testQuotaEpuise() {
+        stub.codes(429);
+        CompletionException e = assertThrows(CompletionException.class, () -> client(1).generer("question").join());
+        assertTrue(((GeminiClient.GeminiException) e.getCause()).isQuotaDepasse());
+        assertEquals(2, stub.appels());
+    }
+
+    @Test
+    void testErreurClientSansNouvelleTentative() {
+        stub.codes(400);
+        CompletionException e = assertThrows(CompletionException.class, () -> client(2).generer("question").join());
+        assertFalse(((GeminiClient.GeminiException) e.getCause()).isQuotaDepasse());
+        assertEquals(1, stub.appels());
+    }
+
+    @Test
+    void testCleAbsente() {
+        GeminiClient sansCle = new GeminiClient("", stub.url(), 2, 10, 50, 1000, 5000, 10, 6000);
+        assertFalse(sansCle.isConfigure());
+        assertThrows(CompletionException.class, () -> sansCle.generer("question").join());
+        assertEquals(0, stub.appels());
+    }
+
+    @Test
+    void testFluxTransmisParFragments() throws Exception {
+        stub.codes(503, 200).fragments("Le taux ", "de conformité\n", "est de 92 %.");
+        List<String> recus = new CopyOnWriteArrayList<>();
+        String texte = client(2).genererEnFlux("question", recus::add).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("Le taux ", "de conformité\n", "est de 92 %."), recus);
+        assertEquals("Le taux de conformité\nest de 92 %.", texte);
+        assertEquals(2, stub.appels());
+    }
+
+    @Test
+    void testReponseVideEnEchec() {
+        stub.fragments();
+        CompletionException e = assertThrows(CompletionException.class, () -> client(2).generer("question").join());
+        assertTrue(((GeminiClient.GeminiException) e.getCause()).isReponseInvalide());
+
+        List<String> recus = new CopyOnWriteArrayList<>();
+        e = assertThrows(CompletionException.class, () -> client(2).genererEnFlux("question", recus::add).join());
+        assertTrue(((GeminiClient.GeminiException) e.getCause()).isReponseInvalide());
+        assertTrue(recus.isEmpty());
+        // Une réponse 200 vide n'est pas retentée
+        assertEquals(2, stub.appels());
+    }
+}
@@ -0,0 +1,111 @@
+package com.pfe.qualite.backend.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Faux serveur Gemini local (generateContent et streamGenerateContent?alt=sse) pour travailler hors ligne.
+ * Utilisé par les tests ; peut aussi être lancé seul pour le développement du frontend :
+ *   java -cp target/test-classes com.pfe.qualite.backend.service.GeminiStubServer 9099
+ * puis gemini.api.url=http://127.0.0.1:9099/v1beta/models/stub:generateContent et gemini.api.key=stub
+ */
+public class GeminiStubServer implements AutoCloseable {
+
+    private final HttpServer serveur;
+    private final AtomicInteger appels = new AtomicInteger();
+    // Codes renvoyés successivement ; le dernier est répété
+    private volatile int[] codes = {200};
+    private volatile List<String> fragments = List.of("Bonjour", ", je suis ", "l'assistant qualité.");
+    private volatile long delaiEntreFragmentsMs = 0;
+
+    public GeminiStubServer(int port) throws IOException {
+        serveur = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        serveur.createContext("/", this::repondre);
+        serveur.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        GeminiStubServer stub = new GeminiStubServer(args.length > 0 ? Integer.parseInt(args[0]) : 9099);
+        stub.delaiEntreFragmentsMs = 150;
+        System.out.println("Faux serveur Gemini : " + stub.url());
+    }
+
+    /**
+     * URL à utiliser comme gemini.api.url
+     */
+    public String url() {
+        return "http://127.0.0.1:" + serveur.getAddress().getPort() + "/v1beta/models/stub:generateContent";
+    }
+
+    public GeminiStubServer codes(int... codes) {
+        this.codes = codes;
+        return this;
+    }
+
+    public GeminiStubServer fragments(String... fragments) {
+        this.fragments = List.of(fragments);
+        return this;
+    }
+
+    public int appels() {
+        return appels.get();
+    }
+
+    private void repondre(HttpExchange echange) throws IOException {
+        try (echange) {
+            echange.getRequestBody().readAllBytes();
+            int n = appels.getAndIncrement();
+            int code = codes[Math.min(n, codes.length - 1)];
+            if (code != 200) {
+                envoyer(echange, code, "application/json", "{\"error\":{\"code\":" + code + "}}");
+                return;
+            }
+            if (echange.getRequestURI().getPath().endsWith(":streamGenerateContent")) {
+                echange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                echange.sendResponseHeaders(200, 0);
+                OutputStream out = echange.getResponseBody();
+                for (String fragment : fragments) {
+                    out.write(("data: " + reponse(fragment) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    pause();
+                }
+            } else {
+                envoyer(echange, 200, "application/json", reponse(String.join("", fragments)));
+            }
+        }
+    }
+
+    private static void envoyer(HttpExchange echange, int code, String type, String corps) throws IOException {
+        byte[] octets = corps.getBytes(StandardCharsets.UTF_8);
+        echange.getResponseHeaders().set("Content-Type", type);
+        echange.sendResponseHeaders(code, octets.length);
+        echange.getResponseBody().write(octets);
+    }
+
+    private static String reponse(String texte) {
+        String echappe = texte.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + echappe + "\"}]}}]}";
+    }
+
+    private void pause() {
+        if (delaiEntreFragmentsMs > 0) {
+            try {
+                Thread.sleep(delaiEntreFragmentsMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        serveur.stop(0);
+    }
+}
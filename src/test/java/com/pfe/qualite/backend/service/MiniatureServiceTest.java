@@ -0,0 +1,174 @@
+package com.pfe.qualite.backend.service;
+
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Image;
+import com.itextpdf.layout.element.Paragraph;
+import com.pfe.qualite.backend.model.Attachment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests unitaires pour MiniatureService
+ * Rendu des images et des PDF, génération en arrière-plan à côté du blob, échecs retenus ou replanifiés
+ */
+class MiniatureServiceTest {
+
+    @TempDir
+    Path repertoire;
+
+    private FileStorageService fileStorageService;
+    private SimpleMeterRegistry registre;
+    private MiniatureService miniatureService;
+
+    @BeforeEach
+    void setUp() {
+        fileStorageService = new FileStorageService();
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", repertoire.toString());
+        ReflectionTestUtils.setField(fileStorageService, "mongoTemplate", mock(MongoTemplate.class));
+        fileStorageService.init();
+        registre = new SimpleMeterRegistry();
+        miniatureService = new MiniatureService(fileStorageService, registre, 1, 10, 256);
+    }
+
+    @AfterEach
+    void tearDown() {
+        miniatureService.arreter();
+    }
+
+    private static byte[] png(int largeur, int hauteur) throws Exception {
+        BufferedImage image = new BufferedImage(largeur, hauteur, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 0, largeur / 2, hauteur);
+        g.dispose();
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", sortie);
+        return sortie.toByteArray();
+    }
+
+    private Path ecrire(String nom, byte[] contenu) throws Exception {
+        return Files.write(repertoire.resolve(nom), contenu);
+    }
+
+    private static void attendre(BooleanSupplier condition) throws Exception {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    // Dépose un blob directement dans le stockage, sans contrôle du contenu
+    private void deposer(String empreinte, byte[] contenu) throws Exception {
+        Path blob = fileStorageService.getThumbnailPath(empreinte).resolveSibling(empreinte);
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, contenu);
+    }
+
+    private double echecs() {
+        return registre.counter("miniatures.echecs").count();
+    }
+
+    private static BufferedImage lire(byte[] jpeg) throws Exception {
+        return ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+
+    @Test
+    void testMiniatureImage() throws Exception {
+        BufferedImage miniature = lire(miniatureService.rendre(ecrire("photo.png", png(2000, 1000)), "image/png"));
+        assertEquals(256, miniature.getWidth());
+        assertEquals(128, miniature.getHeight());
+
+        // Une petite image n'est pas agrandie
+        miniature = lire(miniatureService.rendre(ecrire("icone.png", png(40, 30)), "image/png"));
+        assertEquals(40, miniature.getWidth());
+    }
+
+    @Test
+    void testMiniaturePdf() throws Exception {
+        ByteArrayOutputStream scan = new ByteArrayOutputStream();
+        try (Document document = new Document(new PdfDocument(new PdfWriter(scan)))) {
+            document.add(new Paragraph("Rapport d'audit"));
+            document.add(new Image(ImageDataFactory.create(png(600, 800))).scaleToFit(400, 500));
+        }
+        BufferedImage miniature = lire(miniatureService.rendre(ecrire("scan.pdf", scan.toByteArray()), "application/pdf"));
+        assertEquals(192, miniature.getWidth());
+        assertEquals(256, miniature.getHeight());
+
+        ByteArrayOutputStream texte = new ByteArrayOutputStream();
+        try (Document document = new Document(new PdfDocument(new PdfWriter(texte)))) {
+            document.add(new Paragraph("Aucune image"));
+        }
+        assertNull(miniatureService.rendre(ecrire("texte.pdf", texte.toByteArray()), "application/pdf"));
+    }
+
+    @Test
+    void testGenerationEnArrierePlan() throws Exception {
+        String empreinte = fileStorageService.storeFile(new MockMultipartFile("file", "a.png", "image/png", png(800, 600)));
+        Attachment attachment = Attachment.builder().sha256(empreinte).contentType("image/png").build();
+
+        assertTrue(miniatureService.planifier(attachment));
+        Path miniature = fileStorageService.getThumbnailPath(empreinte);
+        for (int i = 0; i < 100 && !Files.exists(miniature); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(Files.exists(miniature));
+        assertEquals(fileStorageService.getFilePath(empreinte).getParent(), miniature.getParent());
+        assertTrue(Files.size(miniature) < 20_000);
+
+        assertFalse(miniatureService.planifier(Attachment.builder().sha256(empreinte).contentType("application/msword").build()));
+        assertFalse(miniatureService.planifier(Attachment.builder().contentType("image/png").build()));
+    }
+
+    @Test
+    void testContenuIllisibleRetenuContenuAbsentReplanifie() throws Exception {
+        // Signature PNG suivie d'un en-tête corrompu : échec de décodage, retenu
+        String illisible = "a".repeat(64);
+        byte[] png = png(10, 10);
+        png[12] = 'X';
+        deposer(illisible, png);
+        Attachment corrompue = Attachment.builder().sha256(illisible).contentType("image/png").build();
+        assertTrue(miniatureService.planifier(corrompue));
+        attendre(() -> echecs() == 1);
+        attendre(() -> !miniatureService.planifier(corrompue));
+
+        // Blob pas encore en place : rien n'est retenu, la demande suivante replanifie
+        String absente = "b".repeat(64);
+        Attachment enAttente = Attachment.builder().sha256(absente).contentType("image/png").build();
+        assertTrue(miniatureService.planifier(enAttente));
+        attendre(() -> echecs() == 2);
+        deposer(absente, png(80, 60));
+        attendre(() -> miniatureService.planifier(enAttente) && registre.counter("miniatures.generees").count() == 1);
+        assertTrue(Files.exists(fileStorageService.getThumbnailPath(absente)));
+    }
+
+    @Test
+    void testPieceJointeDeLAncienStockageEnAttente() {
+        assertTrue(miniatureService.planifier(Attachment.builder().storedFileName("ancien.png").contentType("image/png").build()));
+        assertTrue(miniatureService.planifier(Attachment.builder().storedFileName("ancien.pdf").sha256("c".repeat(64))
+                .contentType("application/pdf").build()));
+        assertFalse(miniatureService.planifier(Attachment.builder().storedFileName("ancien.doc").contentType("application/msword").build()));
+        assertEquals(0, echecs());
+    }
+}
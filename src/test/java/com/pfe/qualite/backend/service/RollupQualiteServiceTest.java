@@ -0,0 +1,207 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.FicheQualite;
+import com.pfe.qualite.backend.model.FicheSuivi;
+import com.pfe.qualite.backend.model.RollupQualiteJour;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour RollupQualiteService
+ * Recalcul des répartitions par jour, deltas appliqués aux jours de l'ancienne et de la nouvelle version,
+ * lecture sans recalcul et retards bornés à aujourd'hui
+ */
+@ExtendWith(MockitoExtension.class)
+class RollupQualiteServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations lot;
+
+    @InjectMocks
+    private RollupQualiteService rollupQualiteService;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final LocalDate aujourdhui = LocalDate.now(zone);
+
+    private static AggregationResults<Document> resultats(Document... documents) {
+        return new AggregationResults<>(List.of(documents), new Document());
+    }
+
+    private void agregation(String collection, Document... documents) {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(collection), eq(Document.class))).thenReturn(resultats(documents));
+    }
+
+    private Date debutDuJour(LocalDate jour) {
+        return Date.from(jour.atStartOfDay(zone).toInstant());
+    }
+
+    /**
+     * Premier étage ($match) des agrégations envoyées à une collection
+     */
+    private List<Document> matchs(String collection) {
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate, atLeastOnce()).aggregate(captor.capture(), eq(collection), eq(Document.class));
+        List<Document> matchs = new ArrayList<>();
+        for (Aggregation aggregation : captor.getAllValues()) {
+            matchs.add(aggregation.toPipeline(Aggregation.DEFAULT_CONTEXT).get(0).get("$match", Document.class));
+        }
+        return matchs;
+    }
+
+    private static Document bucket(LocalDate jour, String valeur, int total) {
+        return new Document("_id", new Document("jour", jour.toString()).append("valeur", valeur)).append("total", total);
+    }
+
+    /**
+     * $inc envoyés par jour lors des upserts
+     */
+    private Map<String, Document> increments() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, atLeastOnce()).upsert(query.capture(), update.capture(), eq(RollupQualiteJour.class));
+        Map<String, Document> parJour = new HashMap<>();
+        for (int i = 0; i < query.getAllValues().size(); i++) {
+            parJour.put(query.getAllValues().get(i).getQueryObject().getString("_id"),
+                    update.getAllValues().get(i).getUpdateObject().get("$inc", Document.class));
+        }
+        return parJour;
+    }
+
+    @Test
+    void testRecalculerRepartitionsParJour() {
+        LocalDate debut = aujourdhui.minusDays(2);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RollupQualiteJour.class)).thenReturn(lot);
+        agregation("fiches_qualite", new Document("statuts", List.of(bucket(debut, "EN_COURS", 2), bucket(debut, null, 1),
+                        bucket(aujourdhui, "VALIDEE", 1)))
+                .append("types", List.of(bucket(debut, "AUDIT", 3), bucket(aujourdhui, "AUDIT", 1)))
+                .append("priorites", List.of(bucket(debut, "HAUTE", 3))));
+        agregation("fiches_suivi", new Document("statuts", List.of(bucket(debut.plusDays(1), "TERMINE", 2)))
+                .append("kpi", List.of(new Document("_id", debut.plusDays(1).toString()).append("evalues", 2).append("conformes", 1)
+                        .append("sommeTaux", 150.0).append("delais", 1).append("sommeDelais", 4.0))));
+        agregation("formulaires_obligatoires");
+
+        List<RollupQualiteJour> jours = rollupQualiteService.recalculer(debut, aujourdhui);
+
+        assertEquals(3, jours.size());
+        assertEquals(debut.toString(), jours.get(0).getId());
+        assertEquals(3, jours.get(0).getFichesQualiteCreees());
+        assertEquals(Map.of("EN_COURS", 2L, RollupQualiteService.NON_DEFINI, 1L), jours.get(0).getStatutsQualite());
+        assertEquals(Map.of("HAUTE", 3L), jours.get(0).getPrioritesQualite());
+        assertEquals(2, jours.get(1).getFichesSuivi());
+        assertEquals(1, jours.get(1).getNbConformes());
+        assertEquals(150.0, jours.get(1).getSommeTauxConformite());
+        assertEquals(4.0, jours.get(1).getDelaiTraitementMoyen());
+        assertEquals(Map.of("AUDIT", 1L), jours.get(2).getTypesFiche());
+        assertEquals(0, jours.get(2).getFormulairesCrees());
+        assertEquals(new Document("dateCreation", new Document("$gte", debutDuJour(debut)).append("$lt", debutDuJour(aujourdhui.plusDays(1)))),
+                matchs("fiches_qualite").get(0));
+        verify(lot, times(3)).replaceOne(any(Query.class), any(RollupQualiteJour.class), any(FindAndReplaceOptions.class));
+        verify(lot).execute();
+    }
+
+    @Test
+    void testChangementDeStatutMemeJour() {
+        FicheQualite avant = FicheQualite.builder().statut("EN_COURS").typeFiche("AUDIT")
+                .dateCreation(aujourdhui.minusDays(4).atTime(10, 0)).build();
+        FicheQualite apres = FicheQualite.builder().statut("VALIDEE").typeFiche("AUDIT")
+                .dateCreation(aujourdhui.minusDays(4).atTime(10, 0)).build();
+
+        rollupQualiteService.ficheQualiteModifiee(avant, apres);
+
+        Map<String, Document> increments = increments();
+        assertEquals(Map.of(aujourdhui.minusDays(4).toString(), new Document("statutsQualite.EN_COURS", -1L)
+                .append("statutsQualite.VALIDEE", 1L)), increments);
+    }
+
+    @Test
+    void testDateDeSuiviDeplaceeSurDeuxJours() {
+        LocalDate ancien = aujourdhui.minusDays(10);
+        LocalDate nouveau = aujourdhui.minusDays(3);
+        FicheSuivi avant = FicheSuivi.builder().etatAvancement("EN_COURS").dateSuivi(debutDuJour(ancien))
+                .tauxConformite(90.0).delaiTraitementJours(2.0).build();
+        FicheSuivi apres = FicheSuivi.builder().etatAvancement("EN_COURS").dateSuivi(debutDuJour(nouveau))
+                .tauxConformite(60.0).build();
+
+        rollupQualiteService.ficheSuiviModifiee(avant, apres);
+
+        Map<String, Document> increments = increments();
+        Document retire = increments.get(ancien.toString());
+        assertEquals(-1L, retire.get("fichesSuivi"));
+        assertEquals(-1L, retire.get("statutsSuivi.EN_COURS"));
+        assertEquals(-1L, retire.get("nbConformes"));
+        assertEquals(-90.0, retire.get("sommeTauxConformite"));
+        assertEquals(-2.0, retire.get("sommeDelaiTraitementJours"));
+        Document ajoute = increments.get(nouveau.toString());
+        assertEquals(1L, ajoute.get("fichesSuivi"));
+        assertEquals(60.0, ajoute.get("sommeTauxConformite"));
+        assertFalse(ajoute.containsKey("nbConformes"));
+        assertFalse(ajoute.containsKey("delaisRenseignes"));
+    }
+
+    @Test
+    void testElementSansDateNonCompte() {
+        rollupQualiteService.ficheSuiviModifiee(null, FicheSuivi.builder().etatAvancement("EN_COURS").build());
+
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(RollupQualiteJour.class));
+    }
+
+    @Test
+    void testLireCompleteLesJoursSansActiviteSansRecalcul() {
+        LocalDate debut = aujourdhui.minusDays(5);
+        when(mongoTemplate.find(any(Query.class), eq(RollupQualiteJour.class)))
+                .thenReturn(List.of(RollupQualiteJour.builder().id(debut.plusDays(1).toString()).fichesSuivi(3).build()));
+
+        List<RollupQualiteJour> jours = rollupQualiteService.lire(debut, aujourdhui.plusDays(2));
+
+        assertEquals(8, jours.size());
+        assertEquals(0, jours.get(0).getFichesSuivi());
+        assertEquals(3, jours.get(1).getFichesSuivi());
+        assertEquals(aujourdhui.plusDays(2).toString(), jours.get(7).getId());
+        verify(mongoTemplate, never()).aggregate(any(Aggregation.class), anyString(), eq(Document.class));
+        assertThrows(IllegalArgumentException.class, () -> rollupQualiteService.lire(aujourdhui, debut));
+    }
+
+    @Test
+    void testRetardsBornesAAujourdhui() {
+        when(mongoTemplate.count(any(Query.class), anyString())).thenReturn(2L);
+
+        assertEquals(2, rollupQualiteService.fichesQualiteEnRetard(aujourdhui.minusMonths(2)));
+        assertEquals(2, rollupQualiteService.formulairesEnRetard(aujourdhui.plusDays(30)));
+
+        ArgumentCaptor<Query> qualite = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).count(qualite.capture(), eq("fiches_qualite"));
+        assertEquals(debutDuJour(aujourdhui.minusMonths(2)), qualite.getValue().getQueryObject().get("dateEcheance", Document.class).get("$lt"));
+        ArgumentCaptor<Query> formulaires = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).count(formulaires.capture(), eq("formulaires_obligatoires"));
+        assertEquals(debutDuJour(aujourdhui), formulaires.getValue().getQueryObject().get("dateEcheance", Document.class).get("$lt"));
+    }
+}
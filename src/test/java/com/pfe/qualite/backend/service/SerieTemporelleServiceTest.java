@@ -0,0 +1,134 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.FicheSuivi;
+import com.pfe.qualite.backend.service.SerieTemporelleService.Granularite;
+import com.pfe.qualite.backend.service.SerieTemporelleService.Point;
+import com.pfe.qualite.backend.service.SerieTemporelleService.Serie;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour SerieTemporelleService
+ * Vérifie le remplissage des tranches vides et la mise en cache des tranches closes
+ */
+@ExtendWith(MockitoExtension.class)
+class SerieTemporelleServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private SerieTemporelleService serieTemporelleService;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private LocalDate moisCourant;
+
+    @BeforeEach
+    void setUp() {
+        moisCourant = LocalDate.now(zone).withDayOfMonth(1);
+    }
+
+    private Document tranche(LocalDate debut, double valeur, int nombre) {
+        return new Document("_id", Date.from(debut.atStartOfDay(zone).toInstant()))
+                .append("valeur", valeur).append("nombre", nombre);
+    }
+
+    private void resultats(Document... tranches) {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("fiches_suivi"), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(tranches), new Document()));
+    }
+
+    /**
+     * Date de début du $match de la n-ième agrégation
+     */
+    private LocalDate debutAgregation(int n) {
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate, atLeast(n)).aggregate(captor.capture(), eq("fiches_suivi"), eq(Document.class));
+        Document match = captor.getAllValues().get(n - 1).toPipeline(Aggregation.DEFAULT_CONTEXT).get(0);
+        Date debut = match.get("$match", Document.class).get("dateSuivi", Document.class).getDate("$gte");
+        return LocalDate.ofInstant(debut.toInstant(), zone);
+    }
+
+    @Test
+    void testTranchesVidesRemplies() {
+        resultats(tranche(moisCourant.minusMonths(2), 87.46, 3), tranche(moisCourant, 90.0, 1));
+
+        List<Point> points = serieTemporelleService.serie(Serie.TAUX_CONFORMITE, Granularite.MOIS, 4);
+
+        assertEquals(4, points.size());
+        assertEquals(moisCourant.minusMonths(3), points.get(0).getDebut());
+        assertNull(points.get(0).getValeur());
+        assertEquals(87.5, points.get(1).getValeur());
+        assertEquals(3, points.get(1).getNombre());
+        assertNull(points.get(2).getValeur());
+        assertEquals(0, points.get(2).getNombre());
+        assertEquals(90.0, points.get(3).getValeur());
+        assertEquals(moisCourant.minusMonths(3), debutAgregation(1));
+    }
+
+    @Test
+    void testSeuleLaTrancheOuverteEstRecalculee() {
+        resultats(tranche(moisCourant.minusMonths(1), 80.0, 2));
+        serieTemporelleService.serie(Serie.TAUX_CONFORMITE, Granularite.MOIS, 3);
+
+        List<Point> points = serieTemporelleService.serie(Serie.TAUX_CONFORMITE, Granularite.MOIS, 3);
+
+        assertEquals(moisCourant, debutAgregation(2));
+        assertEquals(80.0, points.get(1).getValeur());
+    }
+
+    @Test
+    void testEcritureDansLePasseInvalideSaTranche() {
+        resultats();
+        serieTemporelleService.serie(Serie.TAUX_CONFORMITE, Granularite.MOIS, 6);
+
+        LocalDate ancienne = moisCourant.minusMonths(4).plusDays(3);
+        FicheSuivi suivi = FicheSuivi.builder().dateSuivi(Date.from(ancienne.atStartOfDay(zone).toInstant())).build();
+        serieTemporelleService.ficheSuiviModifiee(null, suivi);
+        serieTemporelleService.serie(Serie.TAUX_CONFORMITE, Granularite.MOIS, 6);
+
+        assertEquals(moisCourant.minusMonths(4), debutAgregation(2));
+    }
+
+    @Test
+    void testEcritureConcurrenteDeLAgregationNonMemorisee() {
+        LocalDate ancienne = moisCourant.minusMonths(2);
+        FicheSuivi suivi = FicheSuivi.builder().dateSuivi(Date.from(ancienne.atStartOfDay(zone).toInstant())).build();
+        // L'écriture arrive pendant l'agrégation : son résultat ne doit pas entrer dans le cache
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq("fiches_suivi"), eq(Document.class))).thenAnswer(i -> {
+            serieTemporelleService.ficheSuiviModifiee(null, suivi);
+            return new AggregationResults<>(List.of(), new Document());
+        }).thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+        serieTemporelleService.serie(Serie.TAUX_CONFORMITE, Granularite.MOIS, 3);
+        serieTemporelleService.serie(Serie.TAUX_CONFORMITE, Granularite.MOIS, 3);
+
+        assertEquals(moisCourant.minusMonths(2), debutAgregation(2));
+    }
+
+    @Test
+    void testGranulariteInconnue() {
+        assertEquals(Granularite.SEMAINE, Granularite.parse("week"));
+        assertEquals(Granularite.JOUR, Granularite.parse("Jour"));
+        assertThrows(IllegalArgumentException.class, () -> Granularite.parse("trimestre"));
+    }
+}
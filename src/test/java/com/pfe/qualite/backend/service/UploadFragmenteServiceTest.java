@@ -0,0 +1,271 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.dto.UploadFragmenteRequest;
+import com.pfe.qualite.backend.model.UploadFragmente;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour UploadFragmenteService
+ * Morceaux écrits en parallèle et dans le désordre, puis assemblés en place ; terminaison concurrente d'un envoi
+ */
+class UploadFragmenteServiceTest {
+
+    private static final int CHUNK = 1024 * 1024;
+
+    @TempDir
+    Path repertoire;
+
+    private MongoTemplate mongoTemplate;
+    private FileStorageService fileStorageService;
+    private UploadFragmenteService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        fileStorageService = new FileStorageService();
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", repertoire.toString());
+        ReflectionTestUtils.setField(fileStorageService, "mongoTemplate", mongoTemplate);
+        fileStorageService.init();
+
+        service = new UploadFragmenteService(mongoTemplate, fileStorageService);
+        ReflectionTestUtils.setField(service, "tailleChunkMb", 1);
+        ReflectionTestUtils.setField(service, "tailleMaxMb", 10L);
+        ReflectionTestUtils.setField(service, "dureeVieHeures", 24L);
+        when(mongoTemplate.insert(any(UploadFragmente.class))).thenAnswer(i -> i.getArgument(0));
+    }
+
+    private UploadFragmente ouvrir(long taille) {
+        UploadFragmente upload = service.ouvrir(new UploadFragmenteRequest("preuves.pdf", "application/pdf", taille, "FICHE_QUALITE", "f1", null), "u1");
+        when(mongoTemplate.findById(upload.getId(), UploadFragmente.class)).thenReturn(upload);
+        // Le document renvoyé reflète les morceaux marqués reçus
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UploadFragmente.class)))
+                .thenAnswer(i -> {
+                    Update update = i.getArgument(1);
+                    Object index = ((Document) update.getUpdateObject().get("$addToSet")).get("receivedChunks");
+                    synchronized (upload) {
+                        upload.getReceivedChunks().add((Integer) index);
+                    }
+                    return upload;
+                });
+        return upload;
+    }
+
+    private void ecrireTout(UploadFragmente upload, byte[] contenu) throws Exception {
+        for (int index = 0; index < upload.getTotalChunks(); index++) {
+            int debut = index * CHUNK;
+            int longueur = Math.min(CHUNK, contenu.length - debut);
+            service.ecrireChunk(upload.getId(), index, new ByteArrayInputStream(contenu, debut, longueur), longueur, "u1");
+        }
+    }
+
+    // Contenu aléatoire reconnu comme un PDF
+    private static byte[] pdf(int taille, long graine) {
+        byte[] contenu = new byte[taille];
+        new Random(graine).nextBytes(contenu);
+        System.arraycopy("%PDF-1.7".getBytes(), 0, contenu, 0, 8);
+        return contenu;
+    }
+
+    private static String sha256(byte[] contenu) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenu));
+    }
+
+    @Test
+    void testMorceauxParallelesDansLeDesordre() throws Exception {
+        byte[] contenu = new byte[3 * CHUNK + 12345];
+        new Random(3).nextBytes(contenu);
+        System.arraycopy("%PDF-1.7".getBytes(), 0, contenu, 0, 8);
+        UploadFragmente upload = ouvrir(contenu.length);
+        assertEquals(4, upload.getTotalChunks());
+        assertEquals(contenu.length, Files.size(fileStorageService.getFichierPartiel(upload.getId())));
+
+        List<Integer> ordre = new ArrayList<>(List.of(0, 1, 2, 3));
+        Collections.shuffle(ordre, new Random(5));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<UploadFragmente>> envois = new ArrayList<>();
+            for (int index : ordre) {
+                int debut = index * CHUNK;
+                int longueur = Math.min(CHUNK, contenu.length - debut);
+                envois.add(pool.submit(() -> service.ecrireChunk(upload.getId(), index,
+                        new ByteArrayInputStream(contenu, debut, longueur), longueur, "u1")));
+            }
+            for (Future<UploadFragmente> envoi : envois) {
+                envoi.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(service.manquants(upload).isEmpty());
+
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(UploadFragmente.class))).thenReturn(upload);
+        FileStorageService.FichierStocke stocke = service.terminer(upload);
+
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenu)), stocke.getEmpreinte());
+        assertArrayEquals(contenu, Files.readAllBytes(fileStorageService.getFilePath(stocke.getEmpreinte())));
+        assertFalse(Files.exists(fileStorageService.getFichierPartiel(upload.getId())));
+    }
+
+    @Test
+    void testMorceauMalDimensionneOuManquant() throws Exception {
+        UploadFragmente upload = ouvrir(CHUNK + 10);
+
+        assertThrows(IllegalArgumentException.class, () -> service.ecrireChunk(upload.getId(), 1,
+                new ByteArrayInputStream(new byte[11]), -1, "u1"));
+        assertThrows(IllegalArgumentException.class, () -> service.ecrireChunk(upload.getId(), 1,
+                new ByteArrayInputStream(new byte[9]), -1, "u1"));
+        assertThrows(IllegalArgumentException.class, () -> service.ecrireChunk(upload.getId(), 2,
+                new ByteArrayInputStream(new byte[10]), 10, "u1"));
+        assertThrows(RuntimeException.class, () -> service.lire(upload.getId(), "autre"));
+
+        service.ecrireChunk(upload.getId(), 1, new ByteArrayInputStream(new byte[10]), 10, "u1");
+        assertEquals(List.of(0), service.manquants(upload));
+        assertThrows(IllegalArgumentException.class, () -> service.terminer(upload));
+    }
+
+    @Test
+    void testTerminaisonAttendLeMorceauEnCoursDEcriture() throws Exception {
+        byte[] contenu = pdf(2 * CHUNK, 3);
+        UploadFragmente upload = ouvrir(contenu.length);
+        ecrireTout(upload, contenu);
+
+        // Le client renvoie le morceau 0 et s'interrompt à mi-chemin
+        byte[] renvoi = pdf(CHUNK, 7);
+        CountDownLatch moitieEcrite = new CountDownLatch(1);
+        CountDownLatch reprise = new CountDownLatch(1);
+        InputStream suite = new InputStream() {
+            private final InputStream reste = new ByteArrayInputStream(renvoi, CHUNK / 2, CHUNK / 2);
+
+            @Override
+            public int read() throws IOException {
+                attendre();
+                return reste.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                attendre();
+                return reste.read(b, off, len);
+            }
+
+            private void attendre() throws IOException {
+                moitieEcrite.countDown();
+                try {
+                    reprise.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+        };
+        InputStream corps = new SequenceInputStream(new ByteArrayInputStream(renvoi, 0, CHUNK / 2), suite);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(UploadFragmente.class))).thenReturn(upload);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<UploadFragmente> envoi = pool.submit(() -> service.ecrireChunk(upload.getId(), 0, corps, CHUNK, "u1"));
+            assertTrue(moitieEcrite.await(5, TimeUnit.SECONDS));
+            Future<FileStorageService.FichierStocke> fin = pool.submit(() -> service.terminer(upload));
+            Thread.sleep(200);
+            assertFalse(fin.isDone());
+
+            reprise.countDown();
+            envoi.get(5, TimeUnit.SECONDS);
+            FileStorageService.FichierStocke stocke = fin.get(5, TimeUnit.SECONDS);
+
+            byte[] attendu = contenu.clone();
+            System.arraycopy(renvoi, 0, attendu, 0, CHUNK);
+            assertEquals(sha256(attendu), stocke.getEmpreinte());
+            assertArrayEquals(attendu, Files.readAllBytes(fileStorageService.getFilePath(stocke.getEmpreinte())));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testMorceauRefuseUneFoisLaTerminaisonCommencee() throws Exception {
+        byte[] contenu = pdf(CHUNK + 100, 3);
+        UploadFragmente upload = ouvrir(contenu.length);
+        ecrireTout(upload, contenu);
+
+        // Le morceau passe le premier contrôle pendant que la terminaison tient déjà l'upload
+        CountDownLatch terminaisonCommencee = new CountDownLatch(1);
+        CountDownLatch morceauLu = new CountDownLatch(1);
+        when(mongoTemplate.findById(upload.getId(), UploadFragmente.class)).thenAnswer(i -> {
+            morceauLu.countDown();
+            return upload;
+        });
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(UploadFragmente.class))).thenAnswer(i -> {
+            terminaisonCommencee.countDown();
+            morceauLu.await(5, TimeUnit.SECONDS);
+            upload.setStatut(UploadFragmenteService.ASSEMBLAGE);
+            return upload;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<FileStorageService.FichierStocke> fin = pool.submit(() -> service.terminer(upload));
+            assertTrue(terminaisonCommencee.await(5, TimeUnit.SECONDS));
+            Future<UploadFragmente> envoi = pool.submit(() -> service.ecrireChunk(upload.getId(), 0,
+                    new ByteArrayInputStream(new byte[CHUNK]), CHUNK, "u1"));
+
+            ExecutionException refus = assertThrows(ExecutionException.class, () -> envoi.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, refus.getCause());
+            FileStorageService.FichierStocke stocke = fin.get(5, TimeUnit.SECONDS);
+            assertEquals(sha256(contenu), stocke.getEmpreinte());
+            assertArrayEquals(contenu, Files.readAllBytes(fileStorageService.getFilePath(stocke.getEmpreinte())));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testAucunVerrouConserveApresLaFinDeLUpload() throws Exception {
+        byte[] contenu = pdf(CHUNK, 3);
+        UploadFragmente upload = ouvrir(contenu.length);
+        ecrireTout(upload, contenu);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(UploadFragmente.class))).thenReturn(upload);
+        service.terminer(upload);
+        Map<?, ?> verrous = (Map<?, ?>) ReflectionTestUtils.getField(service, "verrous");
+        assertTrue(verrous.isEmpty());
+
+        // Le morceau passe la première lecture juste avant la fin de l'upload, puis le trouve supprimé
+        when(mongoTemplate.findById(upload.getId(), UploadFragmente.class)).thenReturn(upload).thenReturn(null);
+        assertThrows(RuntimeException.class, () -> service.ecrireChunk(upload.getId(), 0,
+                new ByteArrayInputStream(contenu), CHUNK, "u1"));
+        assertTrue(verrous.isEmpty());
+    }
+}
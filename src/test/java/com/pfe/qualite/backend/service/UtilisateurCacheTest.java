@@ -0,0 +1,103 @@
+package com.pfe.qualite.backend.service;
+
+import com.pfe.qualite.backend.model.Utilisateur;
+import com.pfe.qualite.backend.repository.UtilisateurRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour UtilisateurCache
+ * Éviction LRU, durée de vie, invalidation et contenu réduit des entrées
+ */
+class UtilisateurCacheTest {
+
+    private UtilisateurRepository utilisateurRepository;
+
+    @BeforeEach
+    void setUp() {
+        utilisateurRepository = mock(UtilisateurRepository.class);
+    }
+
+    private UtilisateurCache cache(int tailleMax, long dureeVieMs) {
+        return new UtilisateurCache(utilisateurRepository, new SimpleMeterRegistry(), tailleMax, dureeVieMs);
+    }
+
+    private Utilisateur enBase(String id, String role, boolean actif) {
+        Utilisateur utilisateur = Utilisateur.builder()
+                .id(id).nom("Nom " + id).email(id + "@example.com").password("hash-" + id)
+                .role(role).actif(actif).resetPasswordToken("jeton").build();
+        when(utilisateurRepository.findById(id)).thenReturn(Optional.of(utilisateur));
+        when(utilisateurRepository.findByEmail(id + "@example.com")).thenReturn(Optional.of(utilisateur));
+        return utilisateur;
+    }
+
+    @Test
+    void testEntreeReduiteEtPartageeEntreIdEtEmail() {
+        enBase("u1", "ADMIN", true);
+        UtilisateurCache cache = cache(10, 60_000);
+
+        Utilisateur lu = cache.parId("u1").orElseThrow();
+        assertEquals("u1@example.com", lu.getEmail());
+        assertEquals("ADMIN", lu.getRole());
+        assertTrue(lu.getActif());
+        assertNull(lu.getPassword());
+        assertNull(lu.getResetPasswordToken());
+
+        // Copie : la modifier n'altère pas le cache
+        lu.setRole("PILOTE_QUALITE");
+        assertEquals("ADMIN", cache.parEmail("u1@example.com").orElseThrow().getRole());
+        assertNull(cache.parEmail("u1@example.com").orElseThrow().getPassword());
+        verify(utilisateurRepository, times(1)).findById("u1");
+        verify(utilisateurRepository, never()).findByEmail(anyString());
+    }
+
+    @Test
+    void testEvictionLruEtDureeDeVie() throws Exception {
+        enBase("u1", "ADMIN", true);
+        enBase("u2", "ADMIN", true);
+        enBase("u3", "ADMIN", true);
+        UtilisateurCache cache = cache(2, 60_000);
+
+        cache.parId("u1");
+        cache.parId("u2");
+        cache.parId("u1");   // u2 devient le moins récemment lu
+        cache.parId("u3");   // évince u2
+        cache.parId("u1");
+        cache.parEmail("u2@example.com");
+        verify(utilisateurRepository, times(1)).findById("u1");
+        verify(utilisateurRepository, times(1)).findByEmail("u2@example.com");
+
+        UtilisateurCache court = cache(10, 20);
+        court.parId("u3");
+        Thread.sleep(40);
+        court.parId("u3");
+        verify(utilisateurRepository, times(3)).findById("u3");
+    }
+
+    @Test
+    void testInvalidationPendantLaLectureEnBase() {
+        UtilisateurCache cache = cache(10, 60_000);
+        Utilisateur avant = Utilisateur.builder().id("u1").email("u1@example.com").role("ADMIN").actif(true).build();
+        Utilisateur apres = Utilisateur.builder().id("u1").email("u1@example.com").role("ADMIN").actif(false).build();
+        // Le compte est désactivé entre la lecture en base et la mise en cache
+        when(utilisateurRepository.findById("u1")).thenAnswer(i -> {
+            cache.invalider("u1");
+            return Optional.of(avant);
+        }).thenReturn(Optional.of(apres));
+
+        assertTrue(cache.parId("u1").orElseThrow().getActif());
+        assertFalse(cache.parId("u1").orElseThrow().getActif());
+        assertFalse(cache.parId("u1").orElseThrow().getActif());
+        verify(utilisateurRepository, times(2)).findById("u1");
+
+        cache.invalider("u1");
+        cache.parEmail("u1@example.com");
+        verify(utilisateurRepository).findByEmail("u1@example.com");
+    }
+}
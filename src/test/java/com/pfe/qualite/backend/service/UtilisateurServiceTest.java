@@ -2,6 +2,7 @@ package com.pfe.qualite.backend.service;
 
 import com.pfe.qualite.backend.model.Utilisateur;
 import com.pfe.qualite.backend.repository.UtilisateurRepository;
+import com.pfe.qualite.backend.security.jwt.JwtPrincipalCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -36,6 +37,12 @@ class UtilisateurServiceTest {
     @Mock
     private NotificationService notificationService;
 
+    @Mock
+    private JwtPrincipalCache principalCache;
+
+    @Mock
+    private UtilisateurCache utilisateurCache;
+
     @InjectMocks
     private UtilisateurService utilisateurService;
 
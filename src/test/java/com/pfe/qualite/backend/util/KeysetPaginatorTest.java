@@ -0,0 +1,150 @@
+package com.pfe.qualite.backend.util;
+
+import com.pfe.qualite.backend.dto.KeysetPage;
+import com.pfe.qualite.backend.dto.KeysetPageRequest;
+import com.pfe.qualite.backend.model.FicheQualite;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitaires pour KeysetPaginator
+ * Aller-retour du curseur, clé de tri nulle, départage par id et curseur altéré
+ */
+class KeysetPaginatorTest {
+
+    private MongoTemplate mongoTemplate;
+    private KeysetPaginator paginator;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext contexte = new MongoMappingContext();
+        contexte.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        contexte.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, contexte);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        paginator = new KeysetPaginator(mongoTemplate);
+    }
+
+    private static FicheQualite fiche(String id, String responsable, LocalDate echeance) {
+        return FicheQualite.builder().id(id).responsable(responsable).dateEcheance(echeance).build();
+    }
+
+    private static KeysetPageRequest requete(int limit, String sort, String cursor) {
+        KeysetPageRequest requete = new KeysetPageRequest();
+        requete.setLimit(limit);
+        requete.setSort(sort);
+        requete.setCursor(cursor);
+        return requete;
+    }
+
+    /**
+     * Exécute une page en renvoyant les résultats donnés et retourne la requête envoyée à MongoDB
+     */
+    private Query page(KeysetPageRequest requete, List<FicheQualite> resultats, KeysetPage<FicheQualite>[] sortie) {
+        clearInvocations(mongoTemplate);
+        when(mongoTemplate.find(any(Query.class), eq(FicheQualite.class))).thenReturn(resultats);
+        sortie[0] = paginator.paginer(FicheQualite.class, requete);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(FicheQualite.class));
+        return query.getValue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCurseurAllerRetourAvecDepartageParId() {
+        LocalDate echeance = LocalDate.of(2026, 3, 1);
+        KeysetPage<FicheQualite>[] sortie = new KeysetPage[1];
+
+        // Un élément de plus que la limite : une page suivante existe
+        Query premiere = page(requete(2, "dateEcheance,desc", null),
+                List.of(fiche("a", null, echeance.plusDays(1)), fiche("b", null, echeance), fiche("c", null, echeance)),
+                sortie);
+        assertEquals(3, premiere.getLimit());
+        assertEquals(new Document("dateEcheance", -1).append("id", -1), premiere.getSortObject());
+        assertEquals(2, sortie[0].getContenu().size());
+        String curseur = sortie[0].getCurseurSuivant();
+        assertNotNull(curseur);
+
+        // La page suivante reprend strictement après (échéance, id) du dernier élément
+        Query seconde = page(requete(2, "dateEcheance,desc", curseur), List.of(fiche("c", null, echeance)), sortie);
+        Date borne = Date.from(echeance.atStartOfDay(ZoneOffset.UTC).toInstant());
+        List<Document> alternatives = seconde.getQueryObject().getList("$or", Document.class);
+        assertEquals(new Document("dateEcheance", new Document("$lt", borne)), alternatives.get(0));
+        assertEquals(List.of(new Document("dateEcheance", borne), new Document("id", new Document("$lt", "b"))),
+                alternatives.get(1).getList("$and", Document.class));
+        // En tri descendant, les échéances nulles viennent en dernier
+        assertEquals(new Document("dateEcheance", null), alternatives.get(2));
+        assertNull(sortie[0].getCurseurSuivant());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCleDeTriNulle() {
+        KeysetPage<FicheQualite>[] sortie = new KeysetPage[1];
+        page(requete(1, "responsable", null), List.of(fiche("a", null, null), fiche("b", null, null)), sortie);
+
+        Query suivante = page(requete(1, "responsable", sortie[0].getCurseurSuivant()), List.of(), sortie);
+        // Après une clé nulle en tri ascendant : autres nulls d'id supérieur, puis toute valeur non nulle
+        List<Document> alternatives = suivante.getQueryObject().getList("$or", Document.class);
+        assertEquals(List.of(new Document("responsable", null), new Document("id", new Document("$gt", "a"))),
+                alternatives.get(0).getList("$and", Document.class));
+        assertEquals(new Document("responsable", new Document("$ne", null)), alternatives.get(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testTriParIdSansDepartage() {
+        KeysetPage<FicheQualite>[] sortie = new KeysetPage[1];
+        page(requete(1, null, null), List.of(fiche("a", "x", null), fiche("b", "y", null)), sortie);
+
+        Query suivante = page(requete(1, null, sortie[0].getCurseurSuivant()), List.of(), sortie);
+        assertEquals(new Document("id", new Document("$gt", "a")), suivante.getQueryObject());
+        assertEquals(new Document("id", 1), suivante.getSortObject());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCurseurAltereRefuse() {
+        KeysetPage<FicheQualite>[] sortie = new KeysetPage[1];
+        page(requete(1, "responsable,asc", null), List.of(fiche("a", "x", null), fiche("b", "y", null)), sortie);
+        String curseur = sortie[0].getCurseurSuivant();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> paginator.paginer(FicheQualite.class, requete(1, "responsable,asc", "pas un curseur!")));
+        String tronque = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"s\": \"responsable\", \"d\"".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class,
+                () -> paginator.paginer(FicheQualite.class, requete(1, "responsable,asc", tronque)));
+        // Un curseur n'est valable que pour le tri qui l'a produit
+        assertThrows(IllegalArgumentException.class,
+                () -> paginator.paginer(FicheQualite.class, requete(1, "responsable,desc", curseur)));
+        assertThrows(IllegalArgumentException.class,
+                () -> paginator.paginer(FicheQualite.class, requete(1, "titre,asc", curseur)));
+        assertThrows(IllegalArgumentException.class,
+                () -> paginator.paginer(FicheQualite.class, requete(1, "motDePasse", null)));
+    }
+}
@@ -0,0 +1,62 @@
+package com.pfe.qualite.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour PlagesOctets
+ */
+class PlagesOctetsTest {
+
+    private static final long TAILLE = 1000;
+
+    private static String decrire(List<PlagesOctets.Plage> plages) {
+        StringBuilder sb = new StringBuilder();
+        for (PlagesOctets.Plage plage : plages) {
+            sb.append(sb.length() == 0 ? "" : ",").append(plage.getDebut()).append('-').append(plage.getFin());
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testPlagesSimples() {
+        assertEquals("0-499", decrire(PlagesOctets.analyser("bytes=0-499", TAILLE)));
+        assertEquals("500-999", decrire(PlagesOctets.analyser("bytes=500-", TAILLE)));
+        assertEquals("900-999", decrire(PlagesOctets.analyser("bytes=-100", TAILLE)));
+        assertEquals("0-999", decrire(PlagesOctets.analyser("bytes=-5000", TAILLE)));
+        assertEquals("990-999", decrire(PlagesOctets.analyser("Bytes=990-2000", TAILLE)));
+        assertEquals("bytes 0-499/1000", PlagesOctets.analyser("bytes=0-499", TAILLE).get(0).contentRange(TAILLE));
+    }
+
+    @Test
+    void testPlagesMultiplesTrieesEtFusionnees() {
+        assertEquals("0-9,100-199", decrire(PlagesOctets.analyser("bytes=100-199, 0-9", TAILLE)));
+        assertEquals("0-149", decrire(PlagesOctets.analyser("bytes=0-99,50-149", TAILLE)));
+        assertEquals("0-199", decrire(PlagesOctets.analyser("bytes=0-99,100-199", TAILLE)));
+        assertEquals("0-9,900-999", decrire(PlagesOctets.analyser("bytes=0-9,-100,950-", TAILLE)));
+    }
+
+    @Test
+    void testPlagesNonSatisfiables() {
+        assertTrue(PlagesOctets.analyser("bytes=1000-", TAILLE).isEmpty());
+        assertTrue(PlagesOctets.analyser("bytes=-0", TAILLE).isEmpty());
+        assertTrue(PlagesOctets.analyser("bytes=0-10", 0).isEmpty());
+        // Les plages hors fichier sont ignorées si une autre est satisfiable
+        assertEquals("0-9", decrire(PlagesOctets.analyser("bytes=5000-6000,0-9", TAILLE)));
+    }
+
+    @Test
+    void testEnTeteIgnore() {
+        assertNull(PlagesOctets.analyser(null, TAILLE));
+        assertNull(PlagesOctets.analyser("items=0-9", TAILLE));
+        assertNull(PlagesOctets.analyser("bytes=", TAILLE));
+        assertNull(PlagesOctets.analyser("bytes=9-0", TAILLE));
+        assertNull(PlagesOctets.analyser("bytes=abc", TAILLE));
+        assertNull(PlagesOctets.analyser("bytes=1-2-3", TAILLE));
+        assertNull(PlagesOctets.analyser("bytes=99999999999999999999-", TAILLE));
+        assertNull(PlagesOctets.analyser("bytes=" + "0-1,".repeat(PlagesOctets.PLAGES_MAX) + "2-3", TAILLE));
+    }
+}
@@ -0,0 +1,106 @@
+package com.pfe.qualite.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitaires pour TauxConformiteParser
+ * Vérifie l'équivalence avec l'ancienne extraction par expressions régulières
+ */
+class TauxConformiteParserTest {
+
+    // Ancienne implémentation (RapportKpiService), appliquée au texte en minuscules
+    private static final Pattern CLE_JSON = Pattern.compile("taux\\s*[_-]?\\s*conform(?:ite|ité)\\s*\"?\\s*:\\s*(\\d{1,3})\\s*%?");
+    private static final Pattern POURCENTAGE = Pattern.compile("taux\\s*(?:de)?\\s*conform(?:ite|ité)[^\\d%]{0,30}(\\d{1,3})\\s*%");
+    private static final Pattern DECIMAL = Pattern.compile("taux\\s*(?:de)?\\s*conform(?:ite|ité)[^\\d.]{0,30}(0?\\.\\d+|1(?:\\.0+)?)\\b");
+
+    private static Double reference(String texte) {
+        String t = texte.toLowerCase().trim();
+        Matcher m = CLE_JSON.matcher(t);
+        if (m.find()) {
+            return (double) Math.max(0, Math.min(100, Integer.parseInt(m.group(1))));
+        }
+        m = POURCENTAGE.matcher(t);
+        if (m.find()) {
+            return (double) Math.max(0, Math.min(100, Integer.parseInt(m.group(1))));
+        }
+        m = DECIMAL.matcher(t);
+        if (m.find()) {
+            return Math.max(0.0, Math.min(100.0, Double.parseDouble(m.group(1)) * 100.0));
+        }
+        return null;
+    }
+
+    private static void assertEquivalent(String texte) {
+        Double attendu = reference(texte);
+        Double obtenu = TauxConformiteParser.extraire(texte);
+        if (attendu == null) {
+            assertNull(obtenu, texte);
+        } else {
+            assertNotNull(obtenu, texte);
+            assertEquals(attendu, obtenu, 1e-9, texte);
+        }
+    }
+
+    @Test
+    void testFormesReconnues() {
+        assertEquals(85.0, TauxConformiteParser.extraire("{\"tauxConformite\": 85, \"delai\": 3}"));
+        assertEquals(92.0, TauxConformiteParser.extraire("Taux de conformité mesuré : 92 %"));
+        assertEquals(85.0, TauxConformiteParser.extraire("taux conformite global 0.85"), 1e-9);
+        assertEquals(100.0, TauxConformiteParser.extraire("taux_conformite: 250"));
+        assertEquals(100.0, TauxConformiteParser.extraire("taux de conformité = 1.0"));
+    }
+
+    @Test
+    void testAbsenceDeTaux() {
+        assertNull(TauxConformiteParser.extraire(null));
+        assertNull(TauxConformiteParser.extraire(""));
+        assertNull(TauxConformiteParser.extraire("délai moyen 12 jours"));
+        assertNull(TauxConformiteParser.extraire("taux de conformité non mesuré"));
+        assertTrue(Double.isNaN(TauxConformiteParser.extraireOuNaN("taux de conformité 1234 %")));
+    }
+
+    @Test
+    void testPrioriteCleJsonSurLibelle() {
+        // La clé JSON l'emporte même si un libellé avec % apparaît avant elle
+        assertEquals(40.0, TauxConformiteParser.extraire("taux de conformité 90 % ; \"tauxConformite\": 40"));
+    }
+
+    @Test
+    void testEquivalenceAvecExpressionsRegulieres() {
+        String[] cas = {
+            "tauxconformite:85", "taux-conformité : 7%", "taux _ conformite \" : 100", "tauxconformite\":",
+            "taux de conformité 85%", "taux de conformite : 85 %", "tauxdeconformite 9%",
+            "taux de conformité est de 0.93", "taux de conformité .5", "taux de conformité 1.05",
+            "taux de conformité 1.00", "taux de conformité 10", "taux de conformité 0.9x",
+            "taux de conformité " + "x".repeat(30) + "50%", "taux de conformité " + "x".repeat(31) + "50%",
+            "taux de conformité % 50%", "taux de de conformité 50%", "TAUX DE CONFORMITÉ 77 %",
+            "taux de conformité 12 ; taux de conformité 0.4", "taux conformite 5 , taux de conformité 60 %"
+        };
+        for (String texte : cas) {
+            assertEquivalent(texte);
+        }
+    }
+
+    @Test
+    void testEquivalenceTextesAleatoires() {
+        String[] fragments = {
+            "taux", "de", "conformite", "conformité", "Conformité", "_", "-", " ", "  ", ":", "\"", "%", ".",
+            "0", "1", "5", "85", "100", "1234", "0.85", ".5", "1.0", "x", "abc", "é", ";", "\n"
+        };
+        Random random = new Random(7);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder texte = new StringBuilder();
+            int taille = 1 + random.nextInt(12);
+            for (int k = 0; k < taille; k++) {
+                texte.append(fragments[random.nextInt(fragments.length)]);
+            }
+            assertEquivalent(texte.toString());
+        }
+    }
+}